@@ -0,0 +1,90 @@
+package ai.elimu.appstore.room;
+
+import android.database.Cursor;
+
+import androidx.room.testing.MigrationTestHelper;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import ai.elimu.model.enums.content.LiteracySkill;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class RoomDbMigrationTest {
+
+    private static final String TEST_DB = "migration-test";
+
+    @Rule
+    public MigrationTestHelper migrationTestHelper = new MigrationTestHelper(
+            InstrumentationRegistry.getInstrumentation(),
+            RoomDb.class.getCanonicalName(),
+            new FrameworkSQLiteOpenHelperFactory()
+    );
+
+    @Test
+    public void migrate3To4() throws Exception {
+        SupportSQLiteDatabase database = migrationTestHelper.createDatabase(TEST_DB, 3);
+        database.execSQL("INSERT INTO Application (id, packageName, infrastructural, applicationStatus) VALUES (1, 'ai.elimu.test1', 0, 'ACTIVE')");
+        database.execSQL("INSERT INTO ApplicationVersion (id, applicationId, fileUrl, fileSizeInKb, checksumMd5, versionCode) VALUES (1, 1, '/apk/ai.elimu.test1-1.apk', 1024, 'd41d8cd98f00b204e9800998ecf8427e', 1)");
+        database.execSQL("INSERT INTO ApplicationVersion (id, applicationId, fileUrl, fileSizeInKb, checksumMd5, versionCode) VALUES (2, 1, '/apk/ai.elimu.test1-2.apk', 1024, 'd41d8cd98f00b204e9800998ecf8427e', 2)");
+        // An ApplicationVersion without an Application, which would violate the foreign key
+        database.execSQL("INSERT INTO ApplicationVersion (id, applicationId, fileUrl, fileSizeInKb, checksumMd5, versionCode) VALUES (3, 2, '/apk/ai.elimu.test2-1.apk', 1024, 'd41d8cd98f00b204e9800998ecf8427e', 1)");
+        database.close();
+
+        // Validates the tables, indices and foreign keys against schemas/4.json
+        database = migrationTestHelper.runMigrationsAndValidate(TEST_DB, 4, true, RoomDb.MIGRATION_3_4);
+
+        try (Cursor cursor = database.query("SELECT id FROM ApplicationVersion ORDER BY id")) {
+            assertEquals(2, cursor.getCount());
+        }
+
+        // Deleting an Application should delete its ApplicationVersions
+        database.execSQL("PRAGMA foreign_keys = ON");
+        database.execSQL("DELETE FROM Application WHERE id = 1");
+        try (Cursor cursor = database.query("SELECT id FROM ApplicationVersion")) {
+            assertEquals(0, cursor.getCount());
+        }
+    }
+
+    @Test
+    public void migrate4To5() throws Exception {
+        Set<LiteracySkill> literacySkills = EnumSet.of(LiteracySkill.values()[0], LiteracySkill.values()[LiteracySkill.values().length - 1]);
+        SupportSQLiteDatabase database = migrationTestHelper.createDatabase(TEST_DB, 4);
+        database.execSQL("INSERT INTO Application (id, packageName, infrastructural, applicationStatus, literacySkills, numeracySkills) VALUES (1, 'ai.elimu.test1', 0, 'ACTIVE', ?, '[]')", new Object[] {literacySkills.toString()});
+        database.execSQL("INSERT INTO Application (id, packageName, infrastructural, applicationStatus, literacySkills, numeracySkills) VALUES (2, 'ai.elimu.test2', NULL, 'DELETED', NULL, NULL)");
+        database.execSQL("INSERT INTO ApplicationVersion (id, applicationId, fileUrl, fileSizeInKb, checksumMd5, versionCode) VALUES (1, 1, '/apk/ai.elimu.test1-1.apk', 1024, 'd41d8cd98f00b204e9800998ecf8427e', 1)");
+        database.close();
+
+        database = migrationTestHelper.runMigrationsAndValidate(TEST_DB, 5, true, RoomDb.MIGRATION_4_5);
+
+        try (Cursor cursor = database.query("SELECT id, infrastructural, literacySkills, numeracySkills FROM Application ORDER BY id")) {
+            assertEquals(2, cursor.getCount());
+
+            cursor.moveToNext();
+            assertEquals(0, cursor.getLong(1));
+            assertEquals(literacySkills, EnumConverter.fromLiteracySkills(cursor.getLong(2)));
+            assertEquals(0, cursor.getLong(3));
+
+            cursor.moveToNext();
+            assertTrue(cursor.isNull(1));
+            assertEquals(0, cursor.getLong(2));
+            assertEquals(0, cursor.getLong(3));
+        }
+
+        // The ApplicationVersions should not have been deleted together with the old Application table
+        try (Cursor cursor = database.query("SELECT id FROM ApplicationVersion")) {
+            assertEquals(1, cursor.getCount());
+        }
+    }
+}
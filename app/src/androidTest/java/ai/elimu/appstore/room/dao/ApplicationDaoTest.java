@@ -0,0 +1,349 @@
+package ai.elimu.appstore.room.dao;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.paging.DataSource;
+import androidx.paging.PagedList;
+import androidx.room.Room;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteProgram;
+import androidx.sqlite.db.SupportSQLiteQuery;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import ai.elimu.appstore.room.ApplicationFilter;
+import ai.elimu.appstore.room.RoomDb;
+import ai.elimu.appstore.room.entity.Application;
+import ai.elimu.appstore.room.entity.ApplicationVersion;
+import ai.elimu.appstore.room.entity.ApplicationWithNewestVersion;
+import ai.elimu.appstore.ui.applications.ApplicationListActivity;
+import ai.elimu.model.enums.admin.ApplicationStatus;
+import ai.elimu.model.enums.content.LiteracySkill;
+import ai.elimu.model.enums.content.NumeracySkill;
+import timber.log.Timber;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class ApplicationDaoTest {
+
+    private static final int APPLICATION_COUNT = 1_000;
+
+    private static final int VERSIONS_PER_APPLICATION = 10;
+
+    private RoomDb roomDb;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        roomDb = Room.inMemoryDatabaseBuilder(context, RoomDb.class).build();
+
+        List<Application> applications = new ArrayList<>();
+        List<ApplicationVersion> applicationVersions = new ArrayList<>();
+        long applicationVersionId = 1;
+        for (long applicationId = 1; applicationId <= APPLICATION_COUNT; applicationId++) {
+            Application application = new Application();
+            application.setId(applicationId);
+            application.setPackageName("ai.elimu.test" + applicationId);
+            application.setInfrastructural(applicationId % 10 == 0);
+            application.setApplicationStatus((applicationId % 100 == 0) ? ApplicationStatus.DELETED : ApplicationStatus.ACTIVE);
+            application.setLiteracySkills(EnumSet.of(LiteracySkill.values()[(int) (applicationId % LiteracySkill.values().length)]));
+            application.setNumeracySkills(EnumSet.of(NumeracySkill.values()[(int) (applicationId % NumeracySkill.values().length)]));
+            applications.add(application);
+
+            // Leave the last Application without any ApplicationVersions
+            if (applicationId == APPLICATION_COUNT) {
+                continue;
+            }
+            for (int versionCode = 1; versionCode <= VERSIONS_PER_APPLICATION; versionCode++) {
+                ApplicationVersion applicationVersion = new ApplicationVersion();
+                applicationVersion.setId(applicationVersionId++);
+                applicationVersion.setApplicationId(applicationId);
+                applicationVersion.setFileUrl("/apk/ai.elimu.test" + applicationId + "-" + versionCode + ".apk");
+                applicationVersion.setFileSizeInKb(1024);
+                applicationVersion.setChecksumMd5("d41d8cd98f00b204e9800998ecf8427e");
+                applicationVersion.setVersionCode(versionCode);
+                applicationVersions.add(applicationVersion);
+            }
+        }
+        roomDb.runInTransaction(() -> {
+            roomDb.applicationDao().insertAll(applications);
+            roomDb.applicationVersionDao().insertAll(applicationVersions);
+        });
+    }
+
+    @After
+    public void tearDown() {
+        roomDb.close();
+    }
+
+    @Test
+    public void loadAllWithNewestVersion() {
+        List<ApplicationWithNewestVersion> applicationsWithNewestVersion = roomDb.applicationDao().loadAllWithNewestVersion();
+        assertEquals(APPLICATION_COUNT, applicationsWithNewestVersion.size());
+        for (ApplicationWithNewestVersion applicationWithNewestVersion : applicationsWithNewestVersion) {
+            Application application = applicationWithNewestVersion.getApplication();
+            ApplicationVersion newestApplicationVersion = applicationWithNewestVersion.getNewestApplicationVersion();
+            if (application.getId() == APPLICATION_COUNT) {
+                assertNull(newestApplicationVersion);
+            } else {
+                assertEquals(application.getId().longValue(), newestApplicationVersion.getApplicationId());
+                assertEquals(VERSIONS_PER_APPLICATION, newestApplicationVersion.getVersionCode().intValue());
+            }
+        }
+    }
+
+    /**
+     * The newest ApplicationVersion of each Application should be looked up in the index, instead of sorting (or
+     * scanning) the ApplicationVersions of every Application.
+     */
+    @Test
+    public void loadAllWithNewestVersion_usesIndex() {
+        try (Cursor cursor = roomDb.query("EXPLAIN QUERY PLAN " + ApplicationDao.SELECT_WITH_NEWEST_VERSION, null)) {
+            StringBuilder queryPlan = new StringBuilder();
+            while (cursor.moveToNext()) {
+                queryPlan.append(cursor.getString(cursor.getColumnIndex("detail"))).append("\n");
+            }
+            Timber.i("queryPlan: " + queryPlan);
+            assertTrue(queryPlan.toString().contains("index_ApplicationVersion_applicationId_versionCode"));
+            assertFalse(queryPlan.toString().contains("TEMP B-TREE"));
+            assertFalse(queryPlan.toString().contains("SCAN TABLE ApplicationVersion"));
+        }
+    }
+
+    /**
+     * Compares loading the newest ApplicationVersion of each Application in one query with loading all 10,000
+     * ApplicationVersions and picking the newest ones in Java. The durations are only logged, since they depend on the
+     * device.
+     */
+    @Test
+    @LargeTest
+    public void loadAllWithNewestVersion_benchmark() {
+        int iterations = 10;
+        long durationAllVersions = 0;
+        long durationNewestVersion = 0;
+        for (int i = 0; i <= iterations; i++) {
+            long timeBefore = System.nanoTime();
+            List<Application> applications = roomDb.applicationDao().loadAll();
+            Map<Long, ApplicationVersion> newestApplicationVersions = new HashMap<>();
+            for (ApplicationVersion applicationVersion : roomDb.applicationVersionDao().loadAll()) {
+                // Ordered by versionCode DESC
+                newestApplicationVersions.putIfAbsent(applicationVersion.getApplicationId(), applicationVersion);
+            }
+            long timeAllVersions = System.nanoTime() - timeBefore;
+
+            timeBefore = System.nanoTime();
+            List<ApplicationWithNewestVersion> applicationsWithNewestVersion = roomDb.applicationDao().loadAllWithNewestVersion();
+            long timeNewestVersion = System.nanoTime() - timeBefore;
+
+            assertEquals(applications.size(), applicationsWithNewestVersion.size());
+            assertEquals(APPLICATION_COUNT - 1, newestApplicationVersions.size());
+            if (i > 0) {
+                // The first iteration warms up the database's page cache
+                durationAllVersions += timeAllVersions;
+                durationNewestVersion += timeNewestVersion;
+            }
+        }
+        Timber.i("durationAllVersions: " + TimeUnit.NANOSECONDS.toMillis(durationAllVersions / iterations) + "ms");
+        Timber.i("durationNewestVersion: " + TimeUnit.NANOSECONDS.toMillis(durationNewestVersion / iterations) + "ms");
+    }
+
+    @Test
+    public void loadAllByApplicationId_usesIndex() {
+        try (Cursor cursor = roomDb.query("EXPLAIN QUERY PLAN SELECT * FROM ApplicationVersion av WHERE av.applicationId = 1 ORDER BY versionCode DESC", null)) {
+            StringBuilder queryPlan = new StringBuilder();
+            while (cursor.moveToNext()) {
+                queryPlan.append(cursor.getString(cursor.getColumnIndex("detail"))).append("\n");
+            }
+            Timber.i("queryPlan: " + queryPlan);
+            assertTrue(queryPlan.toString().contains("index_ApplicationVersion_applicationId_versionCode"));
+            assertFalse(queryPlan.toString().contains("TEMP B-TREE"));
+        }
+    }
+
+    @Test
+    public void loadAllWithNewestVersionPaged_firstPage() {
+        AtomicInteger rowsRead = new AtomicInteger();
+        DataSource<Integer, ApplicationWithNewestVersion> dataSource = roomDb.applicationDao().loadAllWithNewestVersionPaged()
+                .map(applicationWithNewestVersion -> {
+                    rowsRead.incrementAndGet();
+                    return applicationWithNewestVersion;
+                })
+                .create();
+
+        long timeBefore = System.currentTimeMillis();
+        PagedList<ApplicationWithNewestVersion> pagedList = new PagedList.Builder<>(dataSource, ApplicationListActivity.PAGED_LIST_CONFIG)
+                .setFetchExecutor(Runnable::run)
+                .setNotifyExecutor(Runnable::run)
+                .build();
+        long durationFirstPage = System.currentTimeMillis() - timeBefore;
+        Timber.i("durationFirstPage: " + durationFirstPage + "ms");
+        Timber.i("rowsRead: " + rowsRead);
+
+        // The other rows are only added once they are scrolled to
+        assertEquals(ApplicationListActivity.PAGED_LIST_CONFIG.initialLoadSizeHint, pagedList.size());
+        assertEquals(ApplicationListActivity.PAGED_LIST_CONFIG.initialLoadSizeHint, pagedList.getLoadedCount());
+        assertEquals(ApplicationListActivity.PAGED_LIST_CONFIG.initialLoadSizeHint, rowsRead.get());
+
+        // Scrolling to the end of the first page loads the next page
+        pagedList.loadAround(pagedList.getLoadedCount() - 1);
+        assertEquals(ApplicationListActivity.PAGED_LIST_CONFIG.initialLoadSizeHint + ApplicationListActivity.PAGED_LIST_CONFIG.pageSize, rowsRead.get());
+    }
+
+    @Test
+    public void loadFiltered() {
+        List<ApplicationWithNewestVersion> applicationsWithNewestVersion = roomDb.applicationDao().loadAllWithNewestVersion();
+        LiteracySkill literacySkill = LiteracySkill.values()[0];
+        NumeracySkill numeracySkill = NumeracySkill.values()[1];
+        Set<String> installedPackageNames = new HashSet<>(Arrays.asList("ai.elimu.test1", "ai.elimu.test2", "ai.elimu.test3", "com.example"));
+
+        assertFiltered(applicationsWithNewestVersion, new ApplicationFilter().setLiteracySkills(EnumSet.of(literacySkill)),
+                application -> application.getLiteracySkills().contains(literacySkill));
+        assertFiltered(applicationsWithNewestVersion, new ApplicationFilter().setNumeracySkills(EnumSet.of(numeracySkill)),
+                application -> application.getNumeracySkills().contains(numeracySkill));
+        assertFiltered(applicationsWithNewestVersion, new ApplicationFilter().setApplicationStatus(ApplicationStatus.DELETED),
+                application -> application.getApplicationStatus() == ApplicationStatus.DELETED);
+        assertFiltered(applicationsWithNewestVersion, new ApplicationFilter().setInfrastructural(true),
+                Application::getInfrastructural);
+        assertFiltered(applicationsWithNewestVersion, new ApplicationFilter().setInstalled(true, installedPackageNames),
+                application -> installedPackageNames.contains(application.getPackageName()));
+        assertFiltered(applicationsWithNewestVersion, new ApplicationFilter().setInstalled(false, installedPackageNames),
+                application -> !installedPackageNames.contains(application.getPackageName()));
+        // More installed applications than the maximum number of bind arguments (999)
+        Set<String> manyInstalledPackageNames = new HashSet<>(installedPackageNames);
+        for (int i = 0; i < 1000; i++) {
+            manyInstalledPackageNames.add("com.example" + i);
+        }
+        assertFiltered(applicationsWithNewestVersion, new ApplicationFilter().setInstalled(true, manyInstalledPackageNames),
+                application -> installedPackageNames.contains(application.getPackageName()));
+        assertFiltered(applicationsWithNewestVersion, new ApplicationFilter().setInstalled(false, manyInstalledPackageNames),
+                application -> !installedPackageNames.contains(application.getPackageName()));
+        assertFiltered(applicationsWithNewestVersion, new ApplicationFilter().setPackageNamePrefix("ai.elimu.test12"),
+                application -> application.getPackageName().startsWith("ai.elimu.test12"));
+        assertFiltered(applicationsWithNewestVersion, new ApplicationFilter()
+                        .setApplicationStatus(ApplicationStatus.ACTIVE)
+                        .setLiteracySkills(EnumSet.of(literacySkill))
+                        .setNumeracySkills(EnumSet.of(numeracySkill)),
+                application -> (application.getApplicationStatus() == ApplicationStatus.ACTIVE)
+                        && application.getLiteracySkills().contains(literacySkill)
+                        && application.getNumeracySkills().contains(numeracySkill));
+    }
+
+    @Test
+    public void loadFiltered_paging() {
+        int pageSize = 20;
+        List<String> packageNames = new ArrayList<>();
+        String afterPackageName = null;
+        while (true) {
+            List<ApplicationWithNewestVersion> page = roomDb.applicationDao().loadFiltered(
+                    new ApplicationFilter().setAfterPackageName(afterPackageName).setLimit(pageSize).toQuery()
+            );
+            assertTrue(page.size() <= pageSize);
+            for (ApplicationWithNewestVersion applicationWithNewestVersion : page) {
+                packageNames.add(applicationWithNewestVersion.getApplication().getPackageName());
+            }
+            if (page.size() < pageSize) {
+                break;
+            }
+            afterPackageName = page.get(page.size() - 1).getApplication().getPackageName();
+        }
+
+        List<String> sortedPackageNames = new ArrayList<>(packageNames);
+        Collections.sort(sortedPackageNames);
+        assertEquals(APPLICATION_COUNT, packageNames.size());
+        assertEquals(sortedPackageNames, packageNames);
+    }
+
+    @Test
+    public void loadFiltered_usesIndex() {
+        SupportSQLiteQuery query = new ApplicationFilter().setPackageNamePrefix("ai.elimu.test12").setLimit(20).toQuery();
+        try (Cursor cursor = roomDb.query(new SimpleSQLiteQuery("EXPLAIN QUERY PLAN " + query.getSql(), getBindArgs(query)))) {
+            StringBuilder queryPlan = new StringBuilder();
+            while (cursor.moveToNext()) {
+                queryPlan.append(cursor.getString(cursor.getColumnIndex("detail"))).append("\n");
+            }
+            Timber.i("queryPlan: " + queryPlan);
+            assertTrue(queryPlan.toString().contains("index_Application_packageName"));
+            assertFalse(queryPlan.toString().contains("TEMP B-TREE"));
+        }
+    }
+
+    private void assertFiltered(List<ApplicationWithNewestVersion> applicationsWithNewestVersion, ApplicationFilter applicationFilter, Predicate<Application> predicate) {
+        List<Long> expectedIds = new ArrayList<>();
+        for (ApplicationWithNewestVersion applicationWithNewestVersion : applicationsWithNewestVersion) {
+            if (predicate.test(applicationWithNewestVersion.getApplication())) {
+                expectedIds.add(applicationWithNewestVersion.getApplication().getId());
+            }
+        }
+        List<Long> ids = new ArrayList<>();
+        for (ApplicationWithNewestVersion applicationWithNewestVersion : roomDb.applicationDao().loadFiltered(applicationFilter.toQuery())) {
+            ids.add(applicationWithNewestVersion.getApplication().getId());
+        }
+        Collections.sort(expectedIds);
+        Collections.sort(ids);
+        assertFalse(expectedIds.isEmpty());
+        assertEquals(expectedIds, ids);
+    }
+
+    private static Object[] getBindArgs(SupportSQLiteQuery query) {
+        Object[] bindArgs = new Object[query.getArgCount()];
+        query.bindTo(new SupportSQLiteProgram() {
+            @Override
+            public void bindNull(int index) {
+                bindArgs[index - 1] = null;
+            }
+
+            @Override
+            public void bindLong(int index, long value) {
+                bindArgs[index - 1] = value;
+            }
+
+            @Override
+            public void bindDouble(int index, double value) {
+                bindArgs[index - 1] = value;
+            }
+
+            @Override
+            public void bindString(int index, String value) {
+                bindArgs[index - 1] = value;
+            }
+
+            @Override
+            public void bindBlob(int index, byte[] value) {
+                bindArgs[index - 1] = value;
+            }
+
+            @Override
+            public void clearBindings() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        return bindArgs;
+    }
+}
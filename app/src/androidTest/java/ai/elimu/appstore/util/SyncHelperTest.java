@@ -0,0 +1,239 @@
+package ai.elimu.appstore.util;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.room.InvalidationTracker;
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.gson.Gson;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ai.elimu.appstore.rest.ApplicationsService;
+import ai.elimu.appstore.room.GsonToRoomConverter;
+import ai.elimu.appstore.room.RoomDb;
+import ai.elimu.appstore.room.entity.Application;
+import ai.elimu.model.enums.admin.ApplicationStatus;
+import ai.elimu.model.v2.gson.application.ApplicationGson;
+import ai.elimu.model.v2.gson.application.ApplicationVersionGson;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.SocketPolicy;
+import retrofit2.Retrofit;
+import timber.log.Timber;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(AndroidJUnit4.class)
+public class SyncHelperTest {
+
+    private static final int APPLICATION_COUNT = 300;
+
+    private static final int VERSIONS_PER_APPLICATION = 10;
+
+    private Context context;
+
+    private RoomDb roomDb;
+
+    private MockWebServer mockWebServer;
+
+    private ApplicationsService applicationsService;
+
+    @Before
+    public void setUp() throws Exception {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        roomDb = Room.inMemoryDatabaseBuilder(context, RoomDb.class).build();
+
+        mockWebServer = new MockWebServer();
+        mockWebServer.start();
+        Retrofit retrofit = new Retrofit.Builder()
+                .baseUrl(mockWebServer.url("/rest/v2/"))
+                .build();
+        applicationsService = retrofit.create(ApplicationsService.class);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mockWebServer.shutdown();
+        roomDb.close();
+    }
+
+    @Test
+    public void storeApplications() {
+        List<ApplicationGson> applicationGsons = createApplicationGsons();
+
+        SyncHelper.storeApplications(roomDb, applicationGsons);
+        assertEquals(APPLICATION_COUNT, roomDb.applicationDao().loadAll().size());
+        assertEquals(APPLICATION_COUNT * VERSIONS_PER_APPLICATION, roomDb.applicationVersionDao().loadAll().size());
+
+        // Storing the same list again should replace (not duplicate) the existing rows
+        SyncHelper.storeApplications(roomDb, applicationGsons);
+        assertEquals(APPLICATION_COUNT, roomDb.applicationDao().loadAll().size());
+        assertEquals(APPLICATION_COUNT * VERSIONS_PER_APPLICATION, roomDb.applicationVersionDao().loadAll().size());
+    }
+
+    @Test
+    public void storeApplications_modifiedApplicationIds() {
+        List<ApplicationGson> applicationGsons = createApplicationGsons();
+        assertEquals(APPLICATION_COUNT, SyncHelper.storeApplications(roomDb, applicationGsons).size());
+
+        // Storing the same list again should not report any changes to client apps
+        assertTrue(SyncHelper.storeApplications(roomDb, applicationGsons).isEmpty());
+
+        applicationGsons.get(0).getApplicationVersions().get(0).setChecksumMd5("0cc175b9c0f1b6a831c399e269772661");
+        assertEquals(Collections.singletonList(applicationGsons.get(0).getId()), SyncHelper.storeApplications(roomDb, applicationGsons));
+    }
+
+    /**
+     * Compares storing the Applications in one transaction with storing them one row per transaction. Each transaction
+     * is committed to disk, so the databases are stored in files (instead of in memory). The durations are only
+     * logged, since they depend on the device.
+     */
+    @Test
+    public void storeApplications_singleTransactionVersusOneRowPerTransaction() {
+        List<ApplicationGson> applicationGsons = createApplicationGsons();
+
+        RoomDb oneRowPerTransactionDb = createFileDatabase("sync_helper_test_one_row_per_transaction");
+        long timeBefore = System.currentTimeMillis();
+        storeApplicationsOneRowPerTransaction(oneRowPerTransactionDb, applicationGsons);
+        long durationOneRowPerTransaction = System.currentTimeMillis() - timeBefore;
+        Timber.i("durationOneRowPerTransaction: " + durationOneRowPerTransaction + "ms");
+        assertEquals(APPLICATION_COUNT, oneRowPerTransactionDb.applicationDao().count());
+        assertEquals(APPLICATION_COUNT * VERSIONS_PER_APPLICATION, oneRowPerTransactionDb.applicationVersionDao().loadAll().size());
+        closeFileDatabase(oneRowPerTransactionDb, "sync_helper_test_one_row_per_transaction");
+
+        RoomDb singleTransactionDb = createFileDatabase("sync_helper_test_single_transaction");
+        timeBefore = System.currentTimeMillis();
+        List<Long> modifiedApplicationIds = SyncHelper.storeApplications(singleTransactionDb, applicationGsons);
+        long durationSingleTransaction = System.currentTimeMillis() - timeBefore;
+        Timber.i("durationSingleTransaction: " + durationSingleTransaction + "ms");
+        assertEquals(APPLICATION_COUNT, singleTransactionDb.applicationDao().count());
+        assertEquals(APPLICATION_COUNT * VERSIONS_PER_APPLICATION, singleTransactionDb.applicationVersionDao().loadAll().size());
+        // Every Application is new, so every Application is reported to client apps
+        List<Long> applicationIds = new ArrayList<>();
+        for (ApplicationGson applicationGson : applicationGsons) {
+            applicationIds.add(applicationGson.getId());
+        }
+        assertEquals(applicationIds, modifiedApplicationIds);
+        closeFileDatabase(singleTransactionDb, "sync_helper_test_single_transaction");
+    }
+
+    @Test
+    public void syncApplications_notifiesObserversOnce() throws Exception {
+        AtomicInteger notificationCount = new AtomicInteger();
+        roomDb.getInvalidationTracker().addObserver(new InvalidationTracker.Observer("Application", "ApplicationVersion") {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                notificationCount.incrementAndGet();
+            }
+        });
+        mockWebServer.enqueue(new MockResponse().setBody(new Gson().toJson(createApplicationGsons())));
+
+        assertTrue(SyncHelper.syncApplications(context, applicationsService, roomDb));
+        roomDb.getInvalidationTracker().refreshVersionsSync();
+
+        // All the chunks should have been stored in one transaction
+        assertEquals(APPLICATION_COUNT, roomDb.applicationDao().count());
+        assertEquals(1, notificationCount.get());
+    }
+
+    @Test
+    public void syncApplications_serverError() throws Exception {
+        SyncHelper.storeApplications(roomDb, createApplicationGsons());
+        mockWebServer.enqueue(new MockResponse().setResponseCode(HttpURLConnection.HTTP_INTERNAL_ERROR));
+
+        try {
+            SyncHelper.syncApplications(context, applicationsService, roomDb);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // The Applications already stored in the database should still be available for display
+            assertEquals(APPLICATION_COUNT, roomDb.applicationDao().count());
+        }
+    }
+
+    @Test
+    public void syncApplications_connectionDropped() throws Exception {
+        SyncHelper.storeApplications(roomDb, createApplicationGsons());
+        mockWebServer.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START));
+
+        try {
+            SyncHelper.syncApplications(context, applicationsService, roomDb);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // The Applications already stored in the database should still be available for display
+            assertEquals(APPLICATION_COUNT, roomDb.applicationDao().count());
+        }
+    }
+
+    private RoomDb createFileDatabase(String name) {
+        context.deleteDatabase(name);
+        return Room.databaseBuilder(context, RoomDb.class, name).build();
+    }
+
+    private void closeFileDatabase(RoomDb roomDb, String name) {
+        roomDb.close();
+        context.deleteDatabase(name);
+    }
+
+    /**
+     * The previous implementation of {@code InitialSyncActivity#processResponseBody}, where every DAO call runs in
+     * its own transaction.
+     */
+    private static void storeApplicationsOneRowPerTransaction(RoomDb roomDb, List<ApplicationGson> applicationGsons) {
+        for (ApplicationGson applicationGson : applicationGsons) {
+            Application application = roomDb.applicationDao().load(applicationGson.getId());
+            if (application == null) {
+                roomDb.applicationDao().insert(GsonToRoomConverter.getApplication(applicationGson));
+            } else {
+                roomDb.applicationDao().update(GsonToRoomConverter.getApplication(applicationGson));
+                roomDb.applicationVersionDao().delete(applicationGson.getId());
+            }
+            for (ApplicationVersionGson applicationVersionGson : applicationGson.getApplicationVersions()) {
+                roomDb.applicationVersionDao().insert(GsonToRoomConverter.getApplicationVersion(applicationGson, applicationVersionGson));
+            }
+        }
+    }
+
+    private List<ApplicationGson> createApplicationGsons() {
+        List<ApplicationGson> applicationGsons = new ArrayList<>();
+        long applicationVersionId = 1;
+        for (long applicationId = 1; applicationId <= APPLICATION_COUNT; applicationId++) {
+            ApplicationGson applicationGson = new ApplicationGson();
+            applicationGson.setId(applicationId);
+            applicationGson.setPackageName("ai.elimu.test" + applicationId);
+            applicationGson.setInfrastructural(false);
+            applicationGson.setApplicationStatus(ApplicationStatus.ACTIVE);
+
+            List<ApplicationVersionGson> applicationVersionGsons = new ArrayList<>();
+            for (int versionCode = VERSIONS_PER_APPLICATION; versionCode > 0; versionCode--) {
+                ApplicationVersionGson applicationVersionGson = new ApplicationVersionGson();
+                applicationVersionGson.setId(applicationVersionId++);
+                applicationVersionGson.setFileUrl("/apk/ai.elimu.test" + applicationId + "-" + versionCode + ".apk");
+                applicationVersionGson.setFileSizeInKb(1024);
+                applicationVersionGson.setChecksumMd5("d41d8cd98f00b204e9800998ecf8427e");
+                applicationVersionGson.setVersionCode(versionCode);
+                applicationVersionGsons.add(applicationVersionGson);
+            }
+            applicationGson.setApplicationVersions(applicationVersionGsons);
+
+            applicationGsons.add(applicationGson);
+        }
+        return applicationGsons;
+    }
+}
@@ -3,11 +3,15 @@ package ai.elimu.appstore;
 import android.app.Application;
 import android.util.Log;
 
-import ai.elimu.appstore.util.SharedPreferencesHelper;
+import ai.elimu.appstore.install.InstallQueue;
+import ai.elimu.appstore.rest.NetworkStack;
+import ai.elimu.appstore.room.RoomDb;
+import ai.elimu.appstore.util.AppSettings;
+import ai.elimu.appstore.util.LoggingHelper;
+import ai.elimu.appstore.util.StartupHelper;
 import ai.elimu.appstore.util.VersionHelper;
 import ai.elimu.model.enums.Language;
 import retrofit2.Retrofit;
-import retrofit2.converter.gson.GsonConverterFactory;
 import timber.log.Timber;
 
 public class BaseApplication extends Application {
@@ -16,27 +20,56 @@ public class BaseApplication extends Application {
     public void onCreate() {
         Log.i(getClass().getName(), "onCreate");
         super.onCreate();
+        StartupHelper.beginSpan("application_onCreate");
 
         // Log config
-        Timber.plant(new Timber.DebugTree());
+        LoggingHelper.plantTree(BuildConfig.DEBUG);
         Timber.i("onCreate");
 
         VersionHelper.updateAppVersion(getApplicationContext());
+
+        // Open the database in the background while the first Activity is being created, instead of on the first query
+        Language language = AppSettings.getInstance(getApplicationContext()).getLanguage();
+        if (language != null) {
+            RoomDb.databaseWriteExecutor.execute(() -> {
+                StartupHelper.beginSpan("open_database");
+                RoomDb.getDatabase(getApplicationContext(), language).getOpenHelper().getWritableDatabase();
+                StartupHelper.endSpan("open_database");
+            });
+        }
+
+        // Continue updating the Applications that were queued before the process was killed, once the list of
+        // Applications has been displayed. Processes started in the background resume the queue from their entry point
+        // (see InstallQueue#resume).
+        StartupHelper.runDeferred(() -> InstallQueue.getInstance(getApplicationContext()).resume());
+
+        StartupHelper.endSpan("application_onCreate");
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        Timber.i("onTrimMemory");
+        super.onTrimMemory(level);
+
+        Timber.i("level: " + level);
+        if (level >= TRIM_MEMORY_UI_HIDDEN) {
+            // The Applications of the previously selected languages are no longer displayed
+            RoomDb.closeInactiveDatabases(getApplicationContext());
+        }
+    }
+
+    /**
+     * @return The Retrofit instance of the language currently selected. See {@link NetworkStack}.
+     */
     public Retrofit getRetrofit() {
-        Retrofit retrofit = new Retrofit.Builder()
-                .baseUrl(getRestUrl() + "/")
-                .addConverterFactory(GsonConverterFactory.create())
-                .build();
-        return retrofit;
+        return NetworkStack.getInstance(getApplicationContext()).getRetrofit(getRestUrl() + "/");
     }
 
     /**
      * E.g. "http://hin.test.elimu.ai" or "http://hin.elimu.ai"
      */
     public String getBaseUrl() {
-        Language language = SharedPreferencesHelper.getLanguage(getApplicationContext());
+        Language language = AppSettings.getInstance(getApplicationContext()).getLanguage();
         String url = "http://" + language.getIsoCode();
         if (!"release".equals(BuildConfig.BUILD_TYPE)) {
             url += ".test";
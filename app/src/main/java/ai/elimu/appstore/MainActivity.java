@@ -1,24 +1,31 @@
 package ai.elimu.appstore;
 
+import android.app.Activity;
 import android.content.Intent;
 import android.os.Bundle;
 
-import androidx.appcompat.app.AppCompatActivity;
-
+import ai.elimu.appstore.job.SyncJobService;
+import ai.elimu.appstore.room.RoomDb;
+import ai.elimu.appstore.room.dao.ApplicationDao;
 import ai.elimu.appstore.ui.SelectLanguageActivity;
+import ai.elimu.appstore.ui.applications.ApplicationListActivity;
 import ai.elimu.appstore.ui.applications.InitialSyncActivity;
-import ai.elimu.appstore.util.SharedPreferencesHelper;
+import ai.elimu.appstore.util.AppSettings;
+import ai.elimu.appstore.util.StartupHelper;
 import ai.elimu.model.enums.Language;
 import timber.log.Timber;
 
-public class MainActivity extends AppCompatActivity {
+/**
+ * A trampoline, which redirects to the first Activity to be displayed. It does not have a layout of its own, so
+ * nothing is inflated before that Activity is started.
+ */
+public class MainActivity extends Activity {
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         Timber.i("onCreate");
         super.onCreate(savedInstanceState);
-
-        setContentView(R.layout.activity_main);
+        StartupHelper.beginSpan("main_activity");
     }
 
     @Override
@@ -26,18 +33,40 @@ public class MainActivity extends AppCompatActivity {
         Timber.i("onStart");
         super.onStart();
 
-        Language language = SharedPreferencesHelper.getLanguage(getApplicationContext());
+        Language language = AppSettings.getInstance(getApplicationContext()).getLanguage();
         Timber.i("language: " + language);
         if (language == null) {
+            StartupHelper.abandon();
+
             // Redirect to language selection
             Intent intent = new Intent(getApplicationContext(), SelectLanguageActivity.class);
             startActivity(intent);
             finish();
         } else {
-            // Redirect to Activity for downloading list of Applications from REST API
-            Intent intent = new Intent(getApplicationContext(), InitialSyncActivity.class);
-            startActivity(intent);
-            finish();
+            RoomDb roomDb = RoomDb.getDatabase(getApplicationContext());
+            ApplicationDao applicationDao = roomDb.applicationDao();
+            // Not needed for displaying the list of Applications
+            StartupHelper.runDeferred(() -> SyncJobService.schedule(getApplicationContext()));
+
+            RoomDb.databaseWriteExecutor.execute(() -> {
+                int applicationsCount = applicationDao.count();
+                Timber.i("applicationsCount: " + applicationsCount);
+                if (applicationsCount == 0) {
+                    // The startup is not measured if the list of Applications has to be downloaded first
+                    StartupHelper.abandon();
+
+                    // Redirect to Activity for downloading list of Applications from REST API
+                    Intent intent = new Intent(getApplicationContext(), InitialSyncActivity.class);
+                    startActivity(intent);
+                } else {
+                    // Display the Applications already stored in the database, and download updates in the background
+                    Intent intent = new Intent(getApplicationContext(), ApplicationListActivity.class);
+                    intent.putExtra(ApplicationListActivity.EXTRA_SYNC_IN_BACKGROUND, true);
+                    startActivity(intent);
+                }
+                StartupHelper.endSpan("main_activity");
+                finish();
+            });
         }
     }
 }
@@ -0,0 +1,546 @@
+package ai.elimu.appstore.download;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import ai.elimu.appstore.util.ChecksumHelper;
+import okhttp3.Call;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import okio.Okio;
+import timber.log.Timber;
+
+/**
+ * Downloads files with a bounded pool of worker threads.
+ * <p />
+ *
+ * Bytes are written to a {@code .part} file next to the destination file, which is renamed once the download is
+ * complete. If a download is interrupted, it is retried, and resumed from the end of the {@code .part} file with an
+ * HTTP {@code Range} request. The {@code ETag} (or {@code Last-Modified}) of the response is stored next to the
+ * {@code .part} file, and sent as {@code If-Range}, so that the server returns the whole file again if it has changed
+ * in the meantime.
+ * <p />
+ *
+ * At most {@code maxDownloadsPerHost} downloads from the same host are running at a time. The other downloads from
+ * that host wait in a queue, without occupying a worker thread, and the next one is started as soon as a running
+ * download completes or is waiting to be retried.
+ * <p />
+ *
+ * If an MD5 checksum is provided, it is calculated while the bytes are being written, so the file does not have to
+ * be read again afterwards. A file that does not match its checksum is quarantined, and downloaded again. If the
+ * destination file already exists (e.g. it was downloaded by a previous version of the app), it is hashed instead of
+ * being downloaded again, and quarantined if it does not match.
+ * <p />
+ *
+ * Each enqueued download can be cancelled (see {@link Download#cancel()}). The {@code .part} file is kept, so that a
+ * cancelled download can be resumed later.
+ */
+public class DownloadEngine {
+
+    public interface Callback {
+
+        /**
+         * Called on a worker thread.
+         *
+         * @param bytesTotal {@code -1} if not known.
+         */
+        void onProgress(long bytesDownloaded, long bytesTotal);
+
+        /**
+         * Called on a worker thread.
+         */
+        void onSuccess(File file);
+
+        /**
+         * Called on a worker thread.
+         */
+        void onFailure(IOException e);
+    }
+
+    /**
+     * An HTTP error response, which will not succeed if retried.
+     */
+    public static class HttpStatusException extends IOException {
+
+        private final int code;
+
+        public HttpStatusException(Response response) {
+            super("Unexpected response: " + response);
+            code = response.code();
+        }
+
+        public int getCode() {
+            return code;
+        }
+    }
+
+    public static class ChecksumMismatchException extends IOException {
+
+        public ChecksumMismatchException(String message) {
+            super(message);
+        }
+    }
+
+    public static class CancelledException extends IOException {
+
+        public CancelledException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * A download enqueued with {@link #enqueue}.
+     */
+    public static class Download {
+
+        private final CompletableFuture<File> result = new CompletableFuture<>();
+
+        private volatile boolean cancelled;
+
+        private volatile Call call;
+
+        /**
+         * Completed on a worker thread, after the {@link Callback} has been called. Completed exceptionally with an
+         * {@link IOException} if the download failed or was cancelled.
+         */
+        public CompletableFuture<File> getResult() {
+            return result;
+        }
+
+        /**
+         * Stops the download. If it has not yet started, it fails as soon as it is started.
+         */
+        public void cancel() {
+            cancelled = true;
+            Call call = this.call;
+            if (call != null) {
+                call.cancel();
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    /**
+     * An MD5 digest of the first {@code length} bytes of a {@code .part} file.
+     */
+    private static class Checksum {
+
+        private final MessageDigest messageDigest = ChecksumHelper.createMd5Digest();
+
+        private long length;
+
+        private void reset() {
+            messageDigest.reset();
+            length = 0;
+        }
+
+        private void update(byte[] buffer, int bytesRead) {
+            messageDigest.update(buffer, 0, bytesRead);
+            length += bytesRead;
+        }
+
+        /**
+         * Hashes the bytes already stored in a {@code .part} file, e.g. when resuming a download started by a
+         * previous process.
+         */
+        private void update(File partFile, long offset) throws IOException {
+            reset();
+            try (InputStream inputStream = new FileInputStream(partFile)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int bytesRead;
+                while ((length < offset) && ((bytesRead = inputStream.read(buffer, 0, (int) Math.min(buffer.length, offset - length))) != -1)) {
+                    update(buffer, bytesRead);
+                }
+            }
+        }
+
+        private String toHex() {
+            return ChecksumHelper.toHex(messageDigest.digest());
+        }
+    }
+
+    /**
+     * The downloads from the same host.
+     */
+    private static class Host {
+
+        private int running;
+
+        /**
+         * The downloads that will be started once fewer than {@link #maxDownloadsPerHost} are running.
+         */
+        private final Queue<Task> pending = new ArrayDeque<>();
+    }
+
+    /**
+     * An enqueued download, and the state kept between its attempts.
+     */
+    private class Task implements Runnable {
+
+        private final HttpUrl httpUrl;
+
+        private final File file;
+
+        private final String checksumMd5;
+
+        private final Download download;
+
+        private final Callback callback;
+
+        private final Checksum checksum = new Checksum();
+
+        private int attempt;
+
+        private Task(HttpUrl httpUrl, File file, String checksumMd5, Download download, Callback callback) {
+            this.httpUrl = httpUrl;
+            this.file = file;
+            this.checksumMd5 = checksumMd5;
+            this.download = download;
+            this.callback = callback;
+        }
+
+        @Override
+        public void run() {
+            IOException exception = null;
+            boolean retry = false;
+            try {
+                download(this);
+            } catch (HttpStatusException | CancelledException e) {
+                exception = e;
+            } catch (IOException e) {
+                if (download.isCancelled()) {
+                    exception = new CancelledException("Cancelled: " + httpUrl);
+                } else {
+                    Timber.w(e, "Download attempt " + attempt + " of " + maxAttempts + " failed: " + httpUrl);
+                    retry = attempt < maxAttempts;
+                    exception = e;
+                }
+            } finally {
+                // Let the next download from the same host start, also while this one is waiting to be retried
+                release(httpUrl.host());
+            }
+
+            if (retry) {
+                retryExecutor.schedule(() -> schedule(this), retryDelayMillis * attempt, TimeUnit.MILLISECONDS);
+            } else if (exception != null) {
+                Timber.w(exception, "download");
+                callback.onFailure(exception);
+                download.result.completeExceptionally(exception);
+            } else {
+                callback.onSuccess(file);
+                download.result.complete(file);
+            }
+        }
+    }
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final OkHttpClient okHttpClient;
+
+    private final ExecutorService workerExecutor;
+
+    private final ScheduledExecutorService retryExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    private final int maxDownloadsPerHost;
+
+    private final int maxAttempts;
+
+    private final long retryDelayMillis;
+
+    /**
+     * Only accessed while synchronized on the map itself.
+     */
+    private final Map<String, Host> hostsByName = new HashMap<>();
+
+    /**
+     * @param maxDownloads The maximum number of concurrent downloads.
+     * @param maxDownloadsPerHost The maximum number of concurrent downloads from the same host.
+     * @param maxAttempts The number of times a download is attempted before it fails.
+     * @param retryDelayMillis The delay before the first retry. Multiplied by the attempt number for each retry.
+     */
+    public DownloadEngine(OkHttpClient okHttpClient, int maxDownloads, int maxDownloadsPerHost, int maxAttempts, long retryDelayMillis) {
+        this.okHttpClient = okHttpClient;
+        workerExecutor = Executors.newFixedThreadPool(maxDownloads);
+        this.maxDownloadsPerHost = maxDownloadsPerHost;
+        this.maxAttempts = maxAttempts;
+        this.retryDelayMillis = retryDelayMillis;
+    }
+
+    /**
+     * Downloads the file at {@code url} into {@code file} on a worker thread, retrying (and resuming) the download if
+     * it is interrupted or does not match the checksum.
+     *
+     * @param checksumMd5 The expected MD5 checksum of the file, or {@code null} to skip verification.
+     */
+    public Download enqueue(String url, File file, String checksumMd5, Callback callback) {
+        Timber.i("enqueue");
+
+        Download download = new Download();
+        schedule(new Task(HttpUrl.get(url), file, checksumMd5, download, callback));
+        return download;
+    }
+
+    /**
+     * Enqueues the download of the file at {@code url} into {@code file}, and waits until it is complete.
+     *
+     * @param checksumMd5 The expected MD5 checksum of the file, or {@code null} to skip verification.
+     */
+    public void download(String url, File file, String checksumMd5, Callback callback) throws IOException {
+        Download download = enqueue(url, file, checksumMd5, callback);
+        try {
+            download.getResult().get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            download.cancel();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted: " + url);
+        }
+    }
+
+    /**
+     * Starts the {@code task} on a worker thread, or queues it if {@link #maxDownloadsPerHost} downloads from its host
+     * are already running.
+     */
+    private void schedule(Task task) {
+        synchronized (hostsByName) {
+            Host host = hostsByName.get(task.httpUrl.host());
+            if (host == null) {
+                host = new Host();
+                hostsByName.put(task.httpUrl.host(), host);
+            }
+            if (host.running >= maxDownloadsPerHost) {
+                host.pending.add(task);
+                return;
+            }
+            host.running++;
+        }
+        workerExecutor.execute(task);
+    }
+
+    /**
+     * Called when a download from the {@code hostName} is no longer running. Starts the next pending download from the
+     * same host, if any.
+     */
+    private void release(String hostName) {
+        Task nextTask;
+        synchronized (hostsByName) {
+            Host host = hostsByName.get(hostName);
+            nextTask = host.pending.poll();
+            if (nextTask == null) {
+                host.running--;
+                if (host.running == 0) {
+                    hostsByName.remove(hostName);
+                }
+            }
+        }
+        if (nextTask != null) {
+            workerExecutor.execute(nextTask);
+        }
+    }
+
+    /**
+     * Makes the next attempt of the {@code task}.
+     */
+    private void download(Task task) throws IOException {
+        Timber.i("download");
+
+        if ((task.attempt == 0) && (task.checksumMd5 != null) && task.file.exists()) {
+            String md5 = ChecksumHelper.calculateMd5(task.file);
+            if (md5.equalsIgnoreCase(task.checksumMd5)) {
+                Timber.i("The file has already been downloaded: " + task.file);
+                return;
+            }
+            Timber.w("Checksum mismatch for " + task.file + ". Expected " + task.checksumMd5 + ", but was " + md5);
+            ChecksumHelper.quarantine(task.file);
+        }
+
+        if (task.download.isCancelled()) {
+            throw new CancelledException("Cancelled: " + task.httpUrl);
+        }
+        task.attempt++;
+
+        File partFile = getPartFile(task.file);
+        downloadAttempt(task.httpUrl, partFile, task.checksum, task.download, task.callback);
+        if (task.checksumMd5 != null) {
+            String md5 = task.checksum.toHex();
+            task.checksum.reset();
+            if (!md5.equalsIgnoreCase(task.checksumMd5)) {
+                getValidatorFile(partFile).delete();
+                ChecksumHelper.quarantine(partFile);
+                throw new ChecksumMismatchException("Expected checksum " + task.checksumMd5 + ", but was " + md5 + ": " + task.httpUrl);
+            }
+        }
+        if (!partFile.renameTo(task.file)) {
+            throw new IOException("Could not rename " + partFile + " to " + task.file);
+        }
+        getValidatorFile(partFile).delete();
+    }
+
+    /**
+     * @return The file containing the bytes downloaded so far.
+     */
+    public static File getPartFile(File file) {
+        return new File(file.getPath() + ".part");
+    }
+
+    /**
+     * @return The file containing the {@code ETag} (or {@code Last-Modified}) of the response that the bytes in the
+     * {@code partFile} were downloaded from.
+     */
+    static File getValidatorFile(File partFile) {
+        return new File(partFile.getPath() + ".validator");
+    }
+
+    private void downloadAttempt(HttpUrl httpUrl, File partFile, Checksum checksum, Download download, Callback callback) throws IOException {
+        long offset = partFile.length();
+        File validatorFile = getValidatorFile(partFile);
+        Request.Builder requestBuilder = new Request.Builder().url(httpUrl);
+        if (offset > 0) {
+            Timber.i("Resuming download from byte " + offset);
+            requestBuilder.header("Range", "bytes=" + offset + "-");
+            String validator = readValidator(validatorFile);
+            if (validator != null) {
+                requestBuilder.header("If-Range", validator);
+            }
+        }
+        Call call = okHttpClient.newCall(requestBuilder.build());
+        download.call = call;
+        if (download.isCancelled()) {
+            // Cancelled before the call was made visible to Download#cancel
+            call.cancel();
+        }
+        try (Response response = call.execute()) {
+            if (response.code() == 416) {
+                // The partial file does not match the file on the server. Start over.
+                partFile.delete();
+                validatorFile.delete();
+                throw new IOException("Range not satisfiable: " + response);
+            }
+            if (!response.isSuccessful()) {
+                throw new HttpStatusException(response);
+            }
+
+            // If the server ignored the Range header (or the file has changed since the If-Range validator was
+            // stored), the whole file is being returned
+            boolean append = response.code() == HttpURLConnection.HTTP_PARTIAL;
+            if (append) {
+                long contentRangeStart = getContentRangeStart(response.header("Content-Range"));
+                if (contentRangeStart != offset) {
+                    // The bytes would not line up with the partial file. Start over.
+                    partFile.delete();
+                    validatorFile.delete();
+                    checksum.reset();
+                    throw new IOException("Expected Content-Range starting at byte " + offset + ": " + response);
+                }
+                if (checksum.length != offset) {
+                    checksum.update(partFile, offset);
+                }
+            } else {
+                offset = 0;
+                checksum.reset();
+                writeValidator(validatorFile, response);
+            }
+
+            ResponseBody responseBody = response.body();
+            long contentLength = responseBody.contentLength();
+            long bytesTotal = (contentLength == -1) ? -1 : offset + contentLength;
+            long bytesDownloaded = offset;
+            callback.onProgress(bytesDownloaded, bytesTotal);
+            try (InputStream inputStream = responseBody.byteStream();
+                 OutputStream outputStream = new FileOutputStream(partFile, append)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int bytesRead;
+                while ((bytesRead = inputStream.read(buffer)) != -1) {
+                    outputStream.write(buffer, 0, bytesRead);
+                    checksum.update(buffer, bytesRead);
+                    bytesDownloaded += bytesRead;
+                    callback.onProgress(bytesDownloaded, bytesTotal);
+                }
+            }
+            if ((bytesTotal != -1) && (bytesDownloaded != bytesTotal)) {
+                throw new IOException("Expected " + bytesTotal + " bytes, but received " + bytesDownloaded);
+            }
+        }
+    }
+
+    /**
+     * @param contentRange E.g. {@code "bytes 1000-1999/2000"}.
+     * @return E.g. {@code 1000}, or {@code -1} if the header is missing or cannot be parsed.
+     */
+    static long getContentRangeStart(String contentRange) {
+        if ((contentRange == null) || !contentRange.startsWith("bytes ")) {
+            return -1;
+        }
+        int endIndex = contentRange.indexOf('-', "bytes ".length());
+        if (endIndex == -1) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentRange.substring("bytes ".length(), endIndex).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return {@code null} if no validator has been stored, e.g. for a partial file downloaded by a previous version
+     * of the app.
+     */
+    private static String readValidator(File validatorFile) {
+        if (!validatorFile.exists()) {
+            return null;
+        }
+        try (BufferedSource bufferedSource = Okio.buffer(Okio.source(validatorFile))) {
+            return bufferedSource.readUtf8();
+        } catch (IOException e) {
+            Timber.w(e, "readValidator");
+            return null;
+        }
+    }
+
+    /**
+     * Stores the strong {@code ETag} of the {@code response}, or its {@code Last-Modified} date if there is none.
+     * Weak {@code ETag}s cannot be used with {@code If-Range}.
+     */
+    private static void writeValidator(File validatorFile, Response response) throws IOException {
+        String validator = response.header("ETag");
+        if ((validator == null) || validator.startsWith("W/")) {
+            validator = response.header("Last-Modified");
+        }
+        if (validator == null) {
+            validatorFile.delete();
+            return;
+        }
+        try (OutputStream outputStream = new FileOutputStream(validatorFile)) {
+            outputStream.write(validator.getBytes("UTF-8"));
+        }
+    }
+}
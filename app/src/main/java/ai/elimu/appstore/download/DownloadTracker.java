@@ -0,0 +1,220 @@
+package ai.elimu.appstore.download;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+
+import ai.elimu.appstore.BaseApplication;
+import ai.elimu.appstore.rest.NetworkStack;
+import ai.elimu.appstore.room.entity.ApplicationVersion;
+import ai.elimu.appstore.util.AppSettings;
+import ai.elimu.appstore.util.ChecksumHelper;
+import ai.elimu.appstore.util.FileHelper;
+import ai.elimu.model.enums.Language;
+import timber.log.Timber;
+
+/**
+ * Keeps track of all APK downloads enqueued into the {@link DownloadEngine}, and reports their progress.
+ * <p />
+ *
+ * Progress is reported to listeners at most once every {@link #PROGRESS_INTERVAL_MILLIS} per download.
+ * <p />
+ *
+ * Each language has its own database, and the same Application ID can refer to different Applications in different
+ * languages. Downloads are therefore identified by the language that was selected when they were enqueued, together
+ * with the Application ID.
+ */
+public class DownloadTracker {
+
+    public static final long PROGRESS_INTERVAL_MILLIS = 1000;
+
+    private static final int MAX_DOWNLOADS = 3;
+
+    private static final int MAX_DOWNLOADS_PER_HOST = 2;
+
+    private static final int MAX_ATTEMPTS = 5;
+
+    private static final long RETRY_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    /**
+     * Listeners are called on the main thread.
+     */
+    public interface Listener {
+
+        void onDownloadProgress(Language language, long applicationId, Progress progress);
+
+        void onDownloadComplete(Language language, long applicationId, boolean successful);
+    }
+
+    public static class Progress {
+
+        private final long bytesDownloaded;
+
+        /**
+         * {@code -1} if not yet known.
+         */
+        private final long bytesTotal;
+
+        public Progress(long bytesDownloaded, long bytesTotal) {
+            this.bytesDownloaded = bytesDownloaded;
+            this.bytesTotal = bytesTotal;
+        }
+
+        public long getBytesDownloaded() {
+            return bytesDownloaded;
+        }
+
+        public long getBytesTotal() {
+            return bytesTotal;
+        }
+    }
+
+    private static volatile DownloadTracker INSTANCE;
+
+    private final Context context;
+
+    private final DownloadEngine downloadEngine;
+
+    private final Map<String, Progress> progressByKey = new ConcurrentHashMap<>();
+
+    private final Set<Listener> listeners = new CopyOnWriteArraySet<>();
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private DownloadTracker(Context context) {
+        this.context = context.getApplicationContext();
+        downloadEngine = new DownloadEngine(NetworkStack.getInstance(context).getDownloadClient(), MAX_DOWNLOADS, MAX_DOWNLOADS_PER_HOST, MAX_ATTEMPTS, RETRY_DELAY_MILLIS);
+    }
+
+    public static DownloadTracker getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (DownloadTracker.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new DownloadTracker(context);
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Enqueues the download of an APK file for the currently selected language, unless the Application's APK file is
+     * already being downloaded.
+     *
+     * @param allowedOverMetered If {@code false}, the download is skipped while on a metered network.
+     * @return The enqueued download, or {@code null} if it was skipped, or if the APK file is already being
+     * downloaded.
+     */
+    public DownloadEngine.Download downloadApk(long applicationId, String packageName, ApplicationVersion applicationVersion, boolean allowedOverMetered) {
+        Timber.i("downloadApk");
+
+        if (!allowedOverMetered) {
+            ConnectivityManager connectivityManager = context.getSystemService(ConnectivityManager.class);
+            if (connectivityManager.isActiveNetworkMetered()) {
+                Timber.i("Skipping download on metered network");
+                return null;
+            }
+        }
+        Language language = AppSettings.getInstance(context).getLanguage();
+        String key = getKey(language, applicationId);
+        if (progressByKey.putIfAbsent(key, new Progress(0, -1)) != null) {
+            Timber.i("The APK file is already being downloaded");
+            return null;
+        }
+
+        BaseApplication baseApplication = (BaseApplication) context;
+        String fileUrl = baseApplication.getBaseUrl() + applicationVersion.getFileUrl();
+        Timber.i("fileUrl: " + fileUrl);
+        File apkFile = FileHelper.getApkFile(packageName, applicationVersion.getVersionCode(), context);
+        Timber.i("apkFile: " + apkFile);
+        return downloadEngine.enqueue(fileUrl, apkFile, applicationVersion.getChecksumMd5(), new DownloadEngine.Callback() {
+
+            private long lastProgressTime;
+
+            @Override
+            public void onProgress(long bytesDownloaded, long bytesTotal) {
+                long time = SystemClock.elapsedRealtime();
+                if ((time - lastProgressTime) < PROGRESS_INTERVAL_MILLIS) {
+                    return;
+                }
+                lastProgressTime = time;
+                Progress progress = new Progress(bytesDownloaded, bytesTotal);
+                progressByKey.put(key, progress);
+                mainHandler.post(() -> {
+                    for (Listener listener : listeners) {
+                        listener.onDownloadProgress(language, applicationId, progress);
+                    }
+                });
+            }
+
+            @Override
+            public void onSuccess(File file) {
+                // The checksum was verified during the download, so the file does not have to be hashed again
+                ChecksumHelper.storeVerified(context, file, applicationVersion.getChecksumMd5());
+                onComplete(language, applicationId, true);
+            }
+
+            @Override
+            public void onFailure(IOException e) {
+                // The file may have been quarantined
+                ChecksumHelper.forget(context, apkFile);
+                onComplete(language, applicationId, false);
+            }
+        });
+    }
+
+    /**
+     * @return {@code true} if the Application's APK file is being downloaded for the currently selected language.
+     */
+    public boolean isDownloading(long applicationId) {
+        return isDownloading(AppSettings.getInstance(context).getLanguage(), applicationId);
+    }
+
+    public boolean isDownloading(Language language, long applicationId) {
+        return progressByKey.containsKey(getKey(language, applicationId));
+    }
+
+    /**
+     * @return {@code null} if the Application's APK file is not being downloaded for the currently selected language.
+     */
+    public Progress getProgress(long applicationId) {
+        return progressByKey.get(getKey(AppSettings.getInstance(context).getLanguage(), applicationId));
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private void onComplete(Language language, long applicationId, boolean successful) {
+        Timber.i("onComplete");
+
+        Timber.i("language: " + language + ", applicationId: " + applicationId + ", successful: " + successful);
+        progressByKey.remove(getKey(language, applicationId));
+        mainHandler.post(() -> {
+            for (Listener listener : listeners) {
+                listener.onDownloadComplete(language, applicationId, successful);
+            }
+        });
+    }
+
+    /**
+     * @return E.g. "hin/12"
+     */
+    private static String getKey(Language language, long applicationId) {
+        return language.getIsoCode() + "/" + applicationId;
+    }
+}
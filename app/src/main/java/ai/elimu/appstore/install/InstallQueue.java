@@ -0,0 +1,303 @@
+package ai.elimu.appstore.install;
+
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
+import android.widget.Toast;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import ai.elimu.appstore.R;
+import ai.elimu.appstore.download.DownloadTracker;
+import ai.elimu.appstore.receiver.InstallResultReceiver;
+import ai.elimu.appstore.room.RoomDb;
+import ai.elimu.appstore.room.entity.Application;
+import ai.elimu.appstore.room.entity.ApplicationVersion;
+import ai.elimu.appstore.room.entity.ApplicationWithNewestVersion;
+import ai.elimu.appstore.util.AppSettings;
+import ai.elimu.appstore.util.ChecksumHelper;
+import ai.elimu.appstore.util.DownloadHelper;
+import ai.elimu.appstore.util.FileHelper;
+import ai.elimu.appstore.util.InstallationHelper;
+import ai.elimu.appstore.util.SharedPreferencesHelper;
+import ai.elimu.model.enums.Language;
+import timber.log.Timber;
+
+/**
+ * Updates all installed Applications that have a newer version available, with one tap: the APK files are downloaded
+ * in parallel (see {@link DownloadTracker}), and installed one after the other with {@code PackageInstaller}
+ * sessions (see {@link InstallationHelper#installApk}) as soon as they have been downloaded.
+ * <p />
+ *
+ * The queue of package names is stored in {@link SharedPreferencesHelper#storeUpdateQueue}, so that it is resumed (see
+ * {@link #resume()}) if the process is killed before all Applications have been updated. Applications that are
+ * up-to-date, or that are no longer part of the selected language, are removed from the queue. An Application whose
+ * download or installation fails is also removed, so that it is not retried indefinitely.
+ * <p />
+ *
+ * Android asks the user to confirm each installation, unless the app is the device owner. See
+ * {@link InstallResultReceiver}. A session that has not been confirmed within {@link #PENDING_SESSION_TIMEOUT_MILLIS}
+ * is abandoned, so that an ignored confirmation does not block the rest of the queue.
+ */
+public class InstallQueue {
+
+    private static final int NO_SESSION = -1;
+
+    public static final long PENDING_SESSION_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(15);
+
+    private static volatile InstallQueue INSTANCE;
+
+    private final Context context;
+
+    private final DownloadTracker downloadTracker;
+
+    /**
+     * All changes to the queue are made on this thread, one after the other.
+     */
+    private final ScheduledExecutorService queueExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * The session currently being installed. Only one session is installed at a time, so that the user is asked for
+     * one confirmation at a time.
+     */
+    private int installingSessionId = NO_SESSION;
+
+    private final Map<Integer, String> packageNameBySessionId = new HashMap<>();
+
+    /**
+     * The package names whose APK file has been requested from the {@link DownloadTracker} by this process, so that a
+     * failed download (which the {@link DownloadTracker} has already retried) is not requested again.
+     */
+    private final Set<String> downloadRequestedPackageNames = new HashSet<>();
+
+    /**
+     * Whether the queue stored by a previous process has been resumed. See {@link #resume()}.
+     */
+    private final AtomicBoolean resumed = new AtomicBoolean();
+
+    private InstallQueue(Context context) {
+        this.context = context.getApplicationContext();
+        downloadTracker = DownloadTracker.getInstance(context);
+        downloadTracker.addListener(new DownloadTracker.Listener() {
+            @Override
+            public void onDownloadProgress(Language language, long applicationId, DownloadTracker.Progress progress) {}
+
+            @Override
+            public void onDownloadComplete(Language language, long applicationId, boolean successful) {
+                queueExecutor.execute(() -> processQueue());
+            }
+        });
+    }
+
+    public static InstallQueue getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (InstallQueue.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new InstallQueue(context);
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Adds every installed Application that has a newer version available to the queue.
+     */
+    public void updateAll() {
+        Timber.i("updateAll");
+
+        queueExecutor.execute(() -> {
+            List<String> queue = SharedPreferencesHelper.getUpdateQueue(context);
+            int count = 0;
+            for (ApplicationWithNewestVersion applicationWithNewestVersion : DownloadHelper.getApplicationUpdates(context)) {
+                String packageName = applicationWithNewestVersion.getApplication().getPackageName();
+                if (!queue.contains(packageName)) {
+                    queue.add(packageName);
+                    downloadRequestedPackageNames.remove(packageName);
+                    count++;
+                }
+            }
+            Timber.i("count: " + count);
+            SharedPreferencesHelper.storeUpdateQueue(context, queue);
+
+            int updateCount = queue.size();
+            mainHandler.post(() -> {
+                String text = (updateCount == 0)
+                        ? context.getString(R.string.update_all_none)
+                        : context.getResources().getQuantityString(R.plurals.update_all_count, updateCount, updateCount);
+                Toast.makeText(context, text, Toast.LENGTH_SHORT).show();
+            });
+
+            processQueue();
+        });
+    }
+
+    /**
+     * Continues updating the Applications that were queued before the process was killed.
+     * <p />
+     *
+     * Called from every entry point that can start the process in the background ({@code SyncJobService},
+     * {@code BootReceiver} and {@link InstallResultReceiver}), and once the list of Applications has been displayed.
+     * Only the first call per process has an effect.
+     */
+    public void resume() {
+        if (!resumed.compareAndSet(false, true)) {
+            return;
+        }
+        Timber.i("resume");
+
+        queueExecutor.execute(() -> processQueue());
+    }
+
+    /**
+     * Called by {@link InstallResultReceiver} when an installation has completed (or failed).
+     *
+     * @param packageName {@code null} if not known.
+     */
+    public void onInstallComplete(int sessionId, String packageName, boolean successful) {
+        Timber.i("onInstallComplete");
+
+        Timber.i("sessionId: " + sessionId + ", packageName: " + packageName + ", successful: " + successful);
+        queueExecutor.execute(() -> complete(sessionId, packageName));
+    }
+
+    /**
+     * Abandons the session if the user has not yet confirmed (or rejected) its installation.
+     */
+    private void onSessionTimeout(int sessionId) {
+        if (installingSessionId != sessionId) {
+            return;
+        }
+        Timber.w("The installation of session " + sessionId + " was not confirmed in time. Abandoning it.");
+        try {
+            context.getPackageManager().getPackageInstaller().abandonSession(sessionId);
+        } catch (SecurityException | IllegalStateException e) {
+            // E.g. the session no longer exists
+            Timber.w(e, "abandonSession");
+        }
+        InstallResultReceiver.cancelConfirmationNotification(context, sessionId);
+        complete(sessionId, null);
+    }
+
+    /**
+     * Removes the session's Application from the queue, and continues with the next one.
+     */
+    private void complete(int sessionId, String packageName) {
+        String sessionPackageName = packageNameBySessionId.remove(sessionId);
+        if (sessionPackageName == null) {
+            // E.g. the process was killed while the user was asked to confirm the installation
+            sessionPackageName = packageName;
+        }
+        if (sessionPackageName != null) {
+            List<String> queue = SharedPreferencesHelper.getUpdateQueue(context);
+            queue.remove(sessionPackageName);
+            SharedPreferencesHelper.storeUpdateQueue(context, queue);
+        }
+        if ((installingSessionId == sessionId) || (installingSessionId == NO_SESSION)) {
+            installingSessionId = NO_SESSION;
+            processQueue();
+        }
+    }
+
+    /**
+     * Enqueues the downloads of the queued Applications, and installs the next one that has been downloaded.
+     */
+    private void processQueue() {
+        Timber.i("processQueue");
+
+        List<String> queue = SharedPreferencesHelper.getUpdateQueue(context);
+        if (queue.isEmpty()) {
+            return;
+        }
+        if (AppSettings.getInstance(context).getLanguage() == null) {
+            return;
+        }
+
+        Map<String, ApplicationWithNewestVersion> applicationsByPackageName = new HashMap<>();
+        for (ApplicationWithNewestVersion applicationWithNewestVersion : RoomDb.getDatabase(context).applicationDao().loadAllWithNewestVersion()) {
+            applicationsByPackageName.put(applicationWithNewestVersion.getApplication().getPackageName(), applicationWithNewestVersion);
+        }
+
+        ApplicationWithNewestVersion nextApplication = null;
+        List<String> updatedQueue = new ArrayList<>(queue);
+        Iterator<String> iterator = updatedQueue.iterator();
+        while (iterator.hasNext()) {
+            String packageName = iterator.next();
+            ApplicationWithNewestVersion applicationWithNewestVersion = applicationsByPackageName.get(packageName);
+            ApplicationVersion newestApplicationVersion = (applicationWithNewestVersion == null) ? null : applicationWithNewestVersion.getNewestApplicationVersion();
+            if ((newestApplicationVersion == null) || (InstallationHelper.getVersionCodeOfInstalledApplication(packageName, context) >= newestApplicationVersion.getVersionCode())) {
+                Timber.i("Removing " + packageName + " from the queue");
+                iterator.remove();
+                continue;
+            }
+
+            Application application = applicationWithNewestVersion.getApplication();
+            if (downloadTracker.isDownloading(application.getId())) {
+                continue;
+            }
+            File apkFile = FileHelper.getApkFile(packageName, newestApplicationVersion.getVersionCode(), context);
+            if (apkFile.exists()) {
+                if (nextApplication == null) {
+                    nextApplication = applicationWithNewestVersion;
+                }
+            } else if (downloadRequestedPackageNames.add(packageName)) {
+                // Downloaded in parallel, while the previous Applications are being installed
+                downloadTracker.downloadApk(application.getId(), packageName, newestApplicationVersion, true);
+            } else {
+                Timber.w("The download of " + packageName + " failed");
+                iterator.remove();
+            }
+        }
+        if (!updatedQueue.equals(queue)) {
+            SharedPreferencesHelper.storeUpdateQueue(context, updatedQueue);
+        }
+
+        if ((nextApplication != null) && (installingSessionId == NO_SESSION)) {
+            install(nextApplication);
+        }
+    }
+
+    private void install(ApplicationWithNewestVersion applicationWithNewestVersion) {
+        Timber.i("install");
+
+        String packageName = applicationWithNewestVersion.getApplication().getPackageName();
+        ApplicationVersion applicationVersion = applicationWithNewestVersion.getNewestApplicationVersion();
+        File apkFile = FileHelper.getApkFile(packageName, applicationVersion.getVersionCode(), context);
+        Intent intent = new Intent(context, InstallResultReceiver.class);
+        PendingIntent pendingIntent = PendingIntent.getBroadcast(context, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+        try {
+            int sessionId = InstallationHelper.installApk(context, apkFile, packageName, applicationVersion.getChecksumMd5(), pendingIntent.getIntentSender());
+            installingSessionId = sessionId;
+            packageNameBySessionId.put(sessionId, packageName);
+            queueExecutor.schedule(() -> onSessionTimeout(sessionId), PENDING_SESSION_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (IOException | RuntimeException e) {
+            Timber.w(e, "installApk");
+
+            if (e instanceof IOException) {
+                // Allow the APK file to be downloaded again
+                ChecksumHelper.quarantine(apkFile);
+                ChecksumHelper.forget(context, apkFile);
+            }
+            List<String> queue = SharedPreferencesHelper.getUpdateQueue(context);
+            queue.remove(packageName);
+            SharedPreferencesHelper.storeUpdateQueue(context, queue);
+            processQueue();
+        }
+    }
+}
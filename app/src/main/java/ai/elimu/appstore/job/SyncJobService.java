@@ -0,0 +1,151 @@
+package ai.elimu.appstore.job;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import ai.elimu.appstore.download.DownloadEngine;
+import ai.elimu.appstore.install.InstallQueue;
+import ai.elimu.appstore.room.RoomDb;
+import ai.elimu.appstore.util.AppSettings;
+import ai.elimu.appstore.util.DownloadHelper;
+import ai.elimu.appstore.util.SyncHelper;
+import timber.log.Timber;
+
+/**
+ * Downloads the list of Applications from the REST API, and pre-fetches the APK files of available updates, while
+ * the device is charging and connected to an unmetered network. The job runs until the pre-fetched APK files have been
+ * downloaded, and a failed download is retried with the job.
+ * <p />
+ *
+ * The job does not require the device to be idle, since idle jobs cannot have a backoff policy, and a failed
+ * synchronization is retried with exponential backoff.
+ */
+public class SyncJobService extends JobService {
+
+    static final int JOB_ID = 1;
+
+    /**
+     * The downloads enqueued by the running job.
+     */
+    private final List<DownloadEngine.Download> downloads = new CopyOnWriteArrayList<>();
+
+    private volatile boolean stopped;
+
+    /**
+     * Schedules the next background synchronization, unless one has already been scheduled.
+     */
+    public static void schedule(Context context) {
+        Timber.i("schedule");
+
+        JobScheduler jobScheduler = context.getSystemService(JobScheduler.class);
+        if (jobScheduler.getPendingJob(JOB_ID) != null) {
+            Timber.i("The job has already been scheduled");
+            return;
+        }
+        schedule(context, new SyncSchedule(new Random()).getNextDelayMillis());
+    }
+
+    static void schedule(Context context, long delayMillis) {
+        Timber.i("schedule");
+
+        Timber.i("delayMillis: " + delayMillis);
+        ComponentName componentName = new ComponentName(context, SyncJobService.class);
+        JobInfo jobInfo = new JobInfo.Builder(JOB_ID, componentName)
+                .setMinimumLatency(delayMillis)
+                .setRequiresCharging(true)
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_UNMETERED)
+                .setBackoffCriteria(SyncSchedule.INITIAL_BACKOFF_MILLIS, JobInfo.BACKOFF_POLICY_EXPONENTIAL)
+                .setPersisted(true)
+                .build();
+        JobScheduler jobScheduler = context.getSystemService(JobScheduler.class);
+        jobScheduler.schedule(jobInfo);
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        Timber.i("onStartJob");
+
+        // The process may have been started for this job
+        InstallQueue.getInstance(getApplicationContext()).resume();
+
+        if (AppSettings.getInstance(getApplicationContext()).getLanguage() == null) {
+            // The language has not yet been selected
+            return false;
+        }
+
+        stopped = false;
+        downloads.clear();
+        RoomDb.databaseWriteExecutor.execute(() -> {
+            List<DownloadEngine.Download> enqueuedDownloads;
+            try {
+                SyncHelper.syncApplications(getApplicationContext());
+                enqueuedDownloads = DownloadHelper.downloadApplicationUpdates(getApplicationContext(), false);
+            } catch (IOException | RuntimeException e) {
+                Timber.w(e, "onStartJob");
+
+                // Retry with exponential backoff
+                jobFinished(params, true);
+                return;
+            }
+            downloads.addAll(enqueuedDownloads);
+            if (stopped) {
+                // onStopJob was called while the downloads were being enqueued
+                cancelDownloads();
+                return;
+            }
+
+            // Keep the job running (and the device awake) until every download has completed or failed
+            CompletableFuture<?>[] results = new CompletableFuture<?>[enqueuedDownloads.size()];
+            for (int i = 0; i < results.length; i++) {
+                results[i] = enqueuedDownloads.get(i).getResult();
+            }
+            CompletableFuture.allOf(results).whenComplete((result, throwable) -> {
+                if (stopped) {
+                    // The job has already been rescheduled by onStopJob
+                    return;
+                }
+                if (throwable != null) {
+                    Timber.w(throwable, "A download failed");
+
+                    // Retry with exponential backoff
+                    jobFinished(params, true);
+                    return;
+                }
+
+                // Schedule the next synchronization. Note that this has to be done after the current job has finished,
+                // since scheduling a job with the same ID stops the currently running one.
+                jobFinished(params, false);
+                schedule(getApplicationContext(), new SyncSchedule(new Random()).getNextDelayMillis());
+            });
+        });
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        Timber.i("onStopJob");
+
+        // The constraints are no longer met. Stop the downloads (their .part files are kept), and retry later.
+        stopped = true;
+        cancelDownloads();
+        return true;
+    }
+
+    private void cancelDownloads() {
+        Timber.i("cancelDownloads");
+
+        for (DownloadEngine.Download download : downloads) {
+            download.cancel();
+        }
+    }
+}
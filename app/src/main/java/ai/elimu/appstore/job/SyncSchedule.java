@@ -0,0 +1,38 @@
+package ai.elimu.appstore.job;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calculates when the next background synchronization should run.
+ * <p />
+ *
+ * A random delay is added to the interval, so that the devices in a classroom (which are often charged at the
+ * same time) do not all connect to the server at once.
+ */
+public class SyncSchedule {
+
+    public static final long INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(24);
+
+    public static final long MAX_JITTER_MILLIS = TimeUnit.HOURS.toMillis(6);
+
+    /**
+     * The initial delay before retrying a failed synchronization. Doubled after each failure.
+     */
+    public static final long INITIAL_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(15);
+
+    private final Random random;
+
+    public SyncSchedule(Random random) {
+        this.random = random;
+    }
+
+    /**
+     * @return The minimum delay (in milliseconds) until the next synchronization, between
+     * {@link #INTERVAL_MILLIS} and {@link #INTERVAL_MILLIS} + {@link #MAX_JITTER_MILLIS}.
+     */
+    public long getNextDelayMillis() {
+        long jitterMillis = (long) (random.nextDouble() * MAX_JITTER_MILLIS);
+        return INTERVAL_MILLIS + jitterMillis;
+    }
+}
@@ -1,15 +1,39 @@
 package ai.elimu.appstore.provider;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.net.Uri;
+import android.text.TextUtils;
+import android.util.Log;
+
+import androidx.sqlite.db.SupportSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteQueryBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 import ai.elimu.appstore.BuildConfig;
+import ai.elimu.appstore.room.EnumConverter;
 import ai.elimu.appstore.room.RoomDb;
-import ai.elimu.appstore.room.dao.ApplicationDao;
+import ai.elimu.appstore.room.entity.Application;
+import ai.elimu.appstore.room.entity.ApplicationVersion;
+import ai.elimu.appstore.util.AppSettings;
+import ai.elimu.appstore.util.LoggingHelper;
+import ai.elimu.model.enums.Language;
 import timber.log.Timber;
 
 public class ApplicationProvider extends ContentProvider {
@@ -17,14 +41,57 @@ public class ApplicationProvider extends ContentProvider {
     public static final String AUTHORITY = BuildConfig.APPLICATION_ID + ".provider.application_provider";
 
     private static final String TABLE_APPLICATIONS = "applications";
+    private static final String TABLE_APPLICATION_VERSIONS = "application_versions";
+
+    public static final Uri CONTENT_URI_APPLICATIONS = Uri.parse("content://" + AUTHORITY + "/" + TABLE_APPLICATIONS);
+
+    /**
+     * content://&lt;authority&gt;/applications
+     */
     private static final int CODE_APPLICATIONS = 1;
 
+    /**
+     * content://&lt;authority&gt;/applications/&lt;id&gt;
+     */
+    private static final int CODE_APPLICATION_ID = 2;
+
+    /**
+     * content://&lt;authority&gt;/applications/&lt;packageName&gt;
+     */
+    private static final int CODE_APPLICATION_PACKAGE_NAME = 3;
+
+    /**
+     * content://&lt;authority&gt;/applications/&lt;id&gt;/application_versions
+     */
+    private static final int CODE_APPLICATION_VERSIONS = 4;
+
     private static final UriMatcher MATCHER = new UriMatcher(UriMatcher.NO_MATCH);
 
     static {
         MATCHER.addURI(AUTHORITY, TABLE_APPLICATIONS, CODE_APPLICATIONS);
+        // Must be added before "applications/*", since the first matching URI is used
+        MATCHER.addURI(AUTHORITY, TABLE_APPLICATIONS + "/#", CODE_APPLICATION_ID);
+        MATCHER.addURI(AUTHORITY, TABLE_APPLICATIONS + "/*", CODE_APPLICATION_PACKAGE_NAME);
+        MATCHER.addURI(AUTHORITY, TABLE_APPLICATIONS + "/#/" + TABLE_APPLICATION_VERSIONS, CODE_APPLICATION_VERSIONS);
     }
 
+    private static final Set<String> APPLICATION_COLUMNS = new HashSet<>(Arrays.asList(CatalogCache.APPLICATION_COLUMNS));
+
+    private static final Set<String> APPLICATION_VERSION_COLUMNS = new HashSet<>(Arrays.asList(CatalogCache.APPLICATION_VERSION_COLUMNS));
+
+    /**
+     * One cache per database (i.e. per language), shared by all the instances of the provider in the process, since
+     * {@link #notifyChange} is called by the synchronization without an instance. The cache of a database that has
+     * been closed is garbage collected together with the database.
+     */
+    private static final Map<RoomDb, CatalogCache> CATALOG_CACHES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * The IDs of the Applications changed by the {@link #applyBatch(ArrayList)} in progress on the current thread
+     * (if any), so that client apps are notified once the batch has been committed instead of once per operation.
+     */
+    private final ThreadLocal<Set<Long>> batchApplicationIds = new ThreadLocal<>();
+
     @Override
     public boolean onCreate() {
         Timber.i("onCreate");
@@ -32,30 +99,135 @@ public class ApplicationProvider extends ContentProvider {
         return true;
     }
 
+    /**
+     * The {@code projection} and {@code sortOrder} may only contain the names of the table's columns. The
+     * {@code selection} is combined with the condition of the URI (if any), e.g. {@code id = ?} for
+     * {@code applications/<id>}, so that SQLite can use the table's indices.
+     * <p />
+     *
+     * Queries without a {@code selection} or {@code sortOrder} are served from memory. See {@link CatalogCache}.
+     */
     @Override
     public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
-        Timber.i("query");
+        // Called every time a client app is resumed
+        if (LoggingHelper.isLoggable(Log.DEBUG)) {
+            Timber.d("query (uri: %s)", uri);
+        }
 
-        Timber.i("uri: " + uri);
-        Timber.i("projection: " + projection);
-        Timber.i("selection: " + selection);
-        Timber.i("selectionArgs: " + selectionArgs);
-        Timber.i("sortOrder: " + sortOrder);
-
-        final int code = MATCHER.match(uri);
-        if (code == CODE_APPLICATIONS) {
-            Context context = getContext();
-            if (context == null) {
-                return null;
-            }
-            RoomDb roomDb = RoomDb.getDatabase(getContext());
-            ApplicationDao applicationDao = roomDb.applicationDao();
-            Cursor cursor = applicationDao.loadAllAsCursor();
-            cursor.setNotificationUri(context.getContentResolver(), uri);
+        Context context = getContext();
+        if (context == null) {
+            return null;
+        }
+
+        RoomDb roomDb = getDatabase(context);
+        if (roomDb == null) {
+            return null;
+        }
+
+        int code = MATCHER.match(uri);
+        if (TextUtils.isEmpty(selection) && TextUtils.isEmpty(sortOrder)) {
+            Cursor cursor = queryCatalogCache(roomDb, uri, code, projection);
+            cursor.setNotificationUri(context.getContentResolver(), getNotificationUri(uri, code));
             return cursor;
-        } else {
-            throw new IllegalArgumentException("Unknown URI: " + uri);
         }
+
+        String table;
+        Set<String> columns;
+        switch (code) {
+            case CODE_APPLICATIONS:
+                table = "Application";
+                columns = APPLICATION_COLUMNS;
+                checkSelection(selection);
+                break;
+            case CODE_APPLICATION_ID:
+                table = "Application";
+                columns = APPLICATION_COLUMNS;
+                selection = appendSelection(selection, "id = ?");
+                selectionArgs = appendSelectionArg(selectionArgs, String.valueOf(parseId(uri, uri.getLastPathSegment())));
+                break;
+            case CODE_APPLICATION_PACKAGE_NAME:
+                table = "Application";
+                columns = APPLICATION_COLUMNS;
+                selection = appendSelection(selection, "packageName = ?");
+                selectionArgs = appendSelectionArg(selectionArgs, uri.getLastPathSegment());
+                break;
+            case CODE_APPLICATION_VERSIONS:
+                table = "ApplicationVersion";
+                columns = APPLICATION_VERSION_COLUMNS;
+                selection = appendSelection(selection, "applicationId = ?");
+                selectionArgs = appendSelectionArg(selectionArgs, String.valueOf(parseId(uri, uri.getPathSegments().get(1))));
+                if (TextUtils.isEmpty(sortOrder)) {
+                    sortOrder = "versionCode DESC";
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown URI: " + uri);
+        }
+        checkColumns(projection, columns);
+        checkSortOrder(sortOrder, columns);
+
+        SupportSQLiteQuery query = SupportSQLiteQueryBuilder.builder(table)
+                .columns(projection)
+                .selection(selection, selectionArgs)
+                .orderBy(sortOrder)
+                .create();
+        if (LoggingHelper.isLoggable(Log.DEBUG)) {
+            Timber.d("query.getSql(): %s", query.getSql());
+        }
+        Cursor cursor = roomDb.query(query);
+        cursor.setNotificationUri(context.getContentResolver(), getNotificationUri(uri, code));
+        if (table.equals("Application")) {
+            cursor = new SkillsCursorWrapper(cursor);
+        }
+        return cursor;
+    }
+
+    private static Cursor queryCatalogCache(RoomDb roomDb, Uri uri, int code, String[] projection) {
+        CatalogCache.Snapshot snapshot = getCatalogCache(roomDb).get(roomDb);
+        switch (code) {
+            case CODE_APPLICATIONS:
+                return snapshot.queryApplications(projection);
+            case CODE_APPLICATION_ID:
+                return snapshot.queryApplication(parseId(uri, uri.getLastPathSegment()), projection);
+            case CODE_APPLICATION_PACKAGE_NAME:
+                return snapshot.queryApplication(uri.getLastPathSegment(), projection);
+            case CODE_APPLICATION_VERSIONS:
+                return snapshot.queryApplicationVersions(parseId(uri, uri.getPathSegments().get(1)), projection);
+            default:
+                throw new IllegalArgumentException("Unknown URI: " + uri);
+        }
+    }
+
+    /**
+     * @return The database of the selected language, or {@code null} if no language has been selected yet (e.g.
+     * before the onboarding has been completed), in which case there are no Applications.
+     */
+    private static RoomDb getDatabase(Context context) {
+        Language language = AppSettings.getInstance(context).getLanguage();
+        if (language == null) {
+            // The Applications are downloaded once a language has been selected
+            return null;
+        }
+        return RoomDb.getDatabase(context, language);
+    }
+
+    /**
+     * The {@code #} of {@link UriMatcher} matches any number of digits, which may not fit in a {@code long}.
+     */
+    private static long parseId(Uri uri, String pathSegment) {
+        try {
+            return Long.parseLong(pathSegment);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Unknown URI: " + uri, e);
+        }
+    }
+
+    /**
+     * The changes are notified by ID (see {@link #notifyChange}), so a lookup by package name is notified about
+     * changes to any of the Applications.
+     */
+    private static Uri getNotificationUri(Uri uri, int code) {
+        return (code == CODE_APPLICATION_PACKAGE_NAME) ? CONTENT_URI_APPLICATIONS : uri;
     }
 
     @Override
@@ -65,29 +237,359 @@ public class ApplicationProvider extends ContentProvider {
         switch (MATCHER.match(uri)) {
             case CODE_APPLICATIONS:
                 return "vnd.android.cursor.dir/" + AUTHORITY + "." + TABLE_APPLICATIONS;
+            case CODE_APPLICATION_ID:
+            case CODE_APPLICATION_PACKAGE_NAME:
+                return "vnd.android.cursor.item/" + AUTHORITY + "." + TABLE_APPLICATIONS;
+            case CODE_APPLICATION_VERSIONS:
+                return "vnd.android.cursor.dir/" + AUTHORITY + "." + TABLE_APPLICATION_VERSIONS;
             default:
                 throw new IllegalArgumentException("Unknown URI: " + uri);
         }
     }
 
+    /**
+     * Combines the {@code selection} of a client app with the condition of the URI. The {@code selection} is checked
+     * first, so that it cannot close the parenthesis around it, and e.g. turn {@code applications/<id>} into a query
+     * of all the Applications with the selection {@code 1) OR (1}.
+     */
+    private static String appendSelection(String selection, String condition) {
+        if (TextUtils.isEmpty(selection)) {
+            return condition;
+        }
+        checkSelection(selection);
+        return "(" + selection + ") AND " + condition;
+    }
+
+    /**
+     * Only allows a selection that is a single expression on its own: its parentheses must be balanced (outside of
+     * string literals and quoted identifiers), and it must not contain comments or a {@code ;}.
+     */
+    private static void checkSelection(String selection) {
+        if (TextUtils.isEmpty(selection)) {
+            return;
+        }
+        int depth = 0;
+        char quote = 0;
+        for (int i = 0; i < selection.length(); i++) {
+            char c = selection.charAt(i);
+            if (quote != 0) {
+                // A quote inside a literal is escaped by doubling it, which this treats as closing and re-opening
+                if (c == quote) {
+                    quote = 0;
+                }
+                continue;
+            }
+            switch (c) {
+                case '\'':
+                case '"':
+                case '`':
+                    quote = c;
+                    break;
+                case '[':
+                    quote = ']';
+                    break;
+                case '(':
+                    depth++;
+                    break;
+                case ')':
+                    depth--;
+                    if (depth < 0) {
+                        throw new IllegalArgumentException("Invalid selection: " + selection);
+                    }
+                    break;
+                case ';':
+                    throw new IllegalArgumentException("Invalid selection: " + selection);
+                case '-':
+                case '/':
+                    char next = (i + 1 < selection.length()) ? selection.charAt(i + 1) : 0;
+                    if (((c == '-') && (next == '-')) || ((c == '/') && (next == '*'))) {
+                        throw new IllegalArgumentException("Invalid selection: " + selection);
+                    }
+                    break;
+            }
+        }
+        if ((depth != 0) || (quote != 0)) {
+            throw new IllegalArgumentException("Invalid selection: " + selection);
+        }
+    }
+
+    private static String[] appendSelectionArg(String[] selectionArgs, String selectionArg) {
+        if (selectionArgs == null) {
+            return new String[] {selectionArg};
+        }
+        String[] appendedSelectionArgs = Arrays.copyOf(selectionArgs, selectionArgs.length + 1);
+        appendedSelectionArgs[selectionArgs.length] = selectionArg;
+        return appendedSelectionArgs;
+    }
+
+    /**
+     * Prevents client apps from passing expressions (e.g. sub-queries) instead of column names.
+     */
+    private static void checkColumns(String[] projection, Set<String> columns) {
+        if (projection == null) {
+            return;
+        }
+        for (String column : projection) {
+            if (!columns.contains(column)) {
+                throw new IllegalArgumentException("Unknown column: " + column);
+            }
+        }
+    }
+
+    /**
+     * Only allows a comma-separated list of column names, each optionally followed by {@code ASC} or {@code DESC}.
+     */
+    private static void checkSortOrder(String sortOrder, Set<String> columns) {
+        if (TextUtils.isEmpty(sortOrder)) {
+            return;
+        }
+        for (String term : sortOrder.split(",")) {
+            String[] words = term.trim().split("\\s+");
+            boolean valid = columns.contains(words[0])
+                    && ((words.length == 1) || ((words.length == 2) && (words[1].equalsIgnoreCase("ASC") || words[1].equalsIgnoreCase("DESC"))));
+            if (!valid) {
+                throw new IllegalArgumentException("Invalid sort order: " + sortOrder);
+            }
+        }
+    }
+
+    /**
+     * Inserts an Application into {@code applications}, or an ApplicationVersion into
+     * {@code applications/<id>/application_versions}. An existing row with the same ID is replaced. Note that
+     * replacing an Application also deletes its ApplicationVersions.
+     * <p />
+     *
+     * The values use the same format as the columns returned by {@link #query}.
+     *
+     * @return {@code null} if no language has been selected yet, in which case nothing is stored.
+     */
     @Override
     public Uri insert(Uri uri, ContentValues contentValues) {
         Timber.i("insert");
 
-        return null;
+        Timber.i("uri: " + uri);
+
+        Context context = getContext();
+        if (context == null) {
+            return null;
+        }
+
+        RoomDb roomDb = getDatabase(context);
+        if (roomDb == null) {
+            return null;
+        }
+        long applicationId;
+        long id;
+        switch (MATCHER.match(uri)) {
+            case CODE_APPLICATIONS:
+                Application application = toApplication(contentValues);
+                roomDb.applicationDao().insertAll(Collections.singletonList(application));
+                applicationId = application.getId();
+                id = application.getId();
+                break;
+            case CODE_APPLICATION_VERSIONS:
+                applicationId = parseId(uri, uri.getPathSegments().get(1));
+                ApplicationVersion applicationVersion = toApplicationVersion(applicationId, contentValues);
+                roomDb.applicationVersionDao().insertAll(Collections.singletonList(applicationVersion));
+                id = applicationVersion.getId();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown URI: " + uri);
+        }
+        onChange(context, roomDb, Collections.singletonList(applicationId));
+
+        return ContentUris.withAppendedId(uri, id);
+    }
+
+    /**
+     * Inserts all the rows in one database transaction, and notifies client apps once.
+     *
+     * @return {@code 0} if no language has been selected yet, in which case nothing is stored.
+     */
+    @Override
+    public int bulkInsert(Uri uri, ContentValues[] values) {
+        Timber.i("bulkInsert");
+
+        Timber.i("uri: " + uri);
+
+        Context context = getContext();
+        if (context == null) {
+            return 0;
+        }
+
+        RoomDb roomDb = getDatabase(context);
+        if (roomDb == null) {
+            return 0;
+        }
+        List<Long> applicationIds = new ArrayList<>();
+        switch (MATCHER.match(uri)) {
+            case CODE_APPLICATIONS:
+                List<Application> applications = new ArrayList<>(values.length);
+                for (ContentValues contentValues : values) {
+                    Application application = toApplication(contentValues);
+                    applications.add(application);
+                    applicationIds.add(application.getId());
+                }
+                roomDb.applicationDao().insertAll(applications);
+                break;
+            case CODE_APPLICATION_VERSIONS:
+                long applicationId = parseId(uri, uri.getPathSegments().get(1));
+                List<ApplicationVersion> applicationVersions = new ArrayList<>(values.length);
+                for (ContentValues contentValues : values) {
+                    applicationVersions.add(toApplicationVersion(applicationId, contentValues));
+                }
+                roomDb.applicationVersionDao().insertAll(applicationVersions);
+                applicationIds.add(applicationId);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown URI: " + uri);
+        }
+        onChange(context, roomDb, applicationIds);
+
+        return values.length;
+    }
+
+    /**
+     * Applies all the operations in one database transaction, so that either all or none of them are stored, and
+     * notifies client apps once the transaction has been committed.
+     *
+     * @return No results if no language has been selected yet, in which case none of the operations are applied.
+     */
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations) throws OperationApplicationException {
+        Timber.i("applyBatch");
+
+        Context context = getContext();
+        if (context == null) {
+            return new ContentProviderResult[0];
+        }
+
+        RoomDb roomDb = getDatabase(context);
+        if (roomDb == null) {
+            return new ContentProviderResult[0];
+        }
+        Set<Long> applicationIds = new HashSet<>();
+        ContentProviderResult[] results;
+        batchApplicationIds.set(applicationIds);
+        roomDb.beginTransaction();
+        try {
+            results = super.applyBatch(operations);
+            roomDb.setTransactionSuccessful();
+        } finally {
+            roomDb.endTransaction();
+            batchApplicationIds.remove();
+        }
+        notifyChange(context, roomDb, applicationIds);
+
+        return results;
+    }
+
+    /**
+     * Notifies client apps observing the Applications, e.g. after a synchronization. To avoid re-querying all the
+     * Applications when only one of them changed, a single change is notified on {@code applications/<id>} (and
+     * on its descendants), while multiple changes are notified once on {@code applications}.
+     * <p />
+     *
+     * Must be called after the changes have been committed, since it also discards the in-memory snapshot of the
+     * Applications.
+     *
+     * @param applicationIds The IDs of the Applications that were added or modified.
+     */
+    public static void notifyChange(Context context, RoomDb roomDb, Collection<Long> applicationIds) {
+        Timber.i("notifyChange");
+
+        if (applicationIds.isEmpty()) {
+            return;
+        }
+
+        // Before notifying, so that client apps re-querying the Applications do not read the previous snapshot
+        getCatalogCache(roomDb).invalidate();
+
+        Uri uri = CONTENT_URI_APPLICATIONS;
+        if (applicationIds.size() == 1) {
+            uri = ContentUris.withAppendedId(uri, applicationIds.iterator().next());
+        }
+        Timber.i("uri: " + uri);
+        context.getContentResolver().notifyChange(uri, null);
+    }
+
+    /**
+     * Defers the notification until the end of the {@link #applyBatch(ArrayList)} in progress (if any).
+     */
+    private void onChange(Context context, RoomDb roomDb, Collection<Long> applicationIds) {
+        Set<Long> pendingApplicationIds = batchApplicationIds.get();
+        if (pendingApplicationIds != null) {
+            pendingApplicationIds.addAll(applicationIds);
+        } else {
+            notifyChange(context, roomDb, applicationIds);
+        }
+    }
+
+    private static CatalogCache getCatalogCache(RoomDb roomDb) {
+        return CATALOG_CACHES.computeIfAbsent(roomDb, key -> new CatalogCache());
+    }
+
+    private static Application toApplication(ContentValues contentValues) {
+        Long id = contentValues.getAsLong("id");
+        String packageName = contentValues.getAsString("packageName");
+        String applicationStatus = contentValues.getAsString("applicationStatus");
+        if ((id == null) || TextUtils.isEmpty(packageName) || TextUtils.isEmpty(applicationStatus)) {
+            throw new IllegalArgumentException("Missing id, packageName or applicationStatus: " + contentValues);
+        }
+
+        Application application = new Application();
+        application.setId(id);
+        application.setPackageName(packageName);
+        application.setInfrastructural(contentValues.getAsBoolean("infrastructural"));
+        application.setApplicationStatus(EnumConverter.fromApplicationStatus(applicationStatus));
+        application.setLiteracySkills(EnumConverter.fromLegacyLiteracySkills(contentValues.getAsString("literacySkills")));
+        application.setNumeracySkills(EnumConverter.fromLegacyNumeracySkills(contentValues.getAsString("numeracySkills")));
+        return application;
+    }
+
+    private static ApplicationVersion toApplicationVersion(long applicationId, ContentValues contentValues) {
+        Long id = contentValues.getAsLong("id");
+        String fileUrl = contentValues.getAsString("fileUrl");
+        Integer fileSizeInKb = contentValues.getAsInteger("fileSizeInKb");
+        String checksumMd5 = contentValues.getAsString("checksumMd5");
+        Integer versionCode = contentValues.getAsInteger("versionCode");
+        if ((id == null) || TextUtils.isEmpty(fileUrl) || (fileSizeInKb == null) || TextUtils.isEmpty(checksumMd5) || (versionCode == null)) {
+            throw new IllegalArgumentException("Missing id, fileUrl, fileSizeInKb, checksumMd5 or versionCode: " + contentValues);
+        }
+
+        ApplicationVersion applicationVersion = new ApplicationVersion();
+        applicationVersion.setId(id);
+        applicationVersion.setApplicationId(applicationId);
+        applicationVersion.setFileUrl(fileUrl);
+        applicationVersion.setFileSizeInKb(fileSizeInKb);
+        applicationVersion.setChecksumMd5(checksumMd5);
+        applicationVersion.setVersionCode(versionCode);
+        return applicationVersion;
     }
 
+    /**
+     * Not supported, since the Applications are only removed by a synchronization. An Application is replaced with
+     * {@link #insert}.
+     *
+     * @throws UnsupportedOperationException Always, so that a client app does not assume that the rows were deleted.
+     */
     @Override
     public int delete(Uri uri, String s, String[] strings) {
         Timber.i("delete");
 
-        return 0;
+        throw new UnsupportedOperationException("delete is not supported: " + uri);
     }
 
+    /**
+     * Not supported. An Application (or ApplicationVersion) is updated by inserting it again with the same ID. See
+     * {@link #insert}.
+     *
+     * @throws UnsupportedOperationException Always, so that a client app does not assume that the rows were updated.
+     */
     @Override
     public int update(Uri uri, ContentValues contentValues, String s, String[] strings) {
         Timber.i("update");
 
-        return 0;
+        throw new UnsupportedOperationException("update is not supported: " + uri);
     }
 }
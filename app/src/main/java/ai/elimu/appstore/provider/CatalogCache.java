@@ -0,0 +1,221 @@
+package ai.elimu.appstore.provider;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+
+import androidx.annotation.NonNull;
+import androidx.room.InvalidationTracker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ai.elimu.appstore.room.EnumConverter;
+import ai.elimu.appstore.room.RoomDb;
+import ai.elimu.appstore.room.entity.Application;
+import ai.elimu.appstore.room.entity.ApplicationVersion;
+import timber.log.Timber;
+
+/**
+ * An in-memory snapshot of the Applications and ApplicationVersions, so that the queries made by client apps (e.g.
+ * every time the launcher is resumed) are served without reading from SQLite.
+ * <p />
+ *
+ * The snapshot is loaded on the first query, and discarded when the database changes. See {@link #invalidate()}.
+ */
+class CatalogCache {
+
+    /**
+     * The columns of {@code SELECT * FROM Application}, in the order of the table.
+     */
+    static final String[] APPLICATION_COLUMNS = {
+            "packageName", "infrastructural", "applicationStatus", "literacySkills", "numeracySkills", "id"
+    };
+
+    /**
+     * The columns of {@code SELECT * FROM ApplicationVersion}, in the order of the table.
+     */
+    static final String[] APPLICATION_VERSION_COLUMNS = {
+            "applicationId", "fileUrl", "fileSizeInKb", "checksumMd5", "versionCode", "id"
+    };
+
+    /**
+     * Incremented every time the database changes. A snapshot is only used if it was loaded in the current
+     * generation, so that a snapshot loaded while a synchronization was being committed is never used afterwards.
+     */
+    private final AtomicInteger generation = new AtomicInteger();
+
+    private volatile Snapshot snapshot;
+
+    private volatile boolean observingDatabase;
+
+    /**
+     * Discards the snapshot. Must be called after a write transaction has been committed, and before client apps
+     * are notified about the change, so that their next query reads the new rows.
+     */
+    void invalidate() {
+        Timber.i("invalidate");
+
+        generation.incrementAndGet();
+        snapshot = null;
+    }
+
+    /**
+     * @return The snapshot of the current generation, which is loaded from the database if needed.
+     */
+    Snapshot get(RoomDb roomDb) {
+        observeDatabase(roomDb);
+
+        int currentGeneration = generation.get();
+        Snapshot currentSnapshot = snapshot;
+        if ((currentSnapshot != null) && (currentSnapshot.generation == currentGeneration)) {
+            return currentSnapshot;
+        }
+
+        Timber.i("Loading snapshot");
+        long timeBefore = System.currentTimeMillis();
+        // Read both tables in one transaction, so that they are consistent with each other
+        Snapshot loadedSnapshot = roomDb.runInTransaction(() -> new Snapshot(
+                currentGeneration,
+                roomDb.applicationDao().loadAll(),
+                roomDb.applicationVersionDao().loadAll()
+        ));
+        Timber.i("Loaded snapshot in " + (System.currentTimeMillis() - timeBefore) + "ms");
+        snapshot = loadedSnapshot;
+        return loadedSnapshot;
+    }
+
+    /**
+     * Also discards the snapshot after writes that are not followed by a call to {@link #invalidate()}. Room notifies
+     * the observer asynchronously, so this is a fallback and not a replacement.
+     */
+    private void observeDatabase(RoomDb roomDb) {
+        if (observingDatabase) {
+            return;
+        }
+        synchronized (this) {
+            if (observingDatabase) {
+                return;
+            }
+            roomDb.getInvalidationTracker().addObserver(new InvalidationTracker.Observer("Application", "ApplicationVersion") {
+                @Override
+                public void onInvalidated(@NonNull Set<String> tables) {
+                    invalidate();
+                }
+            });
+            observingDatabase = true;
+        }
+    }
+
+    /**
+     * An immutable copy of the tables. The rows are stored in the format returned to client apps, i.e. with the
+     * skills as text (see {@link SkillsCursorWrapper}) and booleans as integers.
+     */
+    static class Snapshot {
+
+        private final int generation;
+
+        /**
+         * Ordered by {@code id}, like a table scan.
+         */
+        private final List<Object[]> applicationRows = new ArrayList<>();
+
+        private final Map<Long, Object[]> applicationRowsById = new HashMap<>();
+
+        private final Map<String, Object[]> applicationRowsByPackageName = new HashMap<>();
+
+        /**
+         * Ordered by {@code versionCode} (descending).
+         */
+        private final Map<Long, List<Object[]>> applicationVersionRowsByApplicationId = new HashMap<>();
+
+        private Snapshot(int generation, List<Application> applications, List<ApplicationVersion> applicationVersions) {
+            this.generation = generation;
+
+            List<Application> applicationsById = new ArrayList<>(applications);
+            Collections.sort(applicationsById, (application1, application2) -> Long.compare(application1.getId(), application2.getId()));
+            for (Application application : applicationsById) {
+                Object[] row = {
+                        application.getPackageName(),
+                        (application.getInfrastructural() == null) ? null : (application.getInfrastructural() ? 1 : 0),
+                        EnumConverter.toApplicationStatus(application.getApplicationStatus()),
+                        EnumConverter.fromLiteracySkills(EnumConverter.toLiteracySkills(application.getLiteracySkills())).toString(),
+                        EnumConverter.fromNumeracySkills(EnumConverter.toNumeracySkills(application.getNumeracySkills())).toString(),
+                        application.getId()
+                };
+                applicationRows.add(row);
+                applicationRowsById.put(application.getId(), row);
+                applicationRowsByPackageName.put(application.getPackageName(), row);
+            }
+
+            // Loaded ordered by applicationId and versionCode (descending)
+            for (ApplicationVersion applicationVersion : applicationVersions) {
+                Object[] row = {
+                        applicationVersion.getApplicationId(),
+                        applicationVersion.getFileUrl(),
+                        applicationVersion.getFileSizeInKb(),
+                        applicationVersion.getChecksumMd5(),
+                        applicationVersion.getVersionCode(),
+                        applicationVersion.getId()
+                };
+                applicationVersionRowsByApplicationId
+                        .computeIfAbsent(applicationVersion.getApplicationId(), applicationId -> new ArrayList<>())
+                        .add(row);
+            }
+        }
+
+        Cursor queryApplications(String[] projection) {
+            return toCursor(APPLICATION_COLUMNS, projection, applicationRows);
+        }
+
+        Cursor queryApplication(long id, String[] projection) {
+            return toCursor(APPLICATION_COLUMNS, projection, toList(applicationRowsById.get(id)));
+        }
+
+        Cursor queryApplication(String packageName, String[] projection) {
+            return toCursor(APPLICATION_COLUMNS, projection, toList(applicationRowsByPackageName.get(packageName)));
+        }
+
+        Cursor queryApplicationVersions(long applicationId, String[] projection) {
+            List<Object[]> rows = applicationVersionRowsByApplicationId.get(applicationId);
+            return toCursor(APPLICATION_VERSION_COLUMNS, projection, (rows == null) ? Collections.emptyList() : rows);
+        }
+
+        private static List<Object[]> toList(Object[] row) {
+            return (row == null) ? Collections.emptyList() : Collections.singletonList(row);
+        }
+
+        private static Cursor toCursor(String[] columns, String[] projection, List<Object[]> rows) {
+            if (projection == null) {
+                projection = columns;
+            }
+            int[] columnIndices = new int[projection.length];
+            for (int i = 0; i < projection.length; i++) {
+                columnIndices[i] = indexOf(columns, projection[i]);
+            }
+
+            MatrixCursor matrixCursor = new MatrixCursor(projection, rows.size());
+            for (Object[] row : rows) {
+                Object[] projectedRow = new Object[projection.length];
+                for (int i = 0; i < projection.length; i++) {
+                    projectedRow[i] = row[columnIndices[i]];
+                }
+                matrixCursor.addRow(projectedRow);
+            }
+            return matrixCursor;
+        }
+
+        private static int indexOf(String[] columns, String column) {
+            for (int i = 0; i < columns.length; i++) {
+                if (columns[i].equals(column)) {
+                    return i;
+                }
+            }
+            throw new IllegalArgumentException("Unknown column: " + column);
+        }
+    }
+}
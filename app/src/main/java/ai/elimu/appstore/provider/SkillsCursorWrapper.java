@@ -0,0 +1,57 @@
+package ai.elimu.appstore.provider;
+
+import android.database.CrossProcessCursorWrapper;
+import android.database.Cursor;
+import android.database.CursorWindow;
+import android.database.DatabaseUtils;
+
+import ai.elimu.appstore.room.EnumConverter;
+
+/**
+ * Exposes the {@code literacySkills} and {@code numeracySkills} columns, which are stored as bitmasks, in the text
+ * format that client apps read prior to database version 5, e.g. {@code "[CONCEPTS_ABOUT_PRINT, PHONEMIC_AWARENESS]"}.
+ */
+class SkillsCursorWrapper extends CrossProcessCursorWrapper {
+
+    private final int literacySkillsColumnIndex;
+
+    private final int numeracySkillsColumnIndex;
+
+    SkillsCursorWrapper(Cursor cursor) {
+        super(cursor);
+        literacySkillsColumnIndex = cursor.getColumnIndex("literacySkills");
+        numeracySkillsColumnIndex = cursor.getColumnIndex("numeracySkills");
+    }
+
+    @Override
+    public int getType(int columnIndex) {
+        if (isSkillsColumn(columnIndex)) {
+            return Cursor.FIELD_TYPE_STRING;
+        }
+        return super.getType(columnIndex);
+    }
+
+    @Override
+    public String getString(int columnIndex) {
+        if (columnIndex == literacySkillsColumnIndex) {
+            return EnumConverter.fromLiteracySkills(super.getLong(columnIndex)).toString();
+        } else if (columnIndex == numeracySkillsColumnIndex) {
+            return EnumConverter.fromNumeracySkills(super.getLong(columnIndex)).toString();
+        }
+        return super.getString(columnIndex);
+    }
+
+    /**
+     * Fills the window sent to client apps via {@link #getType} and {@link #getString}, instead of copying the raw
+     * values from the wrapped cursor.
+     */
+    @Override
+    public void fillWindow(int position, CursorWindow window) {
+        DatabaseUtils.cursorFillWindow(this, position, window);
+    }
+
+    private boolean isSkillsColumn(int columnIndex) {
+        return (columnIndex != -1)
+                && ((columnIndex == literacySkillsColumnIndex) || (columnIndex == numeracySkillsColumnIndex));
+    }
+}
@@ -4,6 +4,8 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 
+import ai.elimu.appstore.install.InstallQueue;
+import ai.elimu.appstore.job.SyncJobService;
 import timber.log.Timber;
 
 public class BootReceiver extends BroadcastReceiver {
@@ -11,5 +13,10 @@ public class BootReceiver extends BroadcastReceiver {
     @Override
     public void onReceive(Context context, Intent intent) {
         Timber.i("onReceive");
+
+        SyncJobService.schedule(context);
+
+        // Continue updating the Applications that were queued before the device was restarted
+        InstallQueue.getInstance(context).resume();
     }
 }
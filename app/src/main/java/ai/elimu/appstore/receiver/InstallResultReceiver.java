@@ -0,0 +1,98 @@
+package ai.elimu.appstore.receiver;
+
+import android.app.ActivityManager;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageInstaller;
+import android.os.Build;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.NotificationManagerCompat;
+
+import ai.elimu.appstore.R;
+import ai.elimu.appstore.install.InstallQueue;
+import timber.log.Timber;
+
+/**
+ * Receives the status of the {@code PackageInstaller} sessions committed by the {@link InstallQueue}.
+ * <p />
+ *
+ * When the user has to confirm an installation, the confirmation is started directly if the app is in the
+ * foreground. Otherwise it is posted as a notification, since activities cannot be started from the background.
+ */
+public class InstallResultReceiver extends BroadcastReceiver {
+
+    private static final String NOTIFICATION_CHANNEL_ID = "install";
+
+    private static final String NOTIFICATION_TAG = "install";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        Timber.i("onReceive");
+
+        int sessionId = intent.getIntExtra(PackageInstaller.EXTRA_SESSION_ID, -1);
+        int status = intent.getIntExtra(PackageInstaller.EXTRA_STATUS, PackageInstaller.STATUS_FAILURE);
+        String packageName = intent.getStringExtra(PackageInstaller.EXTRA_PACKAGE_NAME);
+        Timber.i("sessionId: " + sessionId + ", status: " + status + ", packageName: " + packageName);
+        if (status == PackageInstaller.STATUS_PENDING_USER_ACTION) {
+            // Ask the user to confirm the installation. The status is sent again once the user has responded.
+            Intent confirmationIntent = intent.getParcelableExtra(Intent.EXTRA_INTENT);
+            if (confirmationIntent != null) {
+                confirmationIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+                if (isInForeground()) {
+                    context.startActivity(confirmationIntent);
+                } else {
+                    notifyConfirmationRequired(context, sessionId, packageName, confirmationIntent);
+                }
+                return;
+            }
+        }
+        cancelConfirmationNotification(context, sessionId);
+        if (status != PackageInstaller.STATUS_SUCCESS) {
+            Timber.w("message: " + intent.getStringExtra(PackageInstaller.EXTRA_STATUS_MESSAGE));
+        }
+        InstallQueue installQueue = InstallQueue.getInstance(context);
+        installQueue.onInstallComplete(sessionId, packageName, status == PackageInstaller.STATUS_SUCCESS);
+
+        // The process may have been started by this broadcast. Resumed after the completed session has been removed
+        // from the queue, so that it is not installed again.
+        installQueue.resume();
+    }
+
+    /**
+     * Removes the notification posted for the session (if any), e.g. when the session has been abandoned.
+     */
+    public static void cancelConfirmationNotification(Context context, int sessionId) {
+        NotificationManagerCompat.from(context).cancel(NOTIFICATION_TAG, sessionId);
+    }
+
+    private static boolean isInForeground() {
+        ActivityManager.RunningAppProcessInfo runningAppProcessInfo = new ActivityManager.RunningAppProcessInfo();
+        ActivityManager.getMyMemoryState(runningAppProcessInfo);
+        return runningAppProcessInfo.importance == ActivityManager.RunningAppProcessInfo.IMPORTANCE_FOREGROUND;
+    }
+
+    private static void notifyConfirmationRequired(Context context, int sessionId, String packageName, Intent confirmationIntent) {
+        Timber.i("notifyConfirmationRequired");
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel notificationChannel = new NotificationChannel(NOTIFICATION_CHANNEL_ID, context.getString(R.string.install_channel_name), NotificationManager.IMPORTANCE_HIGH);
+            context.getSystemService(NotificationManager.class).createNotificationChannel(notificationChannel);
+        }
+        PendingIntent pendingIntent = PendingIntent.getActivity(context, sessionId, confirmationIntent, PendingIntent.FLAG_UPDATE_CURRENT);
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, NOTIFICATION_CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_baseline_save_alt_24)
+                .setContentTitle(context.getString(R.string.install_confirmation_title))
+                .setContentIntent(pendingIntent)
+                .setPriority(NotificationCompat.PRIORITY_HIGH)
+                .setAutoCancel(true);
+        if (packageName != null) {
+            builder.setContentText(context.getString(R.string.install_confirmation_text, packageName));
+        }
+        NotificationManagerCompat.from(context).notify(NOTIFICATION_TAG, sessionId, builder.build());
+    }
+}
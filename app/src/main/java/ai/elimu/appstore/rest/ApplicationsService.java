@@ -1,13 +1,24 @@
 package ai.elimu.appstore.rest;
 
-import java.util.List;
-
-import ai.elimu.model.v2.gson.application.ApplicationGson;
+import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.http.GET;
+import retrofit2.http.Header;
+import retrofit2.http.Streaming;
 
 public interface ApplicationsService {
 
+    /**
+     * @param eTag The {@code ETag} header of the previous response, or {@code null}.
+     * @param lastModified The {@code Last-Modified} header of the previous response, or {@code null}.
+     * @return A JSON array of {@link ai.elimu.model.v2.gson.application.ApplicationGson}s, which is not read into
+     * memory until parsed with {@link ai.elimu.appstore.util.SyncHelper#storeApplications(ai.elimu.appstore.room.RoomDb, java.io.Reader)}.
+     * Or HTTP 304 (without a body) if the list of Applications has not changed since the previous response.
+     */
+    @Streaming
     @GET("applications")
-    Call<List<ApplicationGson>> listApplications();
+    Call<ResponseBody> listApplications(
+            @Header("If-None-Match") String eTag,
+            @Header("If-Modified-Since") String lastModified
+    );
 }
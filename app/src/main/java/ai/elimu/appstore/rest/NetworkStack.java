@@ -0,0 +1,92 @@
+package ai.elimu.appstore.rest;
+
+import android.content.Context;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+import timber.log.Timber;
+
+/**
+ * The HTTP client shared by the synchronization of the list of Applications and the downloads of APK files, so that
+ * connections (and TLS sessions) to the server of each language are reused instead of being established again for
+ * every request.
+ * <p />
+ *
+ * Responses are compressed with gzip (OkHttp adds the {@code Accept-Encoding} header, and decompresses the response
+ * transparently). The timeouts are long enough for 2G connections.
+ * <p />
+ *
+ * The client has no HTTP cache. The list of Applications is revalidated by
+ * {@link ai.elimu.appstore.util.SyncHelper#syncApplications}, which sends the {@code ETag} and {@code Last-Modified}
+ * of the list stored in the database, and skips storing it on HTTP 304. A cache would turn the 304 into the cached
+ * 200 response, so the unchanged list would be stored again. APK files are written to their own files.
+ */
+public class NetworkStack {
+
+    private static final int MAX_IDLE_CONNECTIONS = 4;
+
+    private static final long KEEP_ALIVE_DURATION_MINUTES = 5;
+
+    private static final long CONNECT_TIMEOUT_SECONDS = 30;
+
+    private static final long READ_TIMEOUT_SECONDS = 60;
+
+    private static final long WRITE_TIMEOUT_SECONDS = 60;
+
+    private static volatile NetworkStack INSTANCE;
+
+    private final OkHttpClient okHttpClient;
+
+    private final Map<String, Retrofit> retrofitByBaseUrl = new ConcurrentHashMap<>();
+
+    NetworkStack() {
+        okHttpClient = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_DURATION_MINUTES, TimeUnit.MINUTES))
+                .connectTimeout(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .readTimeout(READ_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .writeTimeout(WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .build();
+    }
+
+    public static NetworkStack getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (NetworkStack.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new NetworkStack();
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    public OkHttpClient getOkHttpClient() {
+        return okHttpClient;
+    }
+
+    /**
+     * @return The client for downloading APK files, which shares the connection pool.
+     */
+    public OkHttpClient getDownloadClient() {
+        return okHttpClient;
+    }
+
+    /**
+     * @param baseUrl E.g. "http://hin.elimu.ai/rest/v2/". Each language has its own server.
+     */
+    public Retrofit getRetrofit(String baseUrl) {
+        return retrofitByBaseUrl.computeIfAbsent(baseUrl, url -> {
+            Timber.i("Creating Retrofit for " + url);
+            return new Retrofit.Builder()
+                    .baseUrl(url)
+                    .client(okHttpClient)
+                    .addConverterFactory(GsonConverterFactory.create())
+                    .build();
+        });
+    }
+}
@@ -0,0 +1,194 @@
+package ai.elimu.appstore.room;
+
+import androidx.sqlite.db.SimpleSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteQuery;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import ai.elimu.appstore.room.dao.ApplicationDao;
+import ai.elimu.model.enums.admin.ApplicationStatus;
+import ai.elimu.model.enums.content.LiteracySkill;
+import ai.elimu.model.enums.content.NumeracySkill;
+
+/**
+ * Builds a query for the Applications matching a set of criteria, so that they are filtered by SQLite instead of
+ * in Java. See {@link ApplicationDao#loadFiltered}.
+ * <p />
+ *
+ * The Applications are ordered by {@code packageName}, which is read from an index. To load the next page, pass the
+ * {@code packageName} of the last Application in the previous page to {@link #setAfterPackageName(String)}. Unlike
+ * {@code OFFSET}, this does not read the rows of the previous pages again.
+ */
+public class ApplicationFilter {
+
+    /**
+     * The maximum number of bind arguments of one statement in the SQLite versions shipped with Android.
+     */
+    static final int MAX_BIND_ARGS = 999;
+
+    private Set<LiteracySkill> literacySkills;
+
+    private Set<NumeracySkill> numeracySkills;
+
+    private ApplicationStatus applicationStatus;
+
+    private Boolean infrastructural;
+
+    private Boolean installed;
+
+    private Collection<String> installedPackageNames;
+
+    private String packageNamePrefix;
+
+    private String afterPackageName;
+
+    private int limit;
+
+    /**
+     * Only include Applications with at least one of the {@code literacySkills}.
+     */
+    public ApplicationFilter setLiteracySkills(Set<LiteracySkill> literacySkills) {
+        this.literacySkills = literacySkills;
+        return this;
+    }
+
+    /**
+     * Only include Applications with at least one of the {@code numeracySkills}.
+     */
+    public ApplicationFilter setNumeracySkills(Set<NumeracySkill> numeracySkills) {
+        this.numeracySkills = numeracySkills;
+        return this;
+    }
+
+    public ApplicationFilter setApplicationStatus(ApplicationStatus applicationStatus) {
+        this.applicationStatus = applicationStatus;
+        return this;
+    }
+
+    public ApplicationFilter setInfrastructural(Boolean infrastructural) {
+        this.infrastructural = infrastructural;
+        return this;
+    }
+
+    /**
+     * @param installed {@code true} to only include Applications that are installed on the device, {@code false} to
+     *                  only include Applications that are not.
+     * @param installedPackageNames The package names of the applications installed on the device.
+     * @throws IllegalArgumentException If {@code installedPackageNames} is {@code null}.
+     */
+    public ApplicationFilter setInstalled(boolean installed, Collection<String> installedPackageNames) {
+        if (installedPackageNames == null) {
+            throw new IllegalArgumentException("installedPackageNames must not be null");
+        }
+        this.installed = installed;
+        this.installedPackageNames = installedPackageNames;
+        return this;
+    }
+
+    /**
+     * E.g. {@code "ai.elimu."} to only include Applications developed by elimu.ai.
+     */
+    public ApplicationFilter setPackageNamePrefix(String packageNamePrefix) {
+        this.packageNamePrefix = packageNamePrefix;
+        return this;
+    }
+
+    public ApplicationFilter setAfterPackageName(String afterPackageName) {
+        this.afterPackageName = afterPackageName;
+        return this;
+    }
+
+    /**
+     * @param limit The maximum number of Applications to load, or {@code 0} for no limit.
+     */
+    public ApplicationFilter setLimit(int limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    public SupportSQLiteQuery toQuery() {
+        List<String> conditions = new ArrayList<>();
+        List<Object> bindArgs = new ArrayList<>();
+
+        if ((literacySkills != null) && !literacySkills.isEmpty()) {
+            conditions.add("(a.literacySkills & ?) != 0");
+            bindArgs.add(EnumConverter.toLiteracySkills(literacySkills));
+        }
+        if ((numeracySkills != null) && !numeracySkills.isEmpty()) {
+            conditions.add("(a.numeracySkills & ?) != 0");
+            bindArgs.add(EnumConverter.toNumeracySkills(numeracySkills));
+        }
+        if (applicationStatus != null) {
+            conditions.add("a.applicationStatus = ?");
+            bindArgs.add(EnumConverter.toApplicationStatus(applicationStatus));
+        }
+        if (infrastructural != null) {
+            conditions.add("a.infrastructural = ?");
+            bindArgs.add(infrastructural ? 1 : 0);
+        }
+        if ((packageNamePrefix != null) && !packageNamePrefix.isEmpty()) {
+            // A range instead of LIKE, since LIKE is case-insensitive and can therefore not use the index
+            conditions.add("a.packageName >= ?");
+            bindArgs.add(packageNamePrefix);
+            String upperBound = getUpperBound(packageNamePrefix);
+            if (upperBound != null) {
+                conditions.add("a.packageName < ?");
+                bindArgs.add(upperBound);
+            }
+        }
+        if (afterPackageName != null) {
+            conditions.add("a.packageName > ?");
+            bindArgs.add(afterPackageName);
+        }
+        if (installed != null) {
+            // Added last, so that the number of remaining bind arguments is known (one is kept for the LIMIT)
+            if ((bindArgs.size() + installedPackageNames.size() + 1) <= MAX_BIND_ARGS) {
+                StringBuilder placeholders = new StringBuilder();
+                for (String packageName : installedPackageNames) {
+                    placeholders.append((placeholders.length() == 0) ? "?" : ",?");
+                    bindArgs.add(packageName);
+                }
+                conditions.add("a.packageName " + (installed ? "IN" : "NOT IN") + " (" + placeholders + ")");
+            } else {
+                // Too many installed applications for one bind argument each, so they are bound as one
+                // comma-separated argument. A package name cannot contain a comma.
+                StringBuilder packageNames = new StringBuilder(",");
+                for (String packageName : installedPackageNames) {
+                    packageNames.append(packageName).append(",");
+                }
+                conditions.add("instr(?, ',' || a.packageName || ',') " + (installed ? "> 0" : "= 0"));
+                bindArgs.add(packageNames.toString());
+            }
+        }
+
+        StringBuilder sql = new StringBuilder(ApplicationDao.SELECT_WITH_NEWEST_VERSION);
+        for (int i = 0; i < conditions.size(); i++) {
+            sql.append((i == 0) ? " WHERE " : " AND ").append(conditions.get(i));
+        }
+        sql.append(" ORDER BY a.packageName");
+        if (limit > 0) {
+            sql.append(" LIMIT ?");
+            bindArgs.add(limit);
+        }
+        return new SimpleSQLiteQuery(sql.toString(), bindArgs.toArray());
+    }
+
+    /**
+     * @return The smallest string that is greater than every string starting with {@code prefix}, or {@code null} if
+     * there is none (i.e. every character of the {@code prefix} is {@link Character#MAX_VALUE}).
+     */
+    static String getUpperBound(String prefix) {
+        // Character.MAX_VALUE cannot be incremented, so it is dropped, and the character before it is incremented
+        int end = prefix.length();
+        while ((end > 0) && (prefix.charAt(end - 1) == Character.MAX_VALUE)) {
+            end--;
+        }
+        if (end == 0) {
+            return null;
+        }
+        return prefix.substring(0, end - 1) + (char) (prefix.charAt(end - 1) + 1);
+    }
+}
@@ -4,10 +4,7 @@ import android.text.TextUtils;
 
 import androidx.room.TypeConverter;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-
-import java.util.HashSet;
+import java.util.EnumSet;
 import java.util.Set;
 
 import ai.elimu.model.enums.admin.ApplicationStatus;
@@ -20,6 +17,16 @@ import timber.log.Timber;
  */
 public class EnumConverter {
 
+    // Cached, since values() returns a new copy of the array each time
+    private static final LiteracySkill[] LITERACY_SKILLS = LiteracySkill.values();
+    private static final NumeracySkill[] NUMERACY_SKILLS = NumeracySkill.values();
+
+    static {
+        if ((LITERACY_SKILLS.length > Long.SIZE) || (NUMERACY_SKILLS.length > Long.SIZE)) {
+            throw new IllegalStateException("Too many enum constants to be stored in a bitmask");
+        }
+    }
+
     @TypeConverter
     public static ApplicationStatus fromApplicationStatus(String value) {
         ApplicationStatus applicationStatus = null;
@@ -38,63 +45,83 @@ public class EnumConverter {
         return value;
     }
 
+    /**
+     * Stored as a bitmask of {@link LiteracySkill#ordinal()}s. Note that the values stored will be incorrect if the
+     * order of the enum constants is changed in the model library.
+     */
     @TypeConverter
-    public static Set<LiteracySkill> fromLiteracySkills(String value) {
-        Set<LiteracySkill> literacySkills = new HashSet<>();
-        if (!TextUtils.isEmpty(value)) {
-            try {
-                JSONArray jsonArray = new JSONArray(value);
-                Timber.d("jsonArray: " + jsonArray);
-                for (int i = 0; i < jsonArray.length(); i++) {
-                    String literacySkillAsString = jsonArray.getString(i);
-                    Timber.d("literacySkillAsString: " + literacySkillAsString);
-                    LiteracySkill literacySkill = LiteracySkill.valueOf(literacySkillAsString);
-                    literacySkills.add(literacySkill);
-                }
-            } catch (JSONException e) {
-                Timber.e(e);
-            }
-        }
-        return literacySkills;
+    public static Set<LiteracySkill> fromLiteracySkills(long value) {
+        return fromBitmask(value, LiteracySkill.class, LITERACY_SKILLS);
     }
 
     @TypeConverter
-    public static String toLiteracySkills(Set<LiteracySkill> literacySkills) {
-        String value = null;
-        if (literacySkills != null) {
-            value = literacySkills.toString();
-        }
-        Timber.i("value: " + value);
-        return value;
+    public static long toLiteracySkills(Set<LiteracySkill> literacySkills) {
+        return toBitmask(literacySkills);
     }
 
+    /**
+     * Stored as a bitmask of {@link NumeracySkill#ordinal()}s. Note that the values stored will be incorrect if the
+     * order of the enum constants is changed in the model library.
+     */
     @TypeConverter
-    public static Set<NumeracySkill> fromNumeracySkills(String value) {
-        Set<NumeracySkill> numeracySkills = new HashSet<>();
-        if (!TextUtils.isEmpty(value)) {
-            try {
-                JSONArray jsonArray = new JSONArray(value);
-                Timber.d("jsonArray: " + jsonArray);
-                for (int i = 0; i < jsonArray.length(); i++) {
-                    String numeracySkillAsString = jsonArray.getString(i);
-                    Timber.d("numeracySkillAsString: " + numeracySkillAsString);
-                    NumeracySkill numeracySkill = NumeracySkill.valueOf(numeracySkillAsString);
-                    numeracySkills.add(numeracySkill);
-                }
-            } catch (JSONException e) {
-                Timber.e(e);
+    public static Set<NumeracySkill> fromNumeracySkills(long value) {
+        return fromBitmask(value, NumeracySkill.class, NUMERACY_SKILLS);
+    }
+
+    @TypeConverter
+    public static long toNumeracySkills(Set<NumeracySkill> numeracySkills) {
+        return toBitmask(numeracySkills);
+    }
+
+    /**
+     * Reads a value stored by database versions prior to 5, e.g. {@code "[CONCEPTS_ABOUT_PRINT, PHONEMIC_AWARENESS]"}.
+     */
+    public static Set<LiteracySkill> fromLegacyLiteracySkills(String value) {
+        return fromLegacyString(value, LiteracySkill.class);
+    }
+
+    /**
+     * Reads a value stored by database versions prior to 5. See {@link #fromLegacyLiteracySkills(String)}.
+     */
+    public static Set<NumeracySkill> fromLegacyNumeracySkills(String value) {
+        return fromLegacyString(value, NumeracySkill.class);
+    }
+
+    private static <E extends Enum<E>> Set<E> fromBitmask(long bitmask, Class<E> enumClass, E[] values) {
+        EnumSet<E> enumSet = EnumSet.noneOf(enumClass);
+        while (bitmask != 0) {
+            int ordinal = Long.numberOfTrailingZeros(bitmask);
+            if (ordinal < values.length) {
+                enumSet.add(values[ordinal]);
             }
+            bitmask &= bitmask - 1;
         }
-        return numeracySkills;
+        return enumSet;
     }
 
-    @TypeConverter
-    public static String toNumeracySkills(Set<NumeracySkill> numeracySkills) {
-        String value = null;
-        if (numeracySkills != null) {
-            value = numeracySkills.toString();
+    private static <E extends Enum<E>> long toBitmask(Set<E> enumSet) {
+        long bitmask = 0;
+        if (enumSet != null) {
+            for (E value : enumSet) {
+                bitmask |= 1L << value.ordinal();
+            }
         }
-        Timber.i("value: " + value);
-        return value;
+        return bitmask;
+    }
+
+    private static <E extends Enum<E>> Set<E> fromLegacyString(String value, Class<E> enumClass) {
+        EnumSet<E> enumSet = EnumSet.noneOf(enumClass);
+        if ((value == null) || (value.length() <= 2)) {
+            return enumSet;
+        }
+        // Strip the surrounding "[" and "]"
+        for (String name : value.substring(1, value.length() - 1).split(",")) {
+            try {
+                enumSet.add(Enum.valueOf(enumClass, name.trim()));
+            } catch (IllegalArgumentException e) {
+                Timber.w(e, "Unknown %s: %s", enumClass.getSimpleName(), name);
+            }
+        }
+        return enumSet;
     }
 }
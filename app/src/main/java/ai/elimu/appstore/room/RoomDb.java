@@ -1,6 +1,7 @@
 package ai.elimu.appstore.room;
 
 import android.content.Context;
+import android.database.Cursor;
 
 import androidx.room.Database;
 import androidx.room.Room;
@@ -9,6 +10,11 @@ import androidx.room.TypeConverters;
 import androidx.room.migration.Migration;
 import androidx.sqlite.db.SupportSQLiteDatabase;
 
+import java.io.File;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -16,9 +22,14 @@ import ai.elimu.appstore.room.dao.ApplicationDao;
 import ai.elimu.appstore.room.dao.ApplicationVersionDao;
 import ai.elimu.appstore.room.entity.Application;
 import ai.elimu.appstore.room.entity.ApplicationVersion;
+import ai.elimu.appstore.util.AppSettings;
+import ai.elimu.appstore.util.SharedPreferencesHelper;
+import ai.elimu.model.enums.Language;
+import ai.elimu.model.enums.content.LiteracySkill;
+import ai.elimu.model.enums.content.NumeracySkill;
 import timber.log.Timber;
 
-@Database(version = 3, entities = {Application.class, ApplicationVersion.class})
+@Database(version = 6, entities = {Application.class, ApplicationVersion.class})
 @TypeConverters({EnumConverter.class})
 public abstract class RoomDb extends RoomDatabase {
 
@@ -26,29 +37,134 @@ public abstract class RoomDb extends RoomDatabase {
 
     public abstract ApplicationVersionDao applicationVersionDao();
 
-    private static volatile RoomDb INSTANCE;
+    /**
+     * The name of the database that was previously shared by all languages. See {@link #migrateLegacyDatabase}.
+     */
+    private static final String LEGACY_DATABASE_NAME = "appstore_db";
+
+    /**
+     * The databases opened so far, one per language.
+     */
+    private static final Map<Language, RoomDb> INSTANCES = new EnumMap<>(Language.class);
 
     public static final ExecutorService databaseWriteExecutor = Executors.newFixedThreadPool(4);
 
+    /**
+     * @return The database of the language currently selected.
+     * @throws IllegalStateException If no language has been selected yet.
+     */
     public static RoomDb getDatabase(final Context context) {
-        if (INSTANCE == null) {
-            synchronized (RoomDb.class) {
-                if (INSTANCE == null) {
-                    INSTANCE = Room
-                            .databaseBuilder(
-                                    context.getApplicationContext(),
-                                    RoomDb.class,
-                                    "appstore_db"
-                            )
-                            .addMigrations(
-                                    MIGRATION_1_2,
-                                    MIGRATION_2_3
-                            )
-                            .build();
+        Language language = AppSettings.getInstance(context).getLanguage();
+        if (language == null) {
+            throw new IllegalStateException("No language has been selected");
+        }
+        return getDatabase(context, language);
+    }
+
+    /**
+     * Each language has its own database, so that switching back to a previously selected language does not require
+     * downloading its Applications again. The database is opened on first use.
+     */
+    public static RoomDb getDatabase(final Context context, Language language) {
+        synchronized (INSTANCES) {
+            RoomDb instance = INSTANCES.get(language);
+            if (instance == null) {
+                migrateLegacyDatabase(context);
+                instance = Room
+                        .databaseBuilder(
+                                context.getApplicationContext(),
+                                RoomDb.class,
+                                getDatabaseName(language)
+                        )
+                        // Allow the list of Applications to be read while a synchronization is being written
+                        // in one (long) transaction, also on low-RAM devices
+                        .setJournalMode(JournalMode.WRITE_AHEAD_LOGGING)
+                        .addMigrations(
+                                MIGRATION_1_2,
+                                MIGRATION_2_3,
+                                MIGRATION_3_4,
+                                MIGRATION_4_5,
+                                MIGRATION_5_6
+                        )
+                        .build();
+                INSTANCES.put(language, instance);
+            }
+            return instance;
+        }
+    }
+
+    public static String getDatabaseName(Language language) {
+        return LEGACY_DATABASE_NAME + "_" + language.getIsoCode();
+    }
+
+    /**
+     * Closes the databases of the languages that are not currently selected. They are opened again if the language is
+     * selected again.
+     */
+    public static void closeInactiveDatabases(Context context) {
+        Timber.i("closeInactiveDatabases");
+
+        Language language = AppSettings.getInstance(context).getLanguage();
+        synchronized (INSTANCES) {
+            Iterator<Map.Entry<Language, RoomDb>> iterator = INSTANCES.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Language, RoomDb> entry = iterator.next();
+                if (entry.getKey() != language) {
+                    Timber.i("Closing database of " + entry.getKey());
+                    entry.getValue().close();
+                    iterator.remove();
                 }
             }
         }
-        return INSTANCE;
+    }
+
+    /**
+     * Closes (if open) and deletes the database of the {@code language}.
+     */
+    public static void deleteDatabase(Context context, Language language) {
+        Timber.i("deleteDatabase");
+
+        synchronized (INSTANCES) {
+            RoomDb instance = INSTANCES.remove(language);
+            if (instance != null) {
+                instance.close();
+            }
+            context.deleteDatabase(getDatabaseName(language));
+        }
+    }
+
+    /**
+     * Keeps the legacy database, with all its rows, as the database of the selected language. It is not deleted until a
+     * language has been selected, since its rows belong to that language. Rows downloaded before the validators were
+     * introduced (see {@link SharedPreferencesHelper#storeApplicationsValidators}) are kept as well, and are replaced
+     * by the next full synchronization. The legacy database is only deleted if the selected language already has a
+     * database of its own. The database version is not affected, so the legacy database is migrated when it is opened.
+     */
+    private static void migrateLegacyDatabase(Context context) {
+        File legacyDatabaseFile = context.getDatabasePath(LEGACY_DATABASE_NAME);
+        if (!legacyDatabaseFile.exists()) {
+            return;
+        }
+        Timber.i("migrateLegacyDatabase");
+
+        Language language = AppSettings.getInstance(context).getLanguage();
+        if (language == null) {
+            Timber.i("Keeping legacy database until a language has been selected");
+            return;
+        }
+        File databaseFile = context.getDatabasePath(getDatabaseName(language));
+        if (databaseFile.exists()) {
+            Timber.i("Deleting legacy database");
+            context.deleteDatabase(LEGACY_DATABASE_NAME);
+            return;
+        }
+        Timber.i("Renaming legacy database to " + getDatabaseName(language));
+        for (String suffix : new String[] {"", "-journal", "-wal", "-shm"}) {
+            File file = new File(legacyDatabaseFile.getPath() + suffix);
+            if (file.exists() && !file.renameTo(new File(databaseFile.getPath() + suffix))) {
+                Timber.w("Could not rename " + file);
+            }
+        }
     }
 
     private static final Migration MIGRATION_1_2 = new Migration(1, 2) {
@@ -75,4 +191,97 @@ public abstract class RoomDb extends RoomDatabase {
             database.execSQL(sql);
         }
     };
+
+    /**
+     * Adds a foreign key and an index to the ApplicationVersion table. SQLite cannot add a foreign key to an existing
+     * table, so the table is re-created.
+     */
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            Timber.i("migrate (3 --> 4)");
+
+            String sql = "CREATE TABLE IF NOT EXISTS `_new_ApplicationVersion` (`applicationId` INTEGER NOT NULL, `fileUrl` TEXT NOT NULL, `fileSizeInKb` INTEGER NOT NULL, `checksumMd5` TEXT NOT NULL, `versionCode` INTEGER NOT NULL, `id` INTEGER, PRIMARY KEY(`id`), FOREIGN KEY(`applicationId`) REFERENCES `Application`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )";
+            Timber.i("sql: " + sql);
+            database.execSQL(sql);
+
+            // Skip ApplicationVersions whose Application no longer exists, since they would violate the foreign key
+            sql = "INSERT INTO `_new_ApplicationVersion` (`applicationId`, `fileUrl`, `fileSizeInKb`, `checksumMd5`, `versionCode`, `id`) SELECT `applicationId`, `fileUrl`, `fileSizeInKb`, `checksumMd5`, `versionCode`, `id` FROM `ApplicationVersion` WHERE `applicationId` IN (SELECT `id` FROM `Application`)";
+            Timber.i("sql: " + sql);
+            database.execSQL(sql);
+
+            sql = "DROP TABLE `ApplicationVersion`";
+            Timber.i("sql: " + sql);
+            database.execSQL(sql);
+
+            sql = "ALTER TABLE `_new_ApplicationVersion` RENAME TO `ApplicationVersion`";
+            Timber.i("sql: " + sql);
+            database.execSQL(sql);
+
+            sql = "CREATE INDEX IF NOT EXISTS `index_ApplicationVersion_applicationId_versionCode` ON `ApplicationVersion` (`applicationId`, `versionCode`)";
+            Timber.i("sql: " + sql);
+            database.execSQL(sql);
+        }
+    };
+
+    /**
+     * Converts the {@code literacySkills} and {@code numeracySkills} columns from text (e.g.
+     * {@code "[CONCEPTS_ABOUT_PRINT, PHONEMIC_AWARENESS]"}) to bitmasks. See {@link EnumConverter}.
+     * <p />
+     *
+     * The Application table is re-created, since SQLite cannot change the type of a column. Foreign keys are not
+     * enforced while migrating, so the ApplicationVersions are not deleted when the old table is dropped.
+     */
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            Timber.i("migrate (4 --> 5)");
+
+            String sql = "CREATE TABLE IF NOT EXISTS `_new_Application` (`packageName` TEXT NOT NULL, `infrastructural` INTEGER, `applicationStatus` TEXT NOT NULL, `literacySkills` INTEGER, `numeracySkills` INTEGER, `id` INTEGER, PRIMARY KEY(`id`))";
+            Timber.i("sql: " + sql);
+            database.execSQL(sql);
+
+            try (Cursor cursor = database.query("SELECT `packageName`, `infrastructural`, `applicationStatus`, `literacySkills`, `numeracySkills`, `id` FROM `Application`")) {
+                Timber.i("cursor.getCount(): " + cursor.getCount());
+                while (cursor.moveToNext()) {
+                    Set<LiteracySkill> literacySkills = EnumConverter.fromLegacyLiteracySkills(cursor.getString(3));
+                    Set<NumeracySkill> numeracySkills = EnumConverter.fromLegacyNumeracySkills(cursor.getString(4));
+                    database.execSQL(
+                            "INSERT INTO `_new_Application` (`packageName`, `infrastructural`, `applicationStatus`, `literacySkills`, `numeracySkills`, `id`) VALUES (?, ?, ?, ?, ?, ?)",
+                            new Object[] {
+                                    cursor.getString(0),
+                                    cursor.isNull(1) ? null : cursor.getLong(1),
+                                    cursor.getString(2),
+                                    EnumConverter.toLiteracySkills(literacySkills),
+                                    EnumConverter.toNumeracySkills(numeracySkills),
+                                    cursor.getLong(5)
+                            }
+                    );
+                }
+            }
+
+            sql = "DROP TABLE `Application`";
+            Timber.i("sql: " + sql);
+            database.execSQL(sql);
+
+            sql = "ALTER TABLE `_new_Application` RENAME TO `Application`";
+            Timber.i("sql: " + sql);
+            database.execSQL(sql);
+        }
+    };
+
+    /**
+     * Adds an index used for looking up Applications by {@code packageName}, and for ordering them. See
+     * {@link ApplicationFilter}.
+     */
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            Timber.i("migrate (5 --> 6)");
+
+            String sql = "CREATE INDEX IF NOT EXISTS `index_Application_packageName` ON `Application` (`packageName`)";
+            Timber.i("sql: " + sql);
+            database.execSQL(sql);
+        }
+    };
 }
@@ -1,30 +1,70 @@
 package ai.elimu.appstore.room.dao;
 
-import android.database.Cursor;
-
+import androidx.paging.DataSource;
 import androidx.room.Dao;
 import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.RawQuery;
 import androidx.room.Update;
+import androidx.sqlite.db.SupportSQLiteQuery;
 
 import java.util.List;
 
 import ai.elimu.appstore.room.entity.Application;
+import ai.elimu.appstore.room.entity.ApplicationWithNewestVersion;
 
 @Dao
 public interface ApplicationDao {
 
+    /**
+     * Joins each Application with its newest ApplicationVersion (if any), which is looked up in the
+     * {@code (applicationId, versionCode)} index instead of loading every ApplicationVersion.
+     */
+    String SELECT_WITH_NEWEST_VERSION = "SELECT a.*, " +
+            "av.id AS newestApplicationVersion_id, " +
+            "av.applicationId AS newestApplicationVersion_applicationId, " +
+            "av.fileUrl AS newestApplicationVersion_fileUrl, " +
+            "av.fileSizeInKb AS newestApplicationVersion_fileSizeInKb, " +
+            "av.checksumMd5 AS newestApplicationVersion_checksumMd5, " +
+            "av.versionCode AS newestApplicationVersion_versionCode " +
+            "FROM Application a " +
+            "LEFT JOIN ApplicationVersion av ON av.id = (" +
+            "SELECT av2.id FROM ApplicationVersion av2 WHERE av2.applicationId = a.id ORDER BY av2.versionCode DESC LIMIT 1" +
+            ")";
+
     @Insert
     void insert(Application application);
 
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertAll(List<Application> applications);
+
     @Query("SELECT * FROM Application a WHERE a.id = :id")
     Application load(Long id);
 
     @Query("SELECT * FROM Application a")
     List<Application> loadAll();
 
-    @Query("SELECT * FROM Application a")
-    Cursor loadAllAsCursor();
+    @Query("SELECT * FROM Application a WHERE a.id IN (:ids)")
+    List<Application> loadAll(List<Long> ids);
+
+    @Query(SELECT_WITH_NEWEST_VERSION)
+    List<ApplicationWithNewestVersion> loadAllWithNewestVersion();
+
+    /**
+     * Loads the Applications one page at a time, e.g. to display them in a list.
+     */
+    @Query(SELECT_WITH_NEWEST_VERSION + " ORDER BY a.id")
+    DataSource.Factory<Integer, ApplicationWithNewestVersion> loadAllWithNewestVersionPaged();
+
+    /**
+     * @param query See {@link ai.elimu.appstore.room.ApplicationFilter#toQuery()}.
+     */
+    @RawQuery
+    List<ApplicationWithNewestVersion> loadFiltered(SupportSQLiteQuery query);
+
+    @Query("SELECT COUNT(*) FROM Application")
+    int count();
 
     @Update
     void update(Application application);
@@ -4,6 +4,7 @@ import android.database.Cursor;
 
 import androidx.room.Dao;
 import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
 import androidx.room.Update;
 
@@ -17,6 +18,9 @@ public interface ApplicationVersionDao {
     @Insert
     void insert(ApplicationVersion applicationVersion);
 
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertAll(List<ApplicationVersion> applicationVersions);
+
     @Query("SELECT * FROM ApplicationVersion av WHERE av.id = :id")
     ApplicationVersion load(Long id);
 
@@ -26,6 +30,9 @@ public interface ApplicationVersionDao {
     @Query("SELECT * FROM ApplicationVersion av WHERE av.applicationId = :applicationId ORDER BY versionCode DESC")
     List<ApplicationVersion> loadAll(Long applicationId);
 
+    @Query("SELECT * FROM ApplicationVersion av WHERE av.applicationId IN (:applicationIds) ORDER BY av.applicationId ASC, av.versionCode DESC")
+    List<ApplicationVersion> loadAll(List<Long> applicationIds);
+
     @Update
     void update(ApplicationVersion applicationVersion);
 
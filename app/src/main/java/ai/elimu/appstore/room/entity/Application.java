@@ -2,6 +2,7 @@ package ai.elimu.appstore.room.entity;
 
 import androidx.annotation.NonNull;
 import androidx.room.Entity;
+import androidx.room.Index;
 
 import java.util.Set;
 
@@ -12,7 +13,7 @@ import ai.elimu.model.enums.content.NumeracySkill;
 /**
  * For documentation, see https://github.com/elimu-ai/webapp/tree/master/src/main/java/ai/elimu/model
  */
-@Entity
+@Entity(indices = @Index("packageName"))
 public class Application extends BaseEntity {
 
     @NonNull
@@ -2,11 +2,22 @@ package ai.elimu.appstore.room.entity;
 
 import androidx.annotation.NonNull;
 import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
 
 /**
  * For documentation, see https://github.com/elimu-ai/webapp/tree/master/src/main/java/ai/elimu/model
  */
-@Entity
+@Entity(
+        foreignKeys = @ForeignKey(
+                entity = Application.class,
+                parentColumns = "id",
+                childColumns = "applicationId",
+                onDelete = ForeignKey.CASCADE
+        ),
+        // Also used for "ORDER BY versionCode DESC", which SQLite satisfies by reading the index backwards
+        indices = @Index({"applicationId", "versionCode"})
+)
 public class ApplicationVersion extends BaseEntity {
 
     @NonNull
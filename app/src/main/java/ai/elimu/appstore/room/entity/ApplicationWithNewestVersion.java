@@ -0,0 +1,34 @@
+package ai.elimu.appstore.room.entity;
+
+import androidx.room.Embedded;
+
+/**
+ * An Application joined with its newest ApplicationVersion. See {@code ApplicationDao#loadAllWithNewestVersion}.
+ */
+public class ApplicationWithNewestVersion {
+
+    @Embedded
+    private Application application;
+
+    /**
+     * {@code null} if no APK files have been uploaded to the webapp.
+     */
+    @Embedded(prefix = "newestApplicationVersion_")
+    private ApplicationVersion newestApplicationVersion;
+
+    public Application getApplication() {
+        return application;
+    }
+
+    public void setApplication(Application application) {
+        this.application = application;
+    }
+
+    public ApplicationVersion getNewestApplicationVersion() {
+        return newestApplicationVersion;
+    }
+
+    public void setNewestApplicationVersion(ApplicationVersion newestApplicationVersion) {
+        this.newestApplicationVersion = newestApplicationVersion;
+    }
+}
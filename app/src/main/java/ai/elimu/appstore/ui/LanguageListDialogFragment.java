@@ -1,5 +1,7 @@
 package ai.elimu.appstore.ui;
 
+import android.content.Context;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.os.Bundle;
 import android.util.Log;
@@ -16,7 +18,9 @@ import com.google.android.material.bottomsheet.BottomSheetDialogFragment;
 
 import ai.elimu.appstore.MainActivity;
 import ai.elimu.appstore.R;
-import ai.elimu.appstore.util.SharedPreferencesHelper;
+import ai.elimu.appstore.room.RoomDb;
+import ai.elimu.appstore.util.AppSettings;
+import ai.elimu.appstore.util.LanguageStoreHelper;
 import ai.elimu.model.enums.Language;
 
 /**
@@ -45,7 +49,15 @@ public class LanguageListDialogFragment extends BottomSheetDialogFragment {
         recyclerView.setAdapter(new LanguageAdapter());
         recyclerView.addItemDecoration(new DividerItemDecoration(getContext(), DividerItemDecoration.VERTICAL));
 
-        setCancelable(false);
+        // The language can only be kept if it has already been selected
+        setCancelable(AppSettings.getInstance(getContext()).getLanguage() != null);
+    }
+
+    @Override
+    public void onCancel(DialogInterface dialog) {
+        super.onCancel(dialog);
+
+        getActivity().finish();
     }
 
     @Override
@@ -84,10 +96,16 @@ public class LanguageListDialogFragment extends BottomSheetDialogFragment {
                     Log.i(getClass().getName(), "onClick");
 
                     Log.i(getClass().getName(), "language: " + language);
-                    SharedPreferencesHelper.storeLanguage(getContext(), language);
-
-                    // Restart the MainActivity
+                    Context context = getContext().getApplicationContext();
+                    LanguageStoreHelper.selectLanguage(context, language);
+                    RoomDb.databaseWriteExecutor.execute(() ->
+                            LanguageStoreHelper.evictInactiveLanguages(context, LanguageStoreHelper.INACTIVE_DISK_BUDGET)
+                    );
+
+                    // Restart the MainActivity, and remove the Applications of the previous language (if any) from
+                    // the back stack
                     Intent intent = new Intent(getContext(), MainActivity.class);
+                    intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
                     startActivity(intent);
                     getActivity().finish();
                 }
@@ -1,32 +1,64 @@
 package ai.elimu.appstore.ui.applications;
 
+import android.content.Context;
+import android.content.Intent;
 import android.os.Bundle;
-import android.util.Log;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.view.ViewTreeObserver;
 
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
+import androidx.lifecycle.LiveData;
+import androidx.paging.DataSource;
+import androidx.paging.LivePagedListBuilder;
+import androidx.paging.PagedList;
 import androidx.recyclerview.widget.DividerItemDecoration;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.appbar.CollapsingToolbarLayout;
 
-import java.util.List;
+import java.io.IOException;
 
 import ai.elimu.appstore.R;
+import ai.elimu.appstore.install.InstallQueue;
 import ai.elimu.appstore.room.RoomDb;
-import ai.elimu.appstore.room.dao.ApplicationDao;
-import ai.elimu.appstore.room.dao.ApplicationVersionDao;
-import ai.elimu.appstore.room.entity.Application;
-import ai.elimu.appstore.room.entity.ApplicationVersion;
+import ai.elimu.appstore.ui.SelectLanguageActivity;
+import ai.elimu.appstore.util.StartupHelper;
+import ai.elimu.appstore.util.SyncHelper;
 import timber.log.Timber;
 
 public class ApplicationListActivity extends AppCompatActivity {
 
+    /**
+     * If {@code true}, the Applications already stored in the database are displayed immediately, and the list of
+     * Applications is downloaded from the REST API in the background.
+     */
+    public static final String EXTRA_SYNC_IN_BACKGROUND = "sync_in_background";
+
+    /**
+     * The number of Applications loaded per page, which is roughly the number of rows that fit on one screen.
+     * <p />
+     *
+     * Placeholders are disabled, so that every row has an item, and the {@link ApplicationListAdapter} can have
+     * stable IDs.
+     */
+    public static final PagedList.Config PAGED_LIST_CONFIG = new PagedList.Config.Builder()
+            .setPageSize(20)
+            .setInitialLoadSizeHint(20)
+            .setEnablePlaceholders(false)
+            .build();
+
+    private ApplicationListAdapter applicationListAdapter;
+
+    private boolean firstFrameObserved;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         Timber.i("onCreate");
         super.onCreate(savedInstanceState);
+        StartupHelper.beginSpan("application_list_onCreate");
 
         setContentView(R.layout.activity_application_list);
 
@@ -42,36 +74,102 @@ public class ApplicationListActivity extends AppCompatActivity {
 //            Snackbar.make(view, "Synchronizing...", Snackbar.LENGTH_LONG).show();
 //            // TODO: Download list of Applications from REST API
 //        });
-    }
-
-    @Override
-    protected void onStart() {
-        Timber.i("onStart");
-        super.onStart();
 
         // Configure list adapter
         RecyclerView recyclerView = findViewById(R.id.recycler_view);
-        final ApplicationListAdapter applicationListAdapter = new ApplicationListAdapter(this);
+        applicationListAdapter = new ApplicationListAdapter(this);
         recyclerView.setAdapter(applicationListAdapter);
         LinearLayoutManager linearLayoutManager = new LinearLayoutManager(this);
         recyclerView.setLayoutManager(linearLayoutManager);
         DividerItemDecoration dividerItemDecoration = new DividerItemDecoration(recyclerView.getContext(), linearLayoutManager.getOrientation());
         recyclerView.addItemDecoration(dividerItemDecoration);
 
-        // Fetch all Applications from database, and update the list adapter
-        RoomDb roomDb = RoomDb.getDatabase(getApplicationContext());
-        ApplicationDao applicationDao = roomDb.applicationDao();
-        ApplicationVersionDao applicationVersionDao = roomDb.applicationVersionDao();
-        RoomDb.databaseWriteExecutor.execute(() -> {
-            List<Application> applications = applicationDao.loadAll();
-            Log.d(getClass().getName(), "applications.size(): " + applications.size());
-            applicationListAdapter.setApplications(applications);
+        // Observe the Applications in the database, so that the list is updated when they are modified (e.g. by a
+        // synchronization in the background). Only the first page is loaded initially, and the next pages are loaded
+        // while scrolling.
+        Context context = getApplicationContext();
+        DataSource.Factory<Integer, ApplicationListItem> dataSourceFactory = RoomDb.getDatabase(context).applicationDao()
+                .loadAllWithNewestVersionPaged()
+                // Prepare the state of each list item in the background, to avoid I/O on the main thread while scrolling
+                .map(applicationWithNewestVersion -> ApplicationListItem.create(context, applicationWithNewestVersion.getApplication(), applicationWithNewestVersion.getNewestApplicationVersion()));
+        LiveData<PagedList<ApplicationListItem>> applicationListItems = new LivePagedListBuilder<>(dataSourceFactory, PAGED_LIST_CONFIG)
+                .setFetchExecutor(RoomDb.databaseWriteExecutor)
+                .build();
+        // Only the rows that have changed since the previous list will be rebound
+        applicationListItems.observe(this, pagedList -> applicationListAdapter.submitList(pagedList, () -> {
+            if (!firstFrameObserved) {
+                firstFrameObserved = true;
+                observeFirstFrame(recyclerView);
+            }
+        }));
+
+        if ((savedInstanceState == null) && getIntent().getBooleanExtra(EXTRA_SYNC_IN_BACKGROUND, false)) {
+            // Do not compete with the loading of the first page for the CPU and for the database
+            StartupHelper.runDeferred(() -> syncInBackground(context));
+        }
+
+        StartupHelper.endSpan("application_list_onCreate");
+    }
+
+    @Override
+    protected void onStart() {
+        Timber.i("onStart");
+        super.onStart();
+
+        // Applications may have been installed or uninstalled while the list was not visible. Only their rows are
+        // rebound, so that the loaded pages (and the scroll position) are kept.
+        applicationListAdapter.refreshInstalledItems();
+    }
 
-            List<ApplicationVersion> applicationVersions = applicationVersionDao.loadAll();
-            Log.d(getClass().getName(), "applicationVersions.size(): " + applicationVersions.size());
-            applicationListAdapter.setApplicationVersions(applicationVersions);
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.menu_application_list, menu);
+        return true;
+    }
 
-            applicationListAdapter.notifyDataSetChanged();
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == R.id.action_update_all) {
+            // Download the updates in parallel, and install them one after the other
+            InstallQueue.getInstance(getApplicationContext()).updateAll();
+            return true;
+        }
+        if (item.getItemId() == R.id.action_select_language) {
+            // The Applications of the current language are kept, so that switching back does not download them again
+            Intent intent = new Intent(getApplicationContext(), SelectLanguageActivity.class);
+            startActivity(intent);
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    /**
+     * Reports the first frame that displays Applications to the {@link StartupHelper}.
+     */
+    private void observeFirstFrame(RecyclerView recyclerView) {
+        recyclerView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                recyclerView.getViewTreeObserver().removeOnPreDrawListener(this);
+                StartupHelper.onFirstFrame(getApplicationContext());
+                return true;
+            }
         });
     }
-}
\ No newline at end of file
+
+    /**
+     * Performs network and database I/O, so it must not be called from the main thread.
+     */
+    private static void syncInBackground(Context context) {
+        Timber.i("syncInBackground");
+
+        try {
+            // If the database is modified, the list will be updated via the observed query
+            boolean isModified = SyncHelper.syncApplications(context);
+            Timber.i("isModified: " + isModified);
+        } catch (IOException | RuntimeException e) {
+            // Keep displaying the Applications already stored in the database
+            Timber.w(e, "syncApplications");
+        }
+    }
+}
@@ -1,12 +1,12 @@
 package ai.elimu.appstore.ui.applications;
 
-import android.app.DownloadManager;
-import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.content.pm.PackageManager;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -15,244 +15,526 @@ import android.widget.ProgressBar;
 import android.widget.TextView;
 
 import androidx.core.content.FileProvider;
+import androidx.paging.PagedList;
+import androidx.paging.PagedListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
 
-import ai.elimu.appstore.BaseApplication;
 import ai.elimu.appstore.BuildConfig;
 import ai.elimu.appstore.R;
+import ai.elimu.appstore.download.DownloadTracker;
+import ai.elimu.appstore.room.RoomDb;
 import ai.elimu.appstore.room.entity.Application;
 import ai.elimu.appstore.room.entity.ApplicationVersion;
-import ai.elimu.appstore.util.FileHelper;
-import ai.elimu.appstore.util.InstallationHelper;
-import ai.elimu.appstore.util.SharedPreferencesHelper;
+import ai.elimu.appstore.util.AppSettings;
+import ai.elimu.appstore.util.InstalledPackagesSnapshot;
+import ai.elimu.appstore.util.LoggingHelper;
+import ai.elimu.model.enums.Language;
 import ai.elimu.model.enums.admin.ApplicationStatus;
 import timber.log.Timber;
 
-public class ApplicationListAdapter extends RecyclerView.Adapter<ApplicationListAdapter.ApplicationViewHolder> {
+/**
+ * Compares each submitted list with the previous one in the background, so that only the rows that changed are
+ * rebound.
+ * <p />
+ *
+ * The items are loaded one page at a time, without placeholders (see {@link ApplicationListActivity#PAGED_LIST_CONFIG}).
+ * Each row therefore has an item, and its Application's ID is used as a stable ID, so that a row keeps its view
+ * (and e.g. its running progress bar) when the list is loaded again.
+ * <p />
+ *
+ * When the state of one Application changes (e.g. its APK file has been downloaded, or it has been installed), only
+ * its item is re-read in the background (see {@link #refreshItem(int)}), and only its row is rebound. The list itself
+ * is not loaded again.
+ */
+public class ApplicationListAdapter extends PagedListAdapter<ApplicationListItem, ApplicationListAdapter.ApplicationViewHolder> {
+
+    /**
+     * Payload used when only the download progress of an item has changed.
+     */
+    static final Object PAYLOAD_PROGRESS = "progress";
 
     private final LayoutInflater layoutInflater;
 
     private final Context context;
 
-    private List<Application> applications;
+    private final AppSettings appSettings;
 
-    private List<ApplicationVersion> applicationVersions;
+    private final DownloadTracker downloadTracker;
+
+    private final Executor backgroundExecutor;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * The items whose installation/download state has been re-read since their page was loaded, by Application ID.
+     * Cleared when another list is submitted, since its items are loaded with the current state.
+     */
+    private final Map<Long, ApplicationListItem> refreshedItemsById = new HashMap<>();
+
+    /**
+     * The positions of the loaded items, by Application ID. {@code null} until the next lookup after a page has been
+     * loaded.
+     */
+    private Map<Long, Integer> positionsById;
+
+    /**
+     * The positions of the loaded items, by package name. Indexed together with {@link #positionsById}.
+     */
+    private Map<String, Integer> positionsByPackageName;
+
+    private final PagedList.Callback pagedListCallback = new PagedList.Callback() {
+        @Override
+        public void onChanged(int position, int count) {
+            clearPositions();
+        }
+
+        @Override
+        public void onInserted(int position, int count) {
+            clearPositions();
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            clearPositions();
+        }
+    };
+
+    final DownloadTracker.Listener downloadListener = new DownloadTracker.Listener() {
+        @Override
+        public void onDownloadProgress(Language language, long applicationId, DownloadTracker.Progress progress) {
+            if (language != appSettings.getLanguage()) {
+                return;
+            }
+            int position = getPosition(applicationId);
+            if (position != RecyclerView.NO_POSITION) {
+                notifyItemChanged(position, PAYLOAD_PROGRESS);
+            }
+        }
+
+        @Override
+        public void onDownloadComplete(Language language, long applicationId, boolean successful) {
+            Timber.i("onDownloadComplete");
+
+            if (language != appSettings.getLanguage()) {
+                // The Application ID refers to an Application in another language's database
+                return;
+            }
+
+            // Replace the progress bar, and check if the APK file is now available
+            int position = getPosition(applicationId);
+            if (position != RecyclerView.NO_POSITION) {
+                notifyItemChanged(position, ApplicationListItem.PAYLOAD_STATE);
+                refreshItem(position);
+            }
+        }
+    };
+
+    private final InstalledPackagesSnapshot installedPackagesSnapshot;
+
+    final InstalledPackagesSnapshot.Listener installedPackagesListener = packageName -> {
+        Timber.i("onPackageChanged");
+
+        // E.g. an APK file has been installed, or an Application has been uninstalled
+        int position = getPosition(packageName);
+        if (position != RecyclerView.NO_POSITION) {
+            refreshItem(position);
+        }
+    };
 
     public ApplicationListAdapter(Context context) {
+        this(context, RoomDb.databaseWriteExecutor);
+    }
+
+    /**
+     * @param backgroundExecutor Used for re-reading the state of an item, which performs file and
+     *                           {@code PackageManager} I/O.
+     */
+    ApplicationListAdapter(Context context, Executor backgroundExecutor) {
+        super(ApplicationListItem.DIFF_CALLBACK);
+        this.backgroundExecutor = backgroundExecutor;
         layoutInflater = LayoutInflater.from(context);
         this.context = context;
+        appSettings = AppSettings.getInstance(context);
+        downloadTracker = DownloadTracker.getInstance(context);
+        installedPackagesSnapshot = InstalledPackagesSnapshot.getInstance(context);
+        setHasStableIds(true);
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        downloadTracker.addListener(downloadListener);
+        installedPackagesSnapshot.addListener(installedPackagesListener);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        downloadTracker.removeListener(downloadListener);
+        installedPackagesSnapshot.removeListener(installedPackagesListener);
+    }
+
+    @Override
+    public void onCurrentListChanged(PagedList<ApplicationListItem> previousList, PagedList<ApplicationListItem> currentList) {
+        super.onCurrentListChanged(previousList, currentList);
+        if (previousList != null) {
+            previousList.removeWeakCallback(pagedListCallback);
+        }
+        if (currentList != null) {
+            currentList.addWeakCallback(null, pagedListCallback);
+        }
+        refreshedItemsById.clear();
+        clearPositions();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).getApplication().getId();
     }
 
     @Override
     public ApplicationViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
-        Timber.i("onCreateViewHolder");
+        if (LoggingHelper.isLoggable(Log.VERBOSE)) {
+            Timber.v("onCreateViewHolder");
+        }
         View itemView = layoutInflater.inflate(R.layout.activity_application_list_item, parent, false);
         return new ApplicationViewHolder(itemView);
     }
 
     @Override
-    public void onBindViewHolder(ApplicationViewHolder viewHolder, int position) {
-        Timber.i("onBindViewHolder");
-        if (applications != null) {
-            // Reset button state
-            viewHolder.launchButton.setVisibility(View.INVISIBLE);
-            viewHolder.installButton.setVisibility(View.INVISIBLE);
-            viewHolder.downloadButton.setVisibility(View.INVISIBLE);
-            viewHolder.installUpdateButton.setVisibility(View.INVISIBLE);
-            viewHolder.downloadUpdateButton.setVisibility(View.INVISIBLE);
-            viewHolder.downloadProgressBar.setVisibility(View.INVISIBLE);
-
-            // Populate TextViews with Application details
-            Application application = applications.get(position);
-            Timber.i("application.getPackageName(): \"" + application.getPackageName() + "\"");
-            viewHolder.textViewFirstLine.setText(application.getPackageName());
-            viewHolder.textViewSecondLine.setText(
-//                    application.getApplicationStatus().toString() + ", " +
-//                    application.getLiteracySkills() + ", " +
-//                    application.getNumeracySkills()
-                    application.getApplicationStatus().toString()
-            );
-
-            // Use 50% transparency if an Application has no corresponding APK files
-            if (application.getApplicationStatus() != ApplicationStatus.ACTIVE) {
-                viewHolder.textViewFirstLine.setAlpha(0.5f);
-                viewHolder.textViewSecondLine.setAlpha(0.5f);
+    public void onBindViewHolder(ApplicationViewHolder viewHolder, int position, List<Object> payloads) {
+        if (payloads.contains(ApplicationListItem.PAYLOAD_STATE)) {
+            // Only the installation/download state has changed
+            if (LoggingHelper.isLoggable(Log.VERBOSE)) {
+                Timber.v("onBindViewHolder (payloads: %s)", payloads);
             }
+            bindState(viewHolder, getDisplayedItem(position));
+        } else if (payloads.contains(PAYLOAD_PROGRESS)) {
+            // Only the download progress has changed
+            bindProgress(viewHolder, getDisplayedItem(position));
+        } else {
+            onBindViewHolder(viewHolder, position);
+        }
+    }
 
-            // Check if any application versions (APKs) have been uploaded to the webapp
-            ApplicationVersion newestApplicationVersion = getNewestApplicationVersion(application, applicationVersions);
-            Timber.i("newestApplicationVersion: " + newestApplicationVersion);
-            if (newestApplicationVersion != null) {
-                // Display a button matching the current state of the application
-                // "Download", "Install", "Launch", "Download update", "Install update"
-
-                if (InstallationHelper.isApplicationInstalled(application.getPackageName(), context)) {
-                    // The APK has been installed
-
-                    // Check if an update is available for download
-                    int versionCodeInstalled = InstallationHelper.getVersionCodeOfInstalledApplication(application.getPackageName(), context);
-                    Timber.i("versionCodeInstalled: " + versionCodeInstalled);
-                    ApplicationVersion applicationVersion = getNewestApplicationVersion(application, applicationVersions);
-                    Timber.i("applicationVersion.getVersionCode(): " + applicationVersion.getVersionCode());
-                    if (versionCodeInstalled < applicationVersion.getVersionCode()) {
-                        // An update is available for download
-
-                        // If the APK has been downloaded (but not yet installed), display the "Install update" button
-                        File apkFile = FileHelper.getApkFile(application.getPackageName(), applicationVersion.getVersionCode(), context);
-                        Timber.i("apkFile: " + apkFile);
-                        Timber.i("apkFile.exists(): " + apkFile.exists());
-                        if (apkFile.exists()) {
-                            viewHolder.installUpdateButton.setVisibility(View.VISIBLE);
-                            View.OnClickListener onClickListener = v -> {
-                                Timber.i("viewHolder.installUpdateButton onClick");
-
-                                // Initiate installation of the APK file
-                                IntentFilter intentFilter = new IntentFilter(Intent.ACTION_PACKAGE_ADDED);
-                                intentFilter.addDataScheme("package");
-                                context.registerReceiver(new PackageAddedReceiver(position), intentFilter);
-                                Uri apkUri = FileProvider.getUriForFile(context, BuildConfig.APPLICATION_ID + ".apk.provider", apkFile);
-                                Intent intent = new Intent(Intent.ACTION_INSTALL_PACKAGE);
-                                intent.setData(apkUri);
-                                intent.setFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
-                                context.startActivity(intent);
-                            };
-                            viewHolder.installUpdateButton.setOnClickListener(onClickListener);
-                        }
+    @Override
+    public void onBindViewHolder(ApplicationViewHolder viewHolder, int position) {
+        if (LoggingHelper.isLoggable(Log.VERBOSE)) {
+            Timber.v("onBindViewHolder");
+        }
+        ApplicationListItem applicationListItem = getDisplayedItem(position);
+        bindDetails(viewHolder, applicationListItem);
+        bindState(viewHolder, applicationListItem);
+    }
 
-                        // If the APK has not been downloaded, display the "Download update" button
-                        if (!apkFile.exists()) {
-                            viewHolder.downloadUpdateButton.setVisibility(View.VISIBLE);
-                            ApplicationVersion finalApplicationVersion = applicationVersion;
-                            viewHolder.downloadUpdateButton.setOnClickListener(v -> {
-                                Timber.i("viewHolder.downloadUpdateButton onClick");
-
-                                // Initiate download of the APK file
-                                context.registerReceiver(new DownloadCompleteReceiver(position), new IntentFilter(DownloadManager.ACTION_DOWNLOAD_COMPLETE));
-                                BaseApplication baseApplication = (BaseApplication) context.getApplicationContext();
-                                String fileUrl = baseApplication.getBaseUrl() + finalApplicationVersion.getFileUrl();
-                                Timber.i("fileUrl: " +  fileUrl);
-                                DownloadManager downloadManager = (DownloadManager) context.getSystemService(Context.DOWNLOAD_SERVICE);
-                                DownloadManager.Request request = new DownloadManager.Request(Uri.parse(fileUrl));
-                                String destinationInExternalFilesDir = File.separator + "lang-" + SharedPreferencesHelper.getLanguage(context).getIsoCode() + File.separator + "apks" + File.separator + apkFile.getName();
-                                Timber.i("destinationInExternalFilesDir: " +  destinationInExternalFilesDir);
-                                request.setDestinationInExternalFilesDir(context, null, destinationInExternalFilesDir);
-                                long downloadId = downloadManager.enqueue(request);
-                                Timber.i("downloadId: " +  downloadId);
-
-                                // Replace download button with progress bar
-                                viewHolder.downloadUpdateButton.setVisibility(View.INVISIBLE);
-                                viewHolder.downloadProgressBar.setVisibility(View.VISIBLE);
-                            });
-                        }
-                    } else {
-                        // The installed APK is up-to-date
-
-                        // Display the "Launch" button
-                        viewHolder.launchButton.setVisibility(View.VISIBLE);
-                        viewHolder.launchButton.setOnClickListener((View.OnClickListener) v -> {
-                            Timber.i("onClick");
-
-                            Timber.i("Launching \"" + application.getPackageName() + "\"");
-                            PackageManager packageManager = context.getPackageManager();
-                            Intent launchIntent = packageManager.getLaunchIntentForPackage(application.getPackageName());
-                            Timber.i("launchIntent: " + launchIntent);
-                            context.startActivity(launchIntent);
-                        });
-                    }
-                } else {
-                    // The APK has not been installed
+    private void bindDetails(ApplicationViewHolder viewHolder, ApplicationListItem applicationListItem) {
+        // Populate TextViews with Application details
+        Application application = applicationListItem.getApplication();
+        if (LoggingHelper.isLoggable(Log.VERBOSE)) {
+            Timber.v("application.getPackageName(): \"%s\"", application.getPackageName());
+        }
+        viewHolder.textViewFirstLine.setText(application.getPackageName());
+        viewHolder.textViewSecondLine.setText(
+//                application.getApplicationStatus().toString() + ", " +
+//                application.getLiteracySkills() + ", " +
+//                application.getNumeracySkills()
+                application.getApplicationStatus().toString()
+        );
+
+        // Use 50% transparency if an Application has no corresponding APK files
+        float alpha = (application.getApplicationStatus() == ApplicationStatus.ACTIVE) ? 1f : 0.5f;
+        viewHolder.textViewFirstLine.setAlpha(alpha);
+        viewHolder.textViewSecondLine.setAlpha(alpha);
+    }
 
-                    // Fetch information about the newest APK file
-                    ApplicationVersion applicationVersion = getNewestApplicationVersion(application, applicationVersions);
-                    if (applicationVersion == null) {
-                        return;
+    private void bindState(ApplicationViewHolder viewHolder, ApplicationListItem applicationListItem) {
+        Application application = applicationListItem.getApplication();
+
+        // Reset button state
+        hideButtons(viewHolder);
+
+        // If the APK is being downloaded, display the download progress
+        if (downloadTracker.isDownloading(application.getId())) {
+            bindProgress(viewHolder, applicationListItem);
+            return;
+        }
+
+        // Check if any application versions (APKs) have been uploaded to the webapp
+        ApplicationVersion applicationVersion = applicationListItem.getNewestApplicationVersion();
+        if (LoggingHelper.isLoggable(Log.VERBOSE)) {
+            Timber.v("applicationVersion: %s", applicationVersion);
+        }
+        if (applicationVersion != null) {
+            // Display a button matching the current state of the application
+            // "Download", "Install", "Launch", "Download update", "Install update"
+
+            File apkFile = applicationListItem.getApkFile();
+            if (applicationListItem.isInstalled()) {
+                // The APK has been installed
+
+                // Check if an update is available for download
+                int versionCodeInstalled = applicationListItem.getVersionCodeInstalled();
+                if (LoggingHelper.isLoggable(Log.VERBOSE)) {
+                    Timber.v("versionCodeInstalled: %d", versionCodeInstalled);
+                    Timber.v("applicationVersion.getVersionCode(): %d", applicationVersion.getVersionCode());
+                }
+                if (versionCodeInstalled < applicationVersion.getVersionCode()) {
+                    // An update is available for download
+
+                    // If the APK has been downloaded (but not yet installed), display the "Install update" button
+                    if (LoggingHelper.isLoggable(Log.VERBOSE)) {
+                        Timber.v("apkFile: %s", apkFile);
+                        Timber.v("applicationListItem.isApkDownloaded(): %b", applicationListItem.isApkDownloaded());
                     }
-                    Timber.i("applicationVersion.getVersionCode(): " + applicationVersion.getVersionCode());
-
-                    // If the APK has been downloaded (but not yet installed), display the "Install" button
-                    File apkFile = FileHelper.getApkFile(application.getPackageName(), applicationVersion.getVersionCode(), context);
-                    Timber.i("apkFile: " + apkFile);
-                    Timber.i("apkFile.exists(): " + apkFile.exists());
-                    if (apkFile.exists()) {
-                        viewHolder.installButton.setVisibility(View.VISIBLE);
+                    if (applicationListItem.isApkDownloaded()) {
+                        viewHolder.installUpdateButton.setVisibility(View.VISIBLE);
                         View.OnClickListener onClickListener = v -> {
-                            Timber.i("viewHolder.installButton onClick");
+                            Timber.i("viewHolder.installUpdateButton onClick");
 
-                            // Initiate installation of the APK file
-                            IntentFilter intentFilter = new IntentFilter(Intent.ACTION_PACKAGE_ADDED);
-                            intentFilter.addDataScheme("package");
-                            context.registerReceiver(new PackageAddedReceiver(position), intentFilter);
+                            // Initiate installation of the APK file. The row is refreshed by installedPackagesListener.
                             Uri apkUri = FileProvider.getUriForFile(context, BuildConfig.APPLICATION_ID + ".apk.provider", apkFile);
                             Intent intent = new Intent(Intent.ACTION_INSTALL_PACKAGE);
                             intent.setData(apkUri);
                             intent.setFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
                             context.startActivity(intent);
                         };
-                        viewHolder.installButton.setOnClickListener(onClickListener);
-                    }
-
-                    // If the APK has not been downloaded, display the "Download" button
-                    if (!apkFile.exists()) {
-                        viewHolder.downloadButton.setVisibility(View.VISIBLE);
-                        ApplicationVersion finalApplicationVersion = applicationVersion;
-                        viewHolder.downloadButton.setOnClickListener(v -> {
-                            Timber.i("viewHolder.downloadButton onClick");
+                        viewHolder.installUpdateButton.setOnClickListener(onClickListener);
+                    } else {
+                        // If the APK has not been downloaded, display the "Download update" button
+                        viewHolder.downloadUpdateButton.setVisibility(View.VISIBLE);
+                        viewHolder.downloadUpdateButton.setOnClickListener(v -> {
+                            Timber.i("viewHolder.downloadUpdateButton onClick");
 
                             // Initiate download of the APK file
-                            context.registerReceiver(new DownloadCompleteReceiver(position), new IntentFilter(DownloadManager.ACTION_DOWNLOAD_COMPLETE));
-                            BaseApplication baseApplication = (BaseApplication) context.getApplicationContext();
-                            String fileUrl = baseApplication.getBaseUrl() + finalApplicationVersion.getFileUrl();
-                            Timber.i("fileUrl: " +  fileUrl);
-                            DownloadManager downloadManager = (DownloadManager) context.getSystemService(Context.DOWNLOAD_SERVICE);
-                            DownloadManager.Request request = new DownloadManager.Request(Uri.parse(fileUrl));
-                            String destinationInExternalFilesDir = File.separator + "lang-" + SharedPreferencesHelper.getLanguage(context).getIsoCode() + File.separator + "apks" + File.separator + apkFile.getName();
-                            Timber.i("destinationInExternalFilesDir: " +  destinationInExternalFilesDir);
-                            request.setDestinationInExternalFilesDir(context, null, destinationInExternalFilesDir);
-                            long downloadId = downloadManager.enqueue(request);
-                            Timber.i("downloadId: " +  downloadId);
+                            downloadTracker.downloadApk(application.getId(), application.getPackageName(), applicationVersion, true);
 
                             // Replace download button with progress bar
-                            viewHolder.downloadButton.setVisibility(View.INVISIBLE);
-                            viewHolder.downloadProgressBar.setVisibility(View.VISIBLE);
+                            notifyItemChanged(viewHolder.getAdapterPosition(), PAYLOAD_PROGRESS);
                         });
                     }
+                } else {
+                    // The installed APK is up-to-date
+
+                    // Display the "Launch" button
+                    viewHolder.launchButton.setVisibility(View.VISIBLE);
+                    viewHolder.launchButton.setOnClickListener((View.OnClickListener) v -> {
+                        Timber.i("onClick");
+
+                        Timber.i("Launching \"" + application.getPackageName() + "\"");
+                        PackageManager packageManager = context.getPackageManager();
+                        Intent launchIntent = packageManager.getLaunchIntentForPackage(application.getPackageName());
+                        Timber.i("launchIntent: " + launchIntent);
+                        context.startActivity(launchIntent);
+                    });
+                }
+            } else {
+                // The APK has not been installed
+
+                if (LoggingHelper.isLoggable(Log.VERBOSE)) {
+                    Timber.v("applicationVersion.getVersionCode(): %d", applicationVersion.getVersionCode());
+                }
+
+                // If the APK has been downloaded (but not yet installed), display the "Install" button
+                if (LoggingHelper.isLoggable(Log.VERBOSE)) {
+                    Timber.v("apkFile: %s", apkFile);
+                    Timber.v("applicationListItem.isApkDownloaded(): %b", applicationListItem.isApkDownloaded());
+                }
+                if (applicationListItem.isApkDownloaded()) {
+                    viewHolder.installButton.setVisibility(View.VISIBLE);
+                    View.OnClickListener onClickListener = v -> {
+                        Timber.i("viewHolder.installButton onClick");
+
+                        // Initiate installation of the APK file. The row is refreshed by installedPackagesListener.
+                        Uri apkUri = FileProvider.getUriForFile(context, BuildConfig.APPLICATION_ID + ".apk.provider", apkFile);
+                        Intent intent = new Intent(Intent.ACTION_INSTALL_PACKAGE);
+                        intent.setData(apkUri);
+                        intent.setFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+                        context.startActivity(intent);
+                    };
+                    viewHolder.installButton.setOnClickListener(onClickListener);
+                } else {
+                    // If the APK has not been downloaded, display the "Download" button
+                    viewHolder.downloadButton.setVisibility(View.VISIBLE);
+                    viewHolder.downloadButton.setOnClickListener(v -> {
+                        Timber.i("viewHolder.downloadButton onClick");
+
+                        // Initiate download of the APK file
+                        downloadTracker.downloadApk(application.getId(), application.getPackageName(), applicationVersion, true);
+
+                        // Replace download button with progress bar
+                        notifyItemChanged(viewHolder.getAdapterPosition(), PAYLOAD_PROGRESS);
+                    });
                 }
             }
         }
     }
 
-    private ApplicationVersion getNewestApplicationVersion(Application application, List<ApplicationVersion> applicationVersions) {
-        ApplicationVersion applicationVersion = null;
-        for (ApplicationVersion appVersion : applicationVersions) {
-            if (appVersion.getApplicationId() == application.getId()) {
-                applicationVersion = appVersion;
-                break;
-            }
+    private void bindProgress(ApplicationViewHolder viewHolder, ApplicationListItem applicationListItem) {
+        DownloadTracker.Progress progress = downloadTracker.getProgress(applicationListItem.getApplication().getId());
+        if (progress == null) {
+            return;
         }
-        return applicationVersion;
-    }
 
-    @Override
-    public int getItemCount() {
-        Timber.i("getItemCount");
-        if (applications == null) {
-            return 0;
+        viewHolder.launchButton.setVisibility(View.INVISIBLE);
+        viewHolder.installButton.setVisibility(View.INVISIBLE);
+        viewHolder.downloadButton.setVisibility(View.INVISIBLE);
+        viewHolder.installUpdateButton.setVisibility(View.INVISIBLE);
+        viewHolder.downloadUpdateButton.setVisibility(View.INVISIBLE);
+        viewHolder.downloadProgressBar.setVisibility(View.VISIBLE);
+        if (progress.getBytesTotal() > 0) {
+            viewHolder.downloadProgressBar.setIndeterminate(false);
+            viewHolder.downloadProgressBar.setProgress((int) (100 * progress.getBytesDownloaded() / progress.getBytesTotal()));
         } else {
-            return applications.size();
+            viewHolder.downloadProgressBar.setIndeterminate(true);
         }
     }
 
-    public void setApplications(List<Application> applications) {
-        this.applications = applications;
+    private void hideButtons(ApplicationViewHolder viewHolder) {
+        viewHolder.launchButton.setVisibility(View.INVISIBLE);
+        viewHolder.installButton.setVisibility(View.INVISIBLE);
+        viewHolder.downloadButton.setVisibility(View.INVISIBLE);
+        viewHolder.installUpdateButton.setVisibility(View.INVISIBLE);
+        viewHolder.downloadUpdateButton.setVisibility(View.INVISIBLE);
+        viewHolder.downloadProgressBar.setVisibility(View.INVISIBLE);
     }
 
-    public void setApplicationVersions(List<ApplicationVersion> applicationVersions) {
-        this.applicationVersions = applicationVersions;
+    /**
+     * @return The item at the {@code position}, with its state re-read if it has changed since its page was loaded.
+     */
+    private ApplicationListItem getDisplayedItem(int position) {
+        return getDisplayedItem(getItem(position));
     }
 
+    private ApplicationListItem getDisplayedItem(ApplicationListItem applicationListItem) {
+        if (refreshedItemsById.isEmpty()) {
+            return applicationListItem;
+        }
+        ApplicationListItem refreshedApplicationListItem = refreshedItemsById.get(applicationListItem.getApplication().getId());
+        return (refreshedApplicationListItem != null) ? refreshedApplicationListItem : applicationListItem;
+    }
+
+    /**
+     * @return The position of the Application, or {@link RecyclerView#NO_POSITION} if it has not been loaded.
+     */
+    private int getPosition(long applicationId) {
+        indexPositions();
+        Integer position = positionsById.get(applicationId);
+        return (position != null) ? position : RecyclerView.NO_POSITION;
+    }
+
+    /**
+     * @return The position of the Application, or {@link RecyclerView#NO_POSITION} if it has not been loaded.
+     */
+    private int getPosition(String packageName) {
+        indexPositions();
+        Integer position = positionsByPackageName.get(packageName);
+        return (position != null) ? position : RecyclerView.NO_POSITION;
+    }
+
+    /**
+     * Indexes the positions of the loaded items, unless they have already been indexed since the last page was
+     * loaded, so that looking up a position (e.g. on every progress update) does not scan the list.
+     */
+    private void indexPositions() {
+        if (positionsById != null) {
+            return;
+        }
+        positionsById = new HashMap<>();
+        positionsByPackageName = new HashMap<>();
+        PagedList<ApplicationListItem> applicationListItems = getCurrentList();
+        if (applicationListItems == null) {
+            return;
+        }
+        // Use a snapshot, since PagedList#get would trigger the loading of every page
+        List<ApplicationListItem> loadedApplicationListItems = applicationListItems.snapshot();
+        for (int i = 0; i < loadedApplicationListItems.size(); i++) {
+            ApplicationListItem applicationListItem = loadedApplicationListItems.get(i);
+            if (applicationListItem != null) {
+                positionsById.put(applicationListItem.getApplication().getId(), i);
+                positionsByPackageName.put(applicationListItem.getApplication().getPackageName(), i);
+            }
+        }
+    }
+
+    private void clearPositions() {
+        positionsById = null;
+        positionsByPackageName = null;
+    }
+
+    /**
+     * Re-reads the installation and download state of the item at the {@code position} in the background, and
+     * rebinds its row if the state has changed.
+     */
+    private void refreshItem(int position) {
+        refreshItems(Collections.singletonList(getDisplayedItem(position)), false);
+    }
+
+    /**
+     * @param onlyIfVersionCodeChanged If {@code true}, only the items whose installed {@code versionCode} has changed
+     *                                 are re-read.
+     */
+    private void refreshItems(List<ApplicationListItem> applicationListItems, boolean onlyIfVersionCodeChanged) {
+        PagedList<ApplicationListItem> currentList = getCurrentList();
+        Context applicationContext = context.getApplicationContext();
+        backgroundExecutor.execute(() -> {
+            List<ApplicationListItem> refreshedApplicationListItems = new ArrayList<>();
+            for (ApplicationListItem applicationListItem : applicationListItems) {
+                if (onlyIfVersionCodeChanged && (installedPackagesSnapshot.getVersionCode(applicationListItem.getApplication().getPackageName()) == applicationListItem.getVersionCodeInstalled())) {
+                    continue;
+                }
+                refreshedApplicationListItems.add(ApplicationListItem.create(applicationContext, applicationListItem.getApplication(), applicationListItem.getNewestApplicationVersion()));
+            }
+            if (!refreshedApplicationListItems.isEmpty()) {
+                mainHandler.post(() -> onItemsRefreshed(currentList, refreshedApplicationListItems));
+            }
+        });
+    }
+
+    private void onItemsRefreshed(PagedList<ApplicationListItem> applicationListItems, List<ApplicationListItem> refreshedApplicationListItems) {
+        if (getCurrentList() != applicationListItems) {
+            // The items of the list submitted in the meantime have been loaded with the current state
+            return;
+        }
+        for (ApplicationListItem refreshedApplicationListItem : refreshedApplicationListItems) {
+            Long applicationId = refreshedApplicationListItem.getApplication().getId();
+            int position = getPosition(applicationId);
+            if ((position == RecyclerView.NO_POSITION)
+                    || ApplicationListItem.DIFF_CALLBACK.areContentsTheSame(getDisplayedItem(position), refreshedApplicationListItem)) {
+                continue;
+            }
+            refreshedItemsById.put(applicationId, refreshedApplicationListItem);
+            notifyItemChanged(position, ApplicationListItem.PAYLOAD_STATE);
+        }
+    }
+
+    /**
+     * Re-reads the state of the loaded items whose installed {@code versionCode} no longer matches the
+     * {@link InstalledPackagesSnapshot} (e.g. because an Application was installed or uninstalled while the list was
+     * not visible), and rebinds their rows. The list itself is not loaded again.
+     */
+    void refreshInstalledItems() {
+        Timber.i("refreshInstalledItems");
+
+        PagedList<ApplicationListItem> applicationListItems = getCurrentList();
+        if (applicationListItems == null) {
+            return;
+        }
+        List<ApplicationListItem> loadedApplicationListItems = new ArrayList<>();
+        for (ApplicationListItem applicationListItem : applicationListItems.snapshot()) {
+            if (applicationListItem != null) {
+                loadedApplicationListItems.add(getDisplayedItem(applicationListItem));
+            }
+        }
+        refreshItems(loadedApplicationListItems, true);
+    }
 
     class ApplicationViewHolder extends RecyclerView.ViewHolder {
 
@@ -268,7 +550,9 @@ public class ApplicationListAdapter extends RecyclerView.Adapter<ApplicationList
 
         private ApplicationViewHolder(View itemView) {
             super(itemView);
-            Timber.i("ApplicationViewHolder");
+            if (LoggingHelper.isLoggable(Log.VERBOSE)) {
+                Timber.v("ApplicationViewHolder");
+            }
 
             textViewFirstLine = itemView.findViewById(R.id.textViewFirstLine);
             textViewSecondLine = itemView.findViewById(R.id.textViewSecondLine);
@@ -281,41 +565,4 @@ public class ApplicationListAdapter extends RecyclerView.Adapter<ApplicationList
             downloadProgressBar = itemView.findViewById(R.id.list_item_download_progressbar);
         }
     }
-
-
-    private class DownloadCompleteReceiver extends BroadcastReceiver {
-
-        private int itemPosition;
-
-        public DownloadCompleteReceiver(int itemPosition) {
-            this.itemPosition = itemPosition;
-        }
-
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            Timber.i("onReceive");
-
-            Timber.i("intent: " + intent);
-            notifyItemChanged(itemPosition);
-        }
-    }
-
-
-    private class PackageAddedReceiver extends BroadcastReceiver {
-
-        private int itemPosition;
-
-        public PackageAddedReceiver(int itemPosition) {
-            this.itemPosition = itemPosition;
-        }
-
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            Timber.i("onReceive");
-
-            Timber.i("intent: " + intent);
-            Timber.i("intent.getData(): " + intent.getData());
-            notifyItemChanged(itemPosition);
-        }
-    }
 }
@@ -0,0 +1,136 @@
+package ai.elimu.appstore.ui.applications;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+
+import java.io.File;
+import java.util.Objects;
+
+import ai.elimu.appstore.room.entity.Application;
+import ai.elimu.appstore.room.entity.ApplicationVersion;
+import ai.elimu.appstore.util.ChecksumHelper;
+import ai.elimu.appstore.util.FileHelper;
+import ai.elimu.appstore.util.InstallationHelper;
+
+/**
+ * Immutable snapshot of an Application's state, so that a row in the {@link ApplicationListAdapter} can be bound
+ * without any database, file or {@code PackageManager} I/O on the main thread.
+ */
+public class ApplicationListItem {
+
+    /**
+     * Payload used when only the installation/download state of an item has changed, so that its text does not have
+     * to be rebound.
+     */
+    public static final Object PAYLOAD_STATE = "state";
+
+    public static final DiffUtil.ItemCallback<ApplicationListItem> DIFF_CALLBACK = new DiffUtil.ItemCallback<ApplicationListItem>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull ApplicationListItem oldItem, @NonNull ApplicationListItem newItem) {
+            return Objects.equals(oldItem.application.getId(), newItem.application.getId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull ApplicationListItem oldItem, @NonNull ApplicationListItem newItem) {
+            return oldItem.hasSameDetails(newItem) && oldItem.hasSameState(newItem);
+        }
+
+        @Override
+        public Object getChangePayload(@NonNull ApplicationListItem oldItem, @NonNull ApplicationListItem newItem) {
+            if (oldItem.hasSameDetails(newItem)) {
+                return PAYLOAD_STATE;
+            }
+            return null;
+        }
+    };
+
+    private final Application application;
+
+    /**
+     * {@code null} if no APK files have been uploaded to the webapp.
+     */
+    private final ApplicationVersion newestApplicationVersion;
+
+    private final boolean installed;
+
+    /**
+     * {@code 0} if the Application has not been installed.
+     */
+    private final int versionCodeInstalled;
+
+    /**
+     * {@code null} if {@link #newestApplicationVersion} is {@code null}.
+     */
+    private final File apkFile;
+
+    private final boolean apkDownloaded;
+
+    ApplicationListItem(Application application, ApplicationVersion newestApplicationVersion, boolean installed, int versionCodeInstalled, File apkFile, boolean apkDownloaded) {
+        this.application = application;
+        this.newestApplicationVersion = newestApplicationVersion;
+        this.installed = installed;
+        this.versionCodeInstalled = versionCodeInstalled;
+        this.apkFile = apkFile;
+        this.apkDownloaded = apkDownloaded;
+    }
+
+    /**
+     * Performs {@code PackageManager} and file I/O, so it must not be called from the main thread. Has no side
+     * effects: an APK file that has not been verified is displayed as not downloaded, and is verified (or quarantined)
+     * when its download is requested.
+     */
+    public static ApplicationListItem create(Context context, Application application, ApplicationVersion newestApplicationVersion) {
+        boolean installed = InstallationHelper.isApplicationInstalled(application.getPackageName(), context);
+        int versionCodeInstalled = 0;
+        if (installed) {
+            versionCodeInstalled = InstallationHelper.getVersionCodeOfInstalledApplication(application.getPackageName(), context);
+        }
+        File apkFile = null;
+        boolean apkDownloaded = false;
+        if (newestApplicationVersion != null) {
+            apkFile = FileHelper.getApkFile(application.getPackageName(), newestApplicationVersion.getVersionCode(), context);
+            apkDownloaded = ChecksumHelper.isVerified(context, apkFile, newestApplicationVersion.getChecksumMd5());
+        }
+        return new ApplicationListItem(application, newestApplicationVersion, installed, versionCodeInstalled, apkFile, apkDownloaded);
+    }
+
+    private boolean hasSameDetails(ApplicationListItem other) {
+        return Objects.equals(application.getPackageName(), other.application.getPackageName())
+                && (application.getApplicationStatus() == other.application.getApplicationStatus());
+    }
+
+    private boolean hasSameState(ApplicationListItem other) {
+        Long newestApplicationVersionId = (newestApplicationVersion == null) ? null : newestApplicationVersion.getId();
+        Long otherNewestApplicationVersionId = (other.newestApplicationVersion == null) ? null : other.newestApplicationVersion.getId();
+        return Objects.equals(newestApplicationVersionId, otherNewestApplicationVersionId)
+                && (installed == other.installed)
+                && (versionCodeInstalled == other.versionCodeInstalled)
+                && (apkDownloaded == other.apkDownloaded);
+    }
+
+    public Application getApplication() {
+        return application;
+    }
+
+    public ApplicationVersion getNewestApplicationVersion() {
+        return newestApplicationVersion;
+    }
+
+    public boolean isInstalled() {
+        return installed;
+    }
+
+    public int getVersionCodeInstalled() {
+        return versionCodeInstalled;
+    }
+
+    public File getApkFile() {
+        return apkFile;
+    }
+
+    public boolean isApkDownloaded() {
+        return apkDownloaded;
+    }
+}
@@ -8,26 +8,13 @@ import androidx.appcompat.app.AppCompatActivity;
 
 import com.google.android.material.snackbar.Snackbar;
 
-import java.util.List;
+import java.io.IOException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 import ai.elimu.appstore.BaseApplication;
 import ai.elimu.appstore.R;
-import ai.elimu.appstore.rest.ApplicationsService;
-import ai.elimu.appstore.room.GsonToRoomConverter;
-import ai.elimu.appstore.room.RoomDb;
-import ai.elimu.appstore.room.dao.ApplicationDao;
-import ai.elimu.appstore.room.dao.ApplicationVersionDao;
-import ai.elimu.appstore.room.entity.Application;
-import ai.elimu.appstore.room.entity.ApplicationVersion;
-import ai.elimu.model.enums.admin.ApplicationStatus;
-import ai.elimu.model.v2.gson.application.ApplicationGson;
-import ai.elimu.model.v2.gson.application.ApplicationVersionGson;
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
-import retrofit2.Retrofit;
+import ai.elimu.appstore.util.SyncHelper;
 import timber.log.Timber;
 
 public class InitialSyncActivity extends AppCompatActivity {
@@ -51,94 +38,21 @@ public class InitialSyncActivity extends AppCompatActivity {
 
         // Download list of Applications from REST API
         BaseApplication baseApplication = (BaseApplication) getApplication();
-        Retrofit retrofit = baseApplication.getRetrofit();
-        ApplicationsService applicationsService = retrofit.create(ApplicationsService.class);
-        Call<List<ApplicationGson>> call = applicationsService.listApplications();
-        Timber.i("call.request(): " + call.request());
-        textView.setText("Connecting to " + call.request().url());
-        call.enqueue(new Callback<List<ApplicationGson>>() {
-            @Override
-            public void onResponse(Call<List<ApplicationGson>> call, Response<List<ApplicationGson>> response) {
-                Timber.i("onResponse");
-
-                Timber.i("response: " + response);
-
-                // Parse the JSON response
-//                Snackbar.make(textView, "Synchronizing database...", Snackbar.LENGTH_LONG).show();
-                List<ApplicationGson> applicationGsons = response.body();
-                Timber.i("applicationGsons.size(): " + applicationGsons.size());
-                if (applicationGsons.size() > 0) {
-                    processResponseBody(applicationGsons);
-                }
-            }
-
-            @Override
-            public void onFailure(Call<List<ApplicationGson>> call, Throwable t) {
-                Timber.e(t, "onFailure");
-
-                Timber.e(t, "t.getCause(): " + t.getCause());
-
-                // Handle error
-                Snackbar.make(textView, t.getCause().toString(), Snackbar.LENGTH_LONG).show();
-            }
-        });
-    }
-
-    private void processResponseBody(List<ApplicationGson> applicationGsons) {
-        Timber.i("processResponseBody");
-
+        textView.setText("Connecting to " + baseApplication.getRestUrl() + "/applications");
         ExecutorService executorService = Executors.newSingleThreadExecutor();
         executorService.execute(new Runnable() {
             @Override
             public void run() {
                 Timber.i("run");
 
-                RoomDb roomDb = RoomDb.getDatabase(getApplicationContext());
-                ApplicationDao applicationDao = roomDb.applicationDao();
-                ApplicationVersionDao applicationVersionDao = roomDb.applicationVersionDao();
-
-                for (ApplicationGson applicationGson : applicationGsons) {
-                    Timber.i("applicationGson.getId(): " + applicationGson.getId());
-
-                    // Check if the Application has already been stored in the database
-                    Application application = applicationDao.load(applicationGson.getId());
-                    Timber.i("application: " + application);
-                    if (application == null) {
-                        // Store the new Application in the database
-                        application = GsonToRoomConverter.getApplication(applicationGson);
-                        applicationDao.insert(application);
-                        Timber.i("Stored Application \"" + application.getPackageName() + "\" in database with ID " + application.getId());
-
-                        if (applicationGson.getApplicationStatus() == ApplicationStatus.ACTIVE) {
-                            // Store the Application's ApplicationVersions in the database
-                            List<ApplicationVersionGson> applicationVersionGsons = applicationGson.getApplicationVersions();
-                            Timber.i("applicationVersionGsons.size(): " + applicationVersionGsons.size());
-                            for (ApplicationVersionGson applicationVersionGson : applicationVersionGsons) {
-                                ApplicationVersion applicationVersion = GsonToRoomConverter.getApplicationVersion(applicationGson, applicationVersionGson);
-                                applicationVersionDao.insert(applicationVersion);
-                                Timber.i("Stored ApplicationVersion " + applicationVersion.getVersionCode() + " in database with ID " + applicationVersion.getId());
-                            }
-                        }
-                    } else {
-                        // Update the existing Application in the database
-                        application = GsonToRoomConverter.getApplication(applicationGson);
-                        applicationDao.update(application);
-                        Timber.i("Updated Application \"" + application.getPackageName() + "\" in database with ID " + application.getId());
-
-                        // Delete all the Application's ApplicationVersions (in case deletions have been made on the server-side)
-                        applicationVersionDao.delete(applicationGson.getId());
+                try {
+                    SyncHelper.syncApplications(getApplicationContext());
+                } catch (IOException | RuntimeException e) {
+                    Timber.e(e, "syncApplications");
 
-                        if (applicationGson.getApplicationStatus() == ApplicationStatus.ACTIVE) {
-                            // Store the Application's ApplicationVersions in the database
-                            List<ApplicationVersionGson> applicationVersionGsons = applicationGson.getApplicationVersions();
-                            Timber.i("applicationVersionGsons.size(): " + applicationVersionGsons.size());
-                            for (ApplicationVersionGson applicationVersionGson : applicationVersionGsons) {
-                                ApplicationVersion applicationVersion = GsonToRoomConverter.getApplicationVersion(applicationGson, applicationVersionGson);
-                                applicationVersionDao.insert(applicationVersion);
-                                Timber.i("Stored ApplicationVersion " + applicationVersion.getVersionCode() + " in database with ID " + applicationVersion.getId());
-                            }
-                        }
-                    }
+                    // Handle error
+                    runOnUiThread(() -> Snackbar.make(textView, e.toString(), Snackbar.LENGTH_LONG).show());
+                    return;
                 }
 
                 // Redirect to the list of Applications
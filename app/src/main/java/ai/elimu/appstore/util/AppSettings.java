@@ -0,0 +1,132 @@
+package ai.elimu.appstore.util;
+
+import android.content.Context;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import ai.elimu.model.enums.Language;
+import timber.log.Timber;
+
+/**
+ * Keeps the settings read on hot paths (e.g. the selected language, which is needed for every query made by client
+ * apps, and for the APK file of every row in the list of Applications) in memory.
+ * <p />
+ *
+ * The settings are read from {@link SharedPreferencesHelper} once per process. Changes are written through to
+ * {@link SharedPreferencesHelper}, which persists them to disk asynchronously, so reading a setting never blocks.
+ */
+public class AppSettings {
+
+    public interface OnSettingChangedListener {
+
+        /**
+         * @param key E.g. {@link SharedPreferencesHelper#PREF_LANGUAGE}.
+         */
+        void onSettingChanged(String key);
+    }
+
+    private static volatile AppSettings instance;
+
+    private final Context context;
+
+    private volatile Language language;
+
+    private volatile int appVersionCode;
+
+    private final List<OnSettingChangedListener> listeners = new CopyOnWriteArrayList<>();
+
+    private AppSettings(Context context) {
+        this.context = context;
+        load();
+    }
+
+    public static AppSettings getInstance(Context context) {
+        if (instance == null) {
+            synchronized (AppSettings.class) {
+                if (instance == null) {
+                    Timber.i("Loading settings");
+                    instance = new AppSettings(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Makes the next call to {@link #getInstance(Context)} load the settings again, since each unit test has its own
+     * {@code Application}, but they share the process.
+     */
+    @VisibleForTesting
+    public static synchronized void reset() {
+        instance = null;
+    }
+
+    private void load() {
+        language = SharedPreferencesHelper.getLanguage(context);
+        appVersionCode = SharedPreferencesHelper.getAppVersionCode(context);
+    }
+
+    /**
+     * @return {@code null} if no language has been selected yet.
+     */
+    public Language getLanguage() {
+        return language;
+    }
+
+    public void setLanguage(Language language) {
+        Timber.i("setLanguage");
+
+        this.language = language;
+        SharedPreferencesHelper.storeLanguage(context, language);
+        notifyListeners(SharedPreferencesHelper.PREF_LANGUAGE);
+    }
+
+    /**
+     * @return {@code 0} if no version code has been stored yet.
+     */
+    public int getAppVersionCode() {
+        return appVersionCode;
+    }
+
+    public void setAppVersionCode(int appVersionCode) {
+        Timber.i("setAppVersionCode");
+
+        this.appVersionCode = appVersionCode;
+        SharedPreferencesHelper.storeAppVersionCode(context, appVersionCode);
+        notifyListeners(SharedPreferencesHelper.PREF_APP_VERSION_CODE);
+    }
+
+    /**
+     * Clears all stored preferences (see {@link SharedPreferencesHelper#clearAllPreferences}), including the settings
+     * kept in memory.
+     */
+    public void clearAll() {
+        Timber.w("clearAll");
+
+        SharedPreferencesHelper.clearAllPreferences(context);
+        language = null;
+        appVersionCode = 0;
+        notifyListeners(SharedPreferencesHelper.PREF_LANGUAGE);
+        notifyListeners(SharedPreferencesHelper.PREF_APP_VERSION_CODE);
+    }
+
+    /**
+     * The listener is called on the thread that changed the setting.
+     */
+    public void registerOnSettingChangedListener(OnSettingChangedListener listener) {
+        listeners.add(listener);
+    }
+
+    public void unregisterOnSettingChangedListener(OnSettingChangedListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void notifyListeners(String key) {
+        for (OnSettingChangedListener listener : listeners) {
+            listener.onSettingChanged(key);
+        }
+    }
+}
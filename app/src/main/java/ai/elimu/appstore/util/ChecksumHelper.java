@@ -0,0 +1,126 @@
+package ai.elimu.appstore.util;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import timber.log.Timber;
+
+/**
+ * Helper class for verifying the MD5 checksums of downloaded APK files.
+ * <p />
+ *
+ * Verified files are remembered by path, size and last modification time, so that each file only has to be hashed
+ * once. Files are only hashed (and quarantined if they do not match) while being downloaded or installed, so reading
+ * the state of a file (see {@link #isVerified}) has no side effects.
+ */
+public class ChecksumHelper {
+
+    private static final Map<String, String> verifiedFiles = new ConcurrentHashMap<>();
+
+    public static MessageDigest createMd5Digest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static String calculateMd5(File file) throws IOException {
+        MessageDigest messageDigest = createMd5Digest();
+        try (InputStream inputStream = new FileInputStream(file)) {
+            byte[] buffer = new byte[8 * 1024];
+            int bytesRead;
+            while ((bytesRead = inputStream.read(buffer)) != -1) {
+                messageDigest.update(buffer, 0, bytesRead);
+            }
+        }
+        return toHex(messageDigest.digest());
+    }
+
+    public static String toHex(byte[] bytes) {
+        StringBuilder stringBuilder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            stringBuilder.append(Character.forDigit((b >> 4) & 0xF, 16));
+            stringBuilder.append(Character.forDigit(b & 0xF, 16));
+        }
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Checks if the file has been verified against the checksum (and not modified since). The file itself is not
+     * hashed, so a file that has not been verified yet (e.g. one downloaded by a previous version of the app) is
+     * verified when its download is requested. See {@code DownloadEngine}.
+     * <p />
+     *
+     * Reads the file's metadata, so it must not be called from the main thread.
+     */
+    public static boolean isVerified(Context context, File file, String checksumMd5) {
+        if (!file.exists()) {
+            return false;
+        }
+        String path = file.getAbsolutePath();
+        String verification = getVerification(file, checksumMd5);
+        if (verification.equals(verifiedFiles.get(path))) {
+            return true;
+        }
+        if (verification.equals(SharedPreferencesHelper.getApkVerification(context, path))) {
+            verifiedFiles.put(path, verification);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Remembers that the file matches the checksum, e.g. after it was verified while being downloaded.
+     */
+    public static void storeVerified(Context context, File file, String checksumMd5) {
+        String path = file.getAbsolutePath();
+        String verification = getVerification(file, checksumMd5);
+        verifiedFiles.put(path, verification);
+        SharedPreferencesHelper.storeApkVerification(context, path, verification);
+    }
+
+    /**
+     * Forgets the verification of a file that has been deleted or replaced.
+     */
+    public static void forget(Context context, File file) {
+        String path = file.getAbsolutePath();
+        verifiedFiles.remove(path);
+        SharedPreferencesHelper.removeApkVerification(context, path);
+    }
+
+    /**
+     * Forgets the verifications of all the files in a directory that has been deleted.
+     */
+    public static void forgetDirectory(Context context, File directory) {
+        String pathPrefix = directory.getAbsolutePath() + File.separator;
+        verifiedFiles.keySet().removeIf(path -> path.startsWith(pathPrefix));
+        SharedPreferencesHelper.removeApkVerifications(context, pathPrefix);
+    }
+
+    /**
+     * Moves a file that does not match its checksum out of the way (to {@code <file>.corrupt}), so that it will be
+     * downloaded again. The most recent mismatching file is kept for troubleshooting.
+     */
+    public static void quarantine(File file) {
+        Timber.w("quarantine");
+
+        File quarantineFile = new File(file.getPath() + ".corrupt");
+        Timber.w("quarantineFile: " + quarantineFile);
+        if (!file.renameTo(quarantineFile)) {
+            file.delete();
+        }
+    }
+
+    private static String getVerification(File file, String checksumMd5) {
+        return file.length() + ":" + file.lastModified() + ":" + checksumMd5.toLowerCase();
+    }
+}
@@ -0,0 +1,85 @@
+package ai.elimu.appstore.util;
+
+import android.content.Context;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import ai.elimu.appstore.download.DownloadEngine;
+import ai.elimu.appstore.download.DownloadTracker;
+import ai.elimu.appstore.room.RoomDb;
+import ai.elimu.appstore.room.entity.Application;
+import ai.elimu.appstore.room.entity.ApplicationVersion;
+import ai.elimu.appstore.room.entity.ApplicationWithNewestVersion;
+import timber.log.Timber;
+
+/**
+ * Helper class for finding APK files that should be downloaded. See {@link DownloadTracker}.
+ */
+public class DownloadHelper {
+
+    /**
+     * Enqueues the download of the newest APK file of each installed Application that has an update available,
+     * unless the APK file has already been downloaded and verified.
+     * <p />
+     *
+     * Performs database I/O, so it must not be called from the main thread.
+     *
+     * @return The downloads enqueued.
+     */
+    public static List<DownloadEngine.Download> downloadApplicationUpdates(Context context, boolean allowedOverMetered) {
+        Timber.i("downloadApplicationUpdates");
+
+        List<DownloadEngine.Download> downloads = new ArrayList<>();
+        for (ApplicationWithNewestVersion applicationWithNewestVersion : getApplicationUpdates(context)) {
+            Application application = applicationWithNewestVersion.getApplication();
+            ApplicationVersion newestApplicationVersion = applicationWithNewestVersion.getNewestApplicationVersion();
+
+            File apkFile = FileHelper.getApkFile(application.getPackageName(), newestApplicationVersion.getVersionCode(), context);
+            if (ChecksumHelper.isVerified(context, apkFile, newestApplicationVersion.getChecksumMd5()) || DownloadTracker.getInstance(context).isDownloading(application.getId())) {
+                continue;
+            }
+
+            DownloadEngine.Download download = DownloadTracker.getInstance(context).downloadApk(application.getId(), application.getPackageName(), newestApplicationVersion, allowedOverMetered);
+            if (download != null) {
+                downloads.add(download);
+            }
+        }
+        Timber.i("downloads.size(): " + downloads.size());
+        return downloads;
+    }
+
+    /**
+     * Performs database I/O, so it must not be called from the main thread.
+     *
+     * @return The installed Applications that have a newer version available.
+     */
+    public static List<ApplicationWithNewestVersion> getApplicationUpdates(Context context) {
+        Timber.i("getApplicationUpdates");
+
+        RoomDb roomDb = RoomDb.getDatabase(context);
+        List<ApplicationWithNewestVersion> applicationsWithNewestVersion = roomDb.applicationDao().loadAllWithNewestVersion();
+        List<ApplicationWithNewestVersion> applicationUpdates = new ArrayList<>();
+        for (ApplicationWithNewestVersion applicationWithNewestVersion : applicationsWithNewestVersion) {
+            Application application = applicationWithNewestVersion.getApplication();
+            ApplicationVersion newestApplicationVersion = applicationWithNewestVersion.getNewestApplicationVersion();
+            if (newestApplicationVersion == null) {
+                continue;
+            }
+
+            if (!InstallationHelper.isApplicationInstalled(application.getPackageName(), context)) {
+                continue;
+            }
+
+            int versionCodeInstalled = InstallationHelper.getVersionCodeOfInstalledApplication(application.getPackageName(), context);
+            if (versionCodeInstalled >= newestApplicationVersion.getVersionCode()) {
+                continue;
+            }
+
+            applicationUpdates.add(applicationWithNewestVersion);
+        }
+        Timber.i("applicationUpdates.size(): " + applicationUpdates.size());
+        return applicationUpdates;
+    }
+}
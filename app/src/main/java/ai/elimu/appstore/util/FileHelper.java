@@ -11,10 +11,17 @@ import ai.elimu.model.enums.Language;
  */
 public class FileHelper {
 
-    private static File getApksDirectory(Context context) {
+    /**
+     * @return The directory containing the files downloaded for the {@code language}.
+     */
+    public static File getLanguageDirectory(Context context, Language language) {
         File externalFilesDir = context.getExternalFilesDir(null);
-        Language language = SharedPreferencesHelper.getLanguage(context);
-        File languageDirectory = new File(externalFilesDir, "lang-" + language.getIsoCode());
+        return new File(externalFilesDir, "lang-" + language.getIsoCode());
+    }
+
+    private static File getApksDirectory(Context context) {
+        Language language = AppSettings.getInstance(context).getLanguage();
+        File languageDirectory = getLanguageDirectory(context, language);
         File apksDirectory = new File(languageDirectory, "apks");
         if (!apksDirectory.exists()) {
             apksDirectory.mkdirs();
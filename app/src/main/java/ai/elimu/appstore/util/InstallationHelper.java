@@ -1,24 +1,29 @@
 package ai.elimu.appstore.util;
 
 import android.content.Context;
-import android.content.pm.PackageInfo;
-import android.content.pm.PackageManager;
+import android.content.IntentSender;
+import android.content.pm.PackageInstaller;
 
-import androidx.core.content.pm.PackageInfoCompat;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
 
+import timber.log.Timber;
+
+/**
+ * Reads the installation state from the {@link InstalledPackagesSnapshot}, instead of making a call to the
+ * {@code PackageManager} for every Application.
+ */
 public class InstallationHelper {
 
     /**
      * Checks if an APK file has been installed on the device or not.
      */
     public static boolean isApplicationInstalled(String packageName, Context context) {
-        PackageManager packageManager = context.getPackageManager();
-        try {
-            packageManager.getPackageInfo(packageName, PackageManager.GET_ACTIVITIES);
-        } catch (PackageManager.NameNotFoundException e) {
-            return false;
-        }
-        return true;
+        return InstalledPackagesSnapshot.getInstance(context).isInstalled(packageName);
     }
 
     /**
@@ -28,13 +33,59 @@ public class InstallationHelper {
      * Returns {@code 0} if no APK with the {@code packageName} has been installed on the device.
      */
     public static int getVersionCodeOfInstalledApplication(String packageName, Context context) {
+        return InstalledPackagesSnapshot.getInstance(context).getVersionCode(packageName);
+    }
+
+    /**
+     * Installs an APK file with a {@link PackageInstaller} session. The bytes are streamed from the file directly into
+     * the session, and the MD5 checksum is calculated on the way, so the file is only read once. The session is only
+     * committed if the bytes match the checksum.
+     * <p />
+     *
+     * The result (including {@link PackageInstaller#STATUS_PENDING_USER_ACTION}) is sent to the
+     * {@code statusReceiver}.
+     * <p />
+     *
+     * Performs file I/O, so it must not be called from the main thread.
+     *
+     * @return The ID of the committed session.
+     * @throws IOException If the file could not be read, or did not match the checksum. The session is then abandoned.
+     */
+    public static int installApk(Context context, File apkFile, String packageName, String checksumMd5, IntentSender statusReceiver) throws IOException {
+        Timber.i("installApk");
+
+        Timber.i("apkFile: " + apkFile);
+        PackageInstaller packageInstaller = context.getPackageManager().getPackageInstaller();
+        PackageInstaller.SessionParams sessionParams = new PackageInstaller.SessionParams(PackageInstaller.SessionParams.MODE_FULL_INSTALL);
+        sessionParams.setAppPackageName(packageName);
+        sessionParams.setSize(apkFile.length());
+        int sessionId = packageInstaller.createSession(sessionParams);
+        Timber.i("sessionId: " + sessionId);
+        PackageInstaller.Session session = packageInstaller.openSession(sessionId);
         try {
-            PackageInfo packageInfo = context.getPackageManager().getPackageInfo(packageName, 0);
-            long longVersionCode = PackageInfoCompat.getLongVersionCode(packageInfo);
-            int versionCode = (int) longVersionCode;
-            return versionCode;
-        } catch (PackageManager.NameNotFoundException e) {
-            return 0;
+            MessageDigest messageDigest = ChecksumHelper.createMd5Digest();
+            try (InputStream inputStream = new FileInputStream(apkFile);
+                 OutputStream outputStream = session.openWrite("base.apk", 0, apkFile.length())) {
+                byte[] buffer = new byte[64 * 1024];
+                int bytesRead;
+                while ((bytesRead = inputStream.read(buffer)) != -1) {
+                    messageDigest.update(buffer, 0, bytesRead);
+                    outputStream.write(buffer, 0, bytesRead);
+                }
+                session.fsync(outputStream);
+            }
+            String md5 = ChecksumHelper.toHex(messageDigest.digest());
+            if (!md5.equalsIgnoreCase(checksumMd5)) {
+                throw new IOException("Checksum mismatch for " + apkFile + ". Expected " + checksumMd5 + ", but was " + md5);
+            }
+            session.commit(statusReceiver);
+            return sessionId;
+        } catch (IOException | RuntimeException e) {
+            Timber.w(e, "Abandoning session " + sessionId);
+            session.abandon();
+            throw e;
+        } finally {
+            session.close();
         }
     }
 }
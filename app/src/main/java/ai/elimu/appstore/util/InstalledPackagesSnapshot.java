@@ -0,0 +1,184 @@
+package ai.elimu.appstore.util;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+
+import androidx.annotation.VisibleForTesting;
+import androidx.core.content.pm.PackageInfoCompat;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import timber.log.Timber;
+
+/**
+ * The {@code versionCode} of every package installed on the device, so that the installation state of each row in
+ * the list of Applications can be read without a call to the {@code PackageManager}.
+ * <p />
+ *
+ * The snapshot is read with one call to {@link PackageManager#getInstalledPackages(int)} when it is first queried, and
+ * is then kept up-to-date by the {@link Intent#ACTION_PACKAGE_ADDED}, {@link Intent#ACTION_PACKAGE_REPLACED} and
+ * {@link Intent#ACTION_PACKAGE_REMOVED} broadcasts. The broadcasts are received on a background thread, since updating
+ * the snapshot calls the {@code PackageManager}, and may have to wait for the snapshot to be loaded.
+ */
+public class InstalledPackagesSnapshot {
+
+    /**
+     * Listeners are called on the main thread, after the snapshot has been updated.
+     */
+    public interface Listener {
+
+        void onPackageChanged(String packageName);
+    }
+
+    private static volatile InstalledPackagesSnapshot INSTANCE;
+
+    private final Context context;
+
+    private final Map<String, Integer> versionCodeByPackageName = new ConcurrentHashMap<>();
+
+    private volatile boolean loaded;
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private final Looper backgroundLooper;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    InstalledPackagesSnapshot(Context context) {
+        this.context = context.getApplicationContext();
+
+        HandlerThread handlerThread = new HandlerThread("InstalledPackagesSnapshot");
+        handlerThread.start();
+        backgroundLooper = handlerThread.getLooper();
+
+        // Registered before the snapshot is loaded, so that no change is missed
+        IntentFilter intentFilter = new IntentFilter();
+        intentFilter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        intentFilter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        intentFilter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        intentFilter.addDataScheme("package");
+        this.context.registerReceiver(new PackageChangedReceiver(), intentFilter, null, new Handler(backgroundLooper));
+    }
+
+    public static InstalledPackagesSnapshot getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (InstalledPackagesSnapshot.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new InstalledPackagesSnapshot(context);
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Performs {@code PackageManager} I/O the first time it is called, so it must not be called from the main thread.
+     */
+    public boolean isInstalled(String packageName) {
+        load();
+        return versionCodeByPackageName.containsKey(packageName);
+    }
+
+    /**
+     * Performs {@code PackageManager} I/O the first time it is called, so it must not be called from the main thread.
+     *
+     * @return {@code 0} if the package is not installed.
+     */
+    public int getVersionCode(String packageName) {
+        load();
+        Integer versionCode = versionCodeByPackageName.get(packageName);
+        return (versionCode == null) ? 0 : versionCode;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return The {@link Looper} on which the broadcasts are received.
+     */
+    @VisibleForTesting
+    Looper getBackgroundLooper() {
+        return backgroundLooper;
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            Timber.i("load");
+            List<PackageInfo> packageInfos = context.getPackageManager().getInstalledPackages(0);
+            for (PackageInfo packageInfo : packageInfos) {
+                versionCodeByPackageName.put(packageInfo.packageName, getVersionCode(packageInfo));
+            }
+            Timber.i("versionCodeByPackageName.size(): " + versionCodeByPackageName.size());
+            loaded = true;
+        }
+    }
+
+    private static int getVersionCode(PackageInfo packageInfo) {
+        return (int) PackageInfoCompat.getLongVersionCode(packageInfo);
+    }
+
+    /**
+     * Updates the snapshot for one package. Synchronized with {@link #load()}, so that a snapshot being loaded is not
+     * overwritten with an older state.
+     */
+    private synchronized void update(String packageName) {
+        if (!loaded) {
+            // The package will be read when the snapshot is loaded
+            return;
+        }
+        try {
+            PackageInfo packageInfo = context.getPackageManager().getPackageInfo(packageName, 0);
+            versionCodeByPackageName.put(packageName, getVersionCode(packageInfo));
+        } catch (PackageManager.NameNotFoundException e) {
+            versionCodeByPackageName.remove(packageName);
+        }
+    }
+
+
+    private class PackageChangedReceiver extends BroadcastReceiver {
+
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            Timber.i("onReceive");
+
+            Timber.i("intent: " + intent);
+            Uri data = intent.getData();
+            if (data == null) {
+                return;
+            }
+            if (Intent.ACTION_PACKAGE_REMOVED.equals(intent.getAction()) && intent.getBooleanExtra(Intent.EXTRA_REPLACING, false)) {
+                // Followed by ACTION_PACKAGE_ADDED and ACTION_PACKAGE_REPLACED
+                return;
+            }
+            String packageName = data.getSchemeSpecificPart();
+            update(packageName);
+            mainHandler.post(() -> {
+                for (Listener listener : listeners) {
+                    listener.onPackageChanged(packageName);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package ai.elimu.appstore.util;
+
+import android.content.Context;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import ai.elimu.appstore.provider.ApplicationProvider;
+import ai.elimu.appstore.room.RoomDb;
+import ai.elimu.model.enums.Language;
+import timber.log.Timber;
+
+/**
+ * Helper class for the data stored for each language, i.e. its database (see
+ * {@link RoomDb#getDatabase(Context, Language)}), its APK files (see {@link FileHelper}), and the state of its
+ * synchronization (see {@link SharedPreferencesHelper#storeApplicationsValidators}).
+ * <p />
+ *
+ * The data of a language is kept when another language is selected, so that switching back is instant (and does not
+ * require a connection to the REST API), until the languages not selected exceed {@link #INACTIVE_DISK_BUDGET}.
+ */
+public class LanguageStoreHelper {
+
+    /**
+     * The maximum number of bytes used by the languages that are not currently selected. The least recently selected
+     * languages are deleted first.
+     */
+    public static final long INACTIVE_DISK_BUDGET = 256L * 1024 * 1024;
+
+    public static void selectLanguage(Context context, Language language) {
+        Timber.i("selectLanguage");
+
+        long currentTime = System.currentTimeMillis();
+        Language previousLanguage = AppSettings.getInstance(context).getLanguage();
+        if (previousLanguage != null) {
+            SharedPreferencesHelper.storeLanguageLastUsed(context, previousLanguage, currentTime);
+        }
+        SharedPreferencesHelper.storeLanguageLastUsed(context, language, currentTime);
+        AppSettings.getInstance(context).setLanguage(language);
+
+        // Client apps should query the Applications of the selected language
+        context.getContentResolver().notifyChange(ApplicationProvider.CONTENT_URI_APPLICATIONS, null);
+    }
+
+    /**
+     * Deletes the data of the least recently selected languages, until the languages not currently selected use at
+     * most {@code diskBudget} bytes.
+     * <p />
+     *
+     * Performs disk I/O, so it must not be called from the main thread.
+     */
+    public static void evictInactiveLanguages(Context context, long diskBudget) {
+        Timber.i("evictInactiveLanguages");
+
+        Language selectedLanguage = AppSettings.getInstance(context).getLanguage();
+        List<Language> inactiveLanguages = new ArrayList<>();
+        long diskUsage = 0;
+        for (Language language : Language.values()) {
+            if (language == selectedLanguage) {
+                continue;
+            }
+            long languageDiskUsage = getDiskUsage(context, language);
+            if (languageDiskUsage > 0) {
+                inactiveLanguages.add(language);
+                diskUsage += languageDiskUsage;
+            }
+        }
+        Timber.i("diskUsage: " + diskUsage);
+
+        Collections.sort(inactiveLanguages, Comparator.comparingLong(language -> SharedPreferencesHelper.getLanguageLastUsed(context, language)));
+        for (Language language : inactiveLanguages) {
+            if (diskUsage <= diskBudget) {
+                break;
+            }
+            long languageDiskUsage = getDiskUsage(context, language);
+            Timber.i("Deleting " + language + " (" + languageDiskUsage + " bytes)");
+            RoomDb.deleteDatabase(context, language);
+            File languageDirectory = FileHelper.getLanguageDirectory(context, language);
+            deleteRecursively(languageDirectory);
+            ChecksumHelper.forgetDirectory(context, languageDirectory);
+            SharedPreferencesHelper.clearApplicationsValidators(context, language);
+            diskUsage -= languageDiskUsage;
+        }
+    }
+
+    /**
+     * @return The number of bytes used by the database and the APK files of the {@code language}.
+     */
+    public static long getDiskUsage(Context context, Language language) {
+        long diskUsage = 0;
+        String databasePath = context.getDatabasePath(RoomDb.getDatabaseName(language)).getPath();
+        for (String suffix : new String[] {"", "-journal", "-wal", "-shm"}) {
+            diskUsage += new File(databasePath + suffix).length();
+        }
+        diskUsage += getSize(FileHelper.getLanguageDirectory(context, language));
+        return diskUsage;
+    }
+
+    private static long getSize(File file) {
+        File[] children = file.listFiles();
+        if (children == null) {
+            return file.length();
+        }
+        long size = 0;
+        for (File child : children) {
+            size += getSize(child);
+        }
+        return size;
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
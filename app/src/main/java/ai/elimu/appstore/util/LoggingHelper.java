@@ -0,0 +1,64 @@
+package ai.elimu.appstore.util;
+
+import android.util.Log;
+
+import timber.log.Timber;
+
+/**
+ * Helper class for configuring {@link Timber} per build type.
+ * <p />
+ *
+ * Debuggable builds log everything to Logcat. Release builds only keep warnings and errors, in a
+ * {@link RingBufferTree}.
+ * <p />
+ *
+ * On hot paths (e.g. while binding the rows of a list), check {@link #isLoggable(int)} before calling {@link Timber},
+ * and use a format string instead of concatenation:
+ * <pre>
+ *     if (LoggingHelper.isLoggable(Log.VERBOSE)) {
+ *         Timber.v("versionCode: %d", versionCode);
+ *     }
+ * </pre>
+ * Otherwise the message (and the varargs array) is allocated even when it is not logged.
+ */
+public class LoggingHelper {
+
+    /**
+     * The number of messages kept in memory by release builds.
+     */
+    public static final int RING_BUFFER_CAPACITY = 100;
+
+    private static volatile int minPriority = Log.VERBOSE;
+
+    private static volatile RingBufferTree ringBufferTree;
+
+    /**
+     * @param debuggable E.g. {@code BuildConfig.DEBUG}.
+     */
+    public static void plantTree(boolean debuggable) {
+        Timber.uprootAll();
+        if (debuggable) {
+            minPriority = Log.VERBOSE;
+            ringBufferTree = null;
+            Timber.plant(new Timber.DebugTree());
+        } else {
+            minPriority = Log.WARN;
+            ringBufferTree = new RingBufferTree(minPriority, RING_BUFFER_CAPACITY);
+            Timber.plant(ringBufferTree);
+        }
+    }
+
+    /**
+     * @param priority E.g. {@link Log#INFO}.
+     */
+    public static boolean isLoggable(int priority) {
+        return priority >= minPriority;
+    }
+
+    /**
+     * @return {@code null} in debuggable builds.
+     */
+    public static RingBufferTree getRingBufferTree() {
+        return ringBufferTree;
+    }
+}
@@ -0,0 +1,76 @@
+package ai.elimu.appstore.util;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import timber.log.Timber;
+
+/**
+ * Keeps the most recent log messages in memory instead of writing them to Logcat, e.g. to be included in a crash
+ * report. Used in release builds, where only warnings and errors are logged. See {@link LoggingHelper}.
+ */
+public class RingBufferTree extends Timber.Tree {
+
+    private final int minPriority;
+
+    private final String[] messages;
+
+    private long count;
+
+    public RingBufferTree(int minPriority, int capacity) {
+        this.minPriority = minPriority;
+        messages = new String[capacity];
+    }
+
+    /**
+     * Checked by {@link Timber} before formatting the message, so that messages below {@code minPriority} are
+     * discarded without being formatted.
+     */
+    @Override
+    protected boolean isLoggable(String tag, int priority) {
+        return priority >= minPriority;
+    }
+
+    @Override
+    protected void log(int priority, String tag, String message, Throwable t) {
+        // The message already includes the stack trace of t (if any)
+        String entry = getPriorityLetter(priority) + ((tag == null) ? "" : ("/" + tag)) + ": " + message;
+        synchronized (messages) {
+            messages[(int) (count % messages.length)] = entry;
+            count++;
+        }
+    }
+
+    /**
+     * @return The most recent log messages, oldest first.
+     */
+    public List<String> getMessages() {
+        synchronized (messages) {
+            int size = (int) Math.min(count, messages.length);
+            List<String> recentMessages = new ArrayList<>(size);
+            for (long i = count - size; i < count; i++) {
+                recentMessages.add(messages[(int) (i % messages.length)]);
+            }
+            return recentMessages;
+        }
+    }
+
+    private static char getPriorityLetter(int priority) {
+        switch (priority) {
+            case Log.VERBOSE:
+                return 'V';
+            case Log.DEBUG:
+                return 'D';
+            case Log.INFO:
+                return 'I';
+            case Log.WARN:
+                return 'W';
+            case Log.ERROR:
+                return 'E';
+            default:
+                return 'A';
+        }
+    }
+}
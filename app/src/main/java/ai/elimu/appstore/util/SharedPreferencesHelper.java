@@ -4,6 +4,10 @@ import android.content.Context;
 import android.content.SharedPreferences;
 import android.text.TextUtils;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import ai.elimu.model.enums.Language;
 import timber.log.Timber;
 
@@ -13,6 +17,11 @@ public class SharedPreferencesHelper {
 
     public static final String PREF_APP_VERSION_CODE = "pref_app_version_code";
     public static final String PREF_LANGUAGE = "pref_language";
+    public static final String PREF_LANGUAGE_LAST_USED = "pref_language_last_used";
+    public static final String PREF_APPLICATIONS_ETAG = "pref_applications_etag";
+    public static final String PREF_APPLICATIONS_LAST_MODIFIED = "pref_applications_last_modified";
+    public static final String PREF_APK_VERIFICATION = "pref_apk_verification";
+    public static final String PREF_UPDATE_QUEUE = "pref_update_queue";
 
     public static void clearAllPreferences(Context context) {
         Timber.w("clearAllPreferences");
@@ -27,6 +36,9 @@ public class SharedPreferencesHelper {
         sharedPreferences.edit().putInt(PREF_APP_VERSION_CODE, appVersionCode).apply();
     }
 
+    /**
+     * Only read once per process. Use {@link AppSettings#getAppVersionCode()} instead.
+     */
     public static int getAppVersionCode(Context context) {
         Timber.i("getAppVersionCode");
         SharedPreferences sharedPreferences = context.getSharedPreferences(SHARED_PREFS, Context.MODE_PRIVATE);
@@ -40,6 +52,9 @@ public class SharedPreferencesHelper {
         sharedPreferences.edit().putString(PREF_LANGUAGE, language.toString()).apply();
     }
 
+    /**
+     * Only read once per process. Use {@link AppSettings#getLanguage()} instead.
+     */
     public static Language getLanguage(Context context) {
         Timber.i("getLanguage");
         SharedPreferences sharedPreferences = context.getSharedPreferences(SHARED_PREFS, Context.MODE_PRIVATE);
@@ -51,4 +66,123 @@ public class SharedPreferencesHelper {
             return language;
         }
     }
+
+
+    /**
+     * @param lastUsed The time (in milliseconds) when the {@code language} was last selected.
+     */
+    public static void storeLanguageLastUsed(Context context, Language language, long lastUsed) {
+        Timber.i("storeLanguageLastUsed");
+        SharedPreferences sharedPreferences = context.getSharedPreferences(SHARED_PREFS, Context.MODE_PRIVATE);
+        sharedPreferences.edit().putLong(PREF_LANGUAGE_LAST_USED + "_" + language, lastUsed).apply();
+    }
+
+    /**
+     * @return {@code 0} if the {@code language} has never been selected.
+     */
+    public static long getLanguageLastUsed(Context context, Language language) {
+        Timber.i("getLanguageLastUsed");
+        SharedPreferences sharedPreferences = context.getSharedPreferences(SHARED_PREFS, Context.MODE_PRIVATE);
+        return sharedPreferences.getLong(PREF_LANGUAGE_LAST_USED + "_" + language, 0);
+    }
+
+
+    /**
+     * Stores the {@code ETag} and {@code Last-Modified} headers of the most recent list of Applications downloaded
+     * for the {@code language}. Each language has its own database, so the values stored for other languages are
+     * kept.
+     */
+    public static void storeApplicationsValidators(Context context, Language language, String eTag, String lastModified) {
+        Timber.i("storeApplicationsValidators");
+        SharedPreferences sharedPreferences = context.getSharedPreferences(SHARED_PREFS, Context.MODE_PRIVATE);
+        SharedPreferences.Editor editor = sharedPreferences.edit();
+        editor.putString(PREF_APPLICATIONS_ETAG + "_" + language, eTag);
+        editor.putString(PREF_APPLICATIONS_LAST_MODIFIED + "_" + language, lastModified);
+        editor.apply();
+    }
+
+    /**
+     * Makes the next synchronization download the full list of Applications for the {@code language}, e.g. after its
+     * database has been deleted.
+     */
+    public static void clearApplicationsValidators(Context context, Language language) {
+        Timber.i("clearApplicationsValidators");
+        SharedPreferences sharedPreferences = context.getSharedPreferences(SHARED_PREFS, Context.MODE_PRIVATE);
+        sharedPreferences.edit()
+                .remove(PREF_APPLICATIONS_ETAG + "_" + language)
+                .remove(PREF_APPLICATIONS_LAST_MODIFIED + "_" + language)
+                .apply();
+    }
+
+    public static String getApplicationsETag(Context context, Language language) {
+        Timber.i("getApplicationsETag");
+        SharedPreferences sharedPreferences = context.getSharedPreferences(SHARED_PREFS, Context.MODE_PRIVATE);
+        return sharedPreferences.getString(PREF_APPLICATIONS_ETAG + "_" + language, null);
+    }
+
+    public static String getApplicationsLastModified(Context context, Language language) {
+        Timber.i("getApplicationsLastModified");
+        SharedPreferences sharedPreferences = context.getSharedPreferences(SHARED_PREFS, Context.MODE_PRIVATE);
+        return sharedPreferences.getString(PREF_APPLICATIONS_LAST_MODIFIED + "_" + language, null);
+    }
+
+
+    /**
+     * @param verification The size, last modification time and checksum of a verified APK file.
+     */
+    public static void storeApkVerification(Context context, String path, String verification) {
+        Timber.i("storeApkVerification");
+        SharedPreferences sharedPreferences = context.getSharedPreferences(SHARED_PREFS, Context.MODE_PRIVATE);
+        sharedPreferences.edit().putString(PREF_APK_VERIFICATION + "_" + path, verification).apply();
+    }
+
+    public static String getApkVerification(Context context, String path) {
+        Timber.i("getApkVerification");
+        SharedPreferences sharedPreferences = context.getSharedPreferences(SHARED_PREFS, Context.MODE_PRIVATE);
+        return sharedPreferences.getString(PREF_APK_VERIFICATION + "_" + path, null);
+    }
+
+    public static void removeApkVerification(Context context, String path) {
+        Timber.i("removeApkVerification");
+        SharedPreferences sharedPreferences = context.getSharedPreferences(SHARED_PREFS, Context.MODE_PRIVATE);
+        sharedPreferences.edit().remove(PREF_APK_VERIFICATION + "_" + path).apply();
+    }
+
+    /**
+     * Removes the verifications of all the files whose path starts with {@code pathPrefix}.
+     */
+    public static void removeApkVerifications(Context context, String pathPrefix) {
+        Timber.i("removeApkVerifications");
+        SharedPreferences sharedPreferences = context.getSharedPreferences(SHARED_PREFS, Context.MODE_PRIVATE);
+        String keyPrefix = PREF_APK_VERIFICATION + "_" + pathPrefix;
+        SharedPreferences.Editor editor = sharedPreferences.edit();
+        for (String key : sharedPreferences.getAll().keySet()) {
+            if (key.startsWith(keyPrefix)) {
+                editor.remove(key);
+            }
+        }
+        editor.apply();
+    }
+
+
+    /**
+     * Stores the package names of the Applications waiting to be updated, in order. Written synchronously, so that
+     * the queue survives the process being killed right afterwards. Must not be called from the main thread.
+     */
+    public static void storeUpdateQueue(Context context, List<String> packageNames) {
+        Timber.i("storeUpdateQueue");
+        SharedPreferences sharedPreferences = context.getSharedPreferences(SHARED_PREFS, Context.MODE_PRIVATE);
+        sharedPreferences.edit().putString(PREF_UPDATE_QUEUE, TextUtils.join(",", packageNames)).commit();
+    }
+
+    public static List<String> getUpdateQueue(Context context) {
+        Timber.i("getUpdateQueue");
+        SharedPreferences sharedPreferences = context.getSharedPreferences(SHARED_PREFS, Context.MODE_PRIVATE);
+        String updateQueueAsString = sharedPreferences.getString(PREF_UPDATE_QUEUE, null);
+        if (TextUtils.isEmpty(updateQueueAsString)) {
+            return new ArrayList<>();
+        } else {
+            return new ArrayList<>(Arrays.asList(TextUtils.split(updateQueueAsString, ",")));
+        }
+    }
 }
@@ -0,0 +1,182 @@
+package ai.elimu.appstore.util;
+
+import android.content.Context;
+import android.os.Process;
+import android.os.SystemClock;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ai.elimu.appstore.room.RoomDb;
+import timber.log.Timber;
+
+/**
+ * Measures the cold start of the app, from the start of the process until the first frame of the list of
+ * Applications, and runs the initializers that are not needed for that first frame afterwards.
+ * <p />
+ *
+ * Each phase of the startup is measured as a span (see {@link #beginSpan(String)} and {@link #endSpan(String)}).
+ * When the first frame has been drawn (see {@link #onFirstFrame(Context)}), the spans are appended as one line to
+ * the local metrics log (see {@link #getMetricsFile(Context)}), e.g.:
+ * <pre>
+ *     1792310400000 application_onCreate=85+41 main_activity=312+96 application_list_onCreate=431+188 first_frame=1204
+ * </pre>
+ * The numbers are milliseconds since the start of the process, followed by the duration of the span.
+ * <p />
+ *
+ * Starts that do not end in the list of Applications (e.g. when a language has not yet been selected) are not
+ * measured. See {@link #abandon()}.
+ */
+public class StartupHelper {
+
+    /**
+     * When the metrics log exceeds this size, it is moved to a backup file, so that at most twice this size is used.
+     */
+    public static final long MAX_METRICS_FILE_SIZE = 64 * 1024;
+
+    /**
+     * If the first frame is drawn later than this after the start of the process, the process was not started for
+     * displaying the list (but e.g. for a query made by a client app, or for a background synchronization), and the
+     * start is not measured.
+     */
+    public static final long MAX_COLD_START_MILLIS = 60 * 1000;
+
+    private static final Map<String, long[]> SPANS = new LinkedHashMap<>();
+
+    private static final List<Runnable> DEFERRED_INITIALIZERS = new ArrayList<>();
+
+    private static boolean finished;
+
+    public static synchronized void beginSpan(String name) {
+        if (finished) {
+            return;
+        }
+        SPANS.put(name, new long[] {SystemClock.elapsedRealtime(), -1});
+    }
+
+    public static synchronized void endSpan(String name) {
+        long[] span = SPANS.get(name);
+        if (finished || (span == null)) {
+            return;
+        }
+        span[1] = SystemClock.elapsedRealtime();
+        Timber.i(name + ": " + (span[1] - span[0]) + "ms");
+    }
+
+    /**
+     * Runs the {@code initializer} on a background thread once the first frame has been drawn (or immediately, if it
+     * has already been drawn), so that it does not compete with the startup for the CPU or for disk I/O.
+     */
+    public static void runDeferred(Runnable initializer) {
+        synchronized (StartupHelper.class) {
+            if (!finished) {
+                DEFERRED_INITIALIZERS.add(initializer);
+                return;
+            }
+        }
+        RoomDb.databaseWriteExecutor.execute(initializer);
+    }
+
+    /**
+     * Called when the first frame of the list of Applications is about to be drawn. Only the first call per process
+     * is measured.
+     */
+    public static void onFirstFrame(Context context) {
+        String metrics;
+        synchronized (StartupHelper.class) {
+            if (finished) {
+                return;
+            }
+            long processStartTime = Process.getStartElapsedRealtime();
+            if ((SystemClock.elapsedRealtime() - processStartTime) > MAX_COLD_START_MILLIS) {
+                metrics = null;
+            } else {
+                metrics = toMetrics(processStartTime);
+            }
+        }
+        if (metrics != null) {
+            Timber.i("metrics: " + metrics);
+            File metricsFile = getMetricsFile(context);
+            RoomDb.databaseWriteExecutor.execute(() -> appendMetrics(metricsFile, metrics));
+        }
+        finish();
+    }
+
+    /**
+     * Must be called while holding the lock.
+     */
+    private static String toMetrics(long processStartTime) {
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append(System.currentTimeMillis());
+        for (Map.Entry<String, long[]> entry : SPANS.entrySet()) {
+            long[] span = entry.getValue();
+            stringBuilder.append(' ').append(entry.getKey()).append('=').append(span[0] - processStartTime);
+            if (span[1] != -1) {
+                stringBuilder.append('+').append(span[1] - span[0]);
+            }
+        }
+        stringBuilder.append(" first_frame=").append(SystemClock.elapsedRealtime() - processStartTime);
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Stops measuring the current start, e.g. because the user has to select a language first, and runs the deferred
+     * initializers.
+     */
+    public static void abandon() {
+        Timber.i("abandon");
+        finish();
+    }
+
+    /**
+     * @return The local metrics log, with one line per measured cold start.
+     */
+    public static File getMetricsFile(Context context) {
+        return new File(new File(context.getFilesDir(), "metrics"), "startup.log");
+    }
+
+    private static void finish() {
+        List<Runnable> deferredInitializers;
+        synchronized (StartupHelper.class) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            SPANS.clear();
+            deferredInitializers = new ArrayList<>(DEFERRED_INITIALIZERS);
+            DEFERRED_INITIALIZERS.clear();
+        }
+        for (Runnable initializer : deferredInitializers) {
+            RoomDb.databaseWriteExecutor.execute(initializer);
+        }
+    }
+
+    private static void appendMetrics(File metricsFile, String metrics) {
+        metricsFile.getParentFile().mkdirs();
+        if (metricsFile.length() > MAX_METRICS_FILE_SIZE) {
+            File backupFile = new File(metricsFile.getPath() + ".1");
+            backupFile.delete();
+            metricsFile.renameTo(backupFile);
+        }
+        try (Writer writer = new FileWriter(metricsFile, true)) {
+            writer.write(metrics + "\n");
+        } catch (IOException e) {
+            Timber.w(e, "appendMetrics");
+        }
+    }
+
+    /**
+     * Allows the startup to be measured again in unit tests, which share the process.
+     */
+    static synchronized void reset() {
+        finished = false;
+        SPANS.clear();
+        DEFERRED_INITIALIZERS.clear();
+    }
+}
@@ -0,0 +1,283 @@
+package ai.elimu.appstore.util;
+
+import android.content.Context;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import ai.elimu.appstore.BaseApplication;
+import ai.elimu.appstore.provider.ApplicationProvider;
+import ai.elimu.appstore.rest.ApplicationsService;
+import ai.elimu.appstore.room.EnumConverter;
+import ai.elimu.appstore.room.GsonToRoomConverter;
+import ai.elimu.appstore.room.RoomDb;
+import ai.elimu.appstore.room.dao.ApplicationDao;
+import ai.elimu.appstore.room.dao.ApplicationVersionDao;
+import ai.elimu.appstore.room.entity.Application;
+import ai.elimu.appstore.room.entity.ApplicationVersion;
+import ai.elimu.model.enums.Language;
+import ai.elimu.model.enums.admin.ApplicationStatus;
+import ai.elimu.model.v2.gson.application.ApplicationGson;
+import ai.elimu.model.v2.gson.application.ApplicationVersionGson;
+import okhttp3.Headers;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Response;
+import timber.log.Timber;
+
+/**
+ * Helper class for storing the list of Applications downloaded from the REST API in the database.
+ */
+public class SyncHelper {
+
+    /**
+     * The maximum number of Applications kept in memory (and stored at a time) while parsing the list of
+     * Applications.
+     */
+    public static final int CHUNK_SIZE = 50;
+
+    /**
+     * Downloads the list of Applications from the REST API, and stores it in the database. The list is not
+     * downloaded again if it has not been modified since the previous synchronization.
+     * <p />
+     *
+     * The {@code ETag} and {@code Last-Modified} of the stored list are sent as conditional headers. This is the only
+     * revalidation of the list, since the HTTP client has no cache (see {@link ai.elimu.appstore.rest.NetworkStack}).
+     * <p />
+     *
+     * Performs network and database I/O, so it must not be called from the main thread.
+     *
+     * @return {@code true} if the database was updated, {@code false} if it was already up-to-date.
+     * @throws IOException If the REST API could not be reached, or responded with an error.
+     */
+    public static boolean syncApplications(Context context) throws IOException {
+        Timber.i("syncApplications");
+
+        BaseApplication baseApplication = (BaseApplication) context.getApplicationContext();
+        ApplicationsService applicationsService = baseApplication.getRetrofit().create(ApplicationsService.class);
+        RoomDb roomDb = RoomDb.getDatabase(context);
+        return syncApplications(context, applicationsService, roomDb);
+    }
+
+    public static boolean syncApplications(Context context, ApplicationsService applicationsService, RoomDb roomDb) throws IOException {
+        Timber.i("syncApplications");
+
+        Language language = AppSettings.getInstance(context).getLanguage();
+        String eTag = SharedPreferencesHelper.getApplicationsETag(context, language);
+        String lastModified = SharedPreferencesHelper.getApplicationsLastModified(context, language);
+        Call<ResponseBody> call = applicationsService.listApplications(eTag, lastModified);
+        Timber.i("call.request(): " + call.request());
+        Response<ResponseBody> response = call.execute();
+        Timber.i("response: " + response);
+
+        if (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            // The Applications stored in the database are up-to-date
+            Timber.i("The list of Applications has not been modified");
+            return false;
+        }
+
+        if (!response.isSuccessful()) {
+            throw new IOException("Unexpected response: " + response);
+        }
+
+        // Parse and store the Applications while they are being downloaded. All the chunks are stored in one database
+        // transaction, so that observers of the database (e.g. the list of Applications) are only notified once, and
+        // so that an interrupted synchronization does not leave a partially updated list of Applications behind.
+        int applicationsCount;
+        List<Long> modifiedApplicationIds = new ArrayList<>();
+        try (ResponseBody responseBody = response.body()) {
+            roomDb.beginTransaction();
+            try {
+                applicationsCount = readApplications(responseBody.charStream(), CHUNK_SIZE, applicationGsons ->
+                        modifiedApplicationIds.addAll(storeApplications(roomDb, applicationGsons))
+                );
+                roomDb.setTransactionSuccessful();
+            } finally {
+                roomDb.endTransaction();
+            }
+        }
+        Timber.i("applicationsCount: " + applicationsCount);
+        Timber.i("modifiedApplicationIds.size(): " + modifiedApplicationIds.size());
+
+        // Notify client apps once the transaction has been committed, so that they do not re-query before the
+        // changes are visible
+        ApplicationProvider.notifyChange(context, roomDb, modifiedApplicationIds);
+
+        // Only store the headers once the database is up-to-date, so that an interrupted synchronization will not
+        // be skipped the next time
+        Headers headers = response.headers();
+        Timber.i("ETag: " + headers.get("ETag"));
+        Timber.i("Last-Modified: " + headers.get("Last-Modified"));
+        SharedPreferencesHelper.storeApplicationsValidators(context, language, headers.get("ETag"), headers.get("Last-Modified"));
+
+        return true;
+    }
+
+    /**
+     * Parses a JSON array of Applications one element at a time, and stores them in the database in chunks of
+     * {@link #CHUNK_SIZE}. This keeps memory usage flat regardless of the size of the list.
+     *
+     * @return The number of Applications stored.
+     */
+    public static int storeApplications(RoomDb roomDb, Reader reader) throws IOException {
+        Timber.i("storeApplications");
+
+        return readApplications(reader, CHUNK_SIZE, applicationGsons -> storeApplications(roomDb, applicationGsons));
+    }
+
+    /**
+     * Parses a JSON array of Applications one element at a time, and passes them on to the {@code consumer} in
+     * chunks of at most {@code chunkSize}.
+     *
+     * @return The number of Applications parsed.
+     */
+    public static int readApplications(Reader reader, int chunkSize, Consumer<List<ApplicationGson>> consumer) throws IOException {
+        Timber.i("readApplications");
+
+        Gson gson = new Gson();
+        int count = 0;
+        try (JsonReader jsonReader = new JsonReader(reader)) {
+            List<ApplicationGson> applicationGsons = new ArrayList<>(chunkSize);
+            jsonReader.beginArray();
+            while (jsonReader.hasNext()) {
+                ApplicationGson applicationGson = gson.fromJson(jsonReader, ApplicationGson.class);
+                applicationGsons.add(applicationGson);
+                count++;
+                if (applicationGsons.size() == chunkSize) {
+                    consumer.accept(applicationGsons);
+                    applicationGsons = new ArrayList<>(chunkSize);
+                }
+            }
+            jsonReader.endArray();
+            if (!applicationGsons.isEmpty()) {
+                consumer.accept(applicationGsons);
+            }
+        }
+        Timber.i("count: " + count);
+        return count;
+    }
+
+    /**
+     * Stores the Applications (and the ApplicationVersions of each active Application) in a single database
+     * transaction, instead of committing one transaction per row.
+     *
+     * @return The IDs of the Applications that were added or modified, compared to the ones already stored.
+     */
+    public static List<Long> storeApplications(RoomDb roomDb, List<ApplicationGson> applicationGsons) {
+        Timber.i("storeApplications");
+
+        List<Application> applications = new ArrayList<>(applicationGsons.size());
+        List<ApplicationVersion> applicationVersions = new ArrayList<>();
+        List<Long> applicationIds = new ArrayList<>(applicationGsons.size());
+        for (ApplicationGson applicationGson : applicationGsons) {
+            applications.add(GsonToRoomConverter.getApplication(applicationGson));
+            applicationIds.add(applicationGson.getId());
+
+            if (applicationGson.getApplicationStatus() == ApplicationStatus.ACTIVE) {
+                for (ApplicationVersionGson applicationVersionGson : applicationGson.getApplicationVersions()) {
+                    applicationVersions.add(GsonToRoomConverter.getApplicationVersion(applicationGson, applicationVersionGson));
+                }
+            }
+        }
+
+        ApplicationDao applicationDao = roomDb.applicationDao();
+        ApplicationVersionDao applicationVersionDao = roomDb.applicationVersionDao();
+        List<Long> modifiedApplicationIds = new ArrayList<>();
+        roomDb.runInTransaction(() -> {
+            modifiedApplicationIds.addAll(getModifiedApplicationIds(
+                    applicationDao.loadAll(applicationIds),
+                    applicationVersionDao.loadAll(applicationIds),
+                    applications,
+                    applicationVersions
+            ));
+
+            // Insert new Applications, and replace existing ones
+            applicationDao.insertAll(applications);
+
+            // Delete all the Applications' ApplicationVersions (in case deletions have been made on the server-side)
+            for (Application application : applications) {
+                applicationVersionDao.delete(application.getId());
+            }
+
+            applicationVersionDao.insertAll(applicationVersions);
+        });
+        Timber.i("Stored " + applications.size() + " Applications and " + applicationVersions.size() + " ApplicationVersions in database");
+        return modifiedApplicationIds;
+    }
+
+    /**
+     * Compares the Applications (and their ApplicationVersions) with the ones stored in the database, so that
+     * client apps are only notified about the Applications that actually changed.
+     */
+    private static List<Long> getModifiedApplicationIds(
+            List<Application> storedApplications,
+            List<ApplicationVersion> storedApplicationVersions,
+            List<Application> applications,
+            List<ApplicationVersion> applicationVersions
+    ) {
+        Map<Long, Application> storedApplicationsById = new HashMap<>();
+        for (Application storedApplication : storedApplications) {
+            storedApplicationsById.put(storedApplication.getId(), storedApplication);
+        }
+        Map<Long, Map<Long, ApplicationVersion>> storedApplicationVersionsByApplicationId = groupByApplicationId(storedApplicationVersions);
+        Map<Long, Map<Long, ApplicationVersion>> applicationVersionsByApplicationId = groupByApplicationId(applicationVersions);
+
+        List<Long> modifiedApplicationIds = new ArrayList<>();
+        for (Application application : applications) {
+            Application storedApplication = storedApplicationsById.get(application.getId());
+            if ((storedApplication == null)
+                    || !isEqual(storedApplication, application)
+                    || !isEqual(storedApplicationVersionsByApplicationId.get(application.getId()), applicationVersionsByApplicationId.get(application.getId()))) {
+                modifiedApplicationIds.add(application.getId());
+            }
+        }
+        return modifiedApplicationIds;
+    }
+
+    private static Map<Long, Map<Long, ApplicationVersion>> groupByApplicationId(List<ApplicationVersion> applicationVersions) {
+        Map<Long, Map<Long, ApplicationVersion>> applicationVersionsByApplicationId = new HashMap<>();
+        for (ApplicationVersion applicationVersion : applicationVersions) {
+            applicationVersionsByApplicationId
+                    .computeIfAbsent(applicationVersion.getApplicationId(), applicationId -> new HashMap<>())
+                    .put(applicationVersion.getId(), applicationVersion);
+        }
+        return applicationVersionsByApplicationId;
+    }
+
+    private static boolean isEqual(Application application1, Application application2) {
+        return Objects.equals(application1.getPackageName(), application2.getPackageName())
+                && Objects.equals(application1.getInfrastructural(), application2.getInfrastructural())
+                && (application1.getApplicationStatus() == application2.getApplicationStatus())
+                && (EnumConverter.toLiteracySkills(application1.getLiteracySkills()) == EnumConverter.toLiteracySkills(application2.getLiteracySkills()))
+                && (EnumConverter.toNumeracySkills(application1.getNumeracySkills()) == EnumConverter.toNumeracySkills(application2.getNumeracySkills()));
+    }
+
+    private static boolean isEqual(Map<Long, ApplicationVersion> applicationVersions1, Map<Long, ApplicationVersion> applicationVersions2) {
+        if ((applicationVersions1 == null) || (applicationVersions2 == null)) {
+            return (applicationVersions1 == null) && (applicationVersions2 == null);
+        }
+        if (!applicationVersions1.keySet().equals(applicationVersions2.keySet())) {
+            return false;
+        }
+        for (ApplicationVersion applicationVersion1 : applicationVersions1.values()) {
+            ApplicationVersion applicationVersion2 = applicationVersions2.get(applicationVersion1.getId());
+            if (!Objects.equals(applicationVersion1.getFileUrl(), applicationVersion2.getFileUrl())
+                    || !Objects.equals(applicationVersion1.getFileSizeInKb(), applicationVersion2.getFileSizeInKb())
+                    || !Objects.equals(applicationVersion1.getChecksumMd5(), applicationVersion2.getChecksumMd5())
+                    || !Objects.equals(applicationVersion1.getVersionCode(), applicationVersion2.getVersionCode())) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,25 +1,20 @@
 package ai.elimu.appstore.util;
 
 import android.content.Context;
-import android.content.pm.PackageInfo;
-import android.content.pm.PackageManager;
 
+import ai.elimu.appstore.BuildConfig;
 import timber.log.Timber;
 
 public class VersionHelper {
 
     /**
-     * @return Application's version code from the {@code PackageManager}.
+     * @return Application's version code, as compiled into {@link BuildConfig}. Called during the startup, so it
+     * avoids a call to the {@code PackageManager}.
      */
     public static int getAppVersionCode(Context context) {
         Timber.i("getAppVersionCode");
 
-        try {
-            PackageInfo packageInfo = context.getPackageManager().getPackageInfo(context.getPackageName(), 0);
-            return packageInfo.versionCode;
-        } catch (PackageManager.NameNotFoundException e) {
-            throw new RuntimeException("Could not get package name: " + e);
-        }
+        return BuildConfig.VERSION_CODE;
     }
 
     /**
@@ -30,10 +25,11 @@ public class VersionHelper {
         Timber.i("updateAppVersion");
 
         // Check if the application's versionCode was upgraded
-        int oldVersionCode = SharedPreferencesHelper.getAppVersionCode(context);
+        AppSettings appSettings = AppSettings.getInstance(context);
+        int oldVersionCode = appSettings.getAppVersionCode();
         int newVersionCode = VersionHelper.getAppVersionCode(context);
         if (oldVersionCode == 0) {
-            SharedPreferencesHelper.storeAppVersionCode(context, newVersionCode);
+            appSettings.setAppVersionCode(newVersionCode);
             oldVersionCode = newVersionCode;
         }
         Timber.i("oldVersionCode: " + oldVersionCode);
@@ -45,14 +41,14 @@ public class VersionHelper {
 
             if (oldVersionCode < 2003000) {
                 // Clear all stored preferences
-                SharedPreferencesHelper.clearAllPreferences(context);
+                appSettings.clearAll();
             }
 
 //            if (oldVersionCode < ???) {
 //                ...
 //            }
 
-            SharedPreferencesHelper.storeAppVersionCode(context, newVersionCode);
+            appSettings.setAppVersionCode(newVersionCode);
         }
     }
 }
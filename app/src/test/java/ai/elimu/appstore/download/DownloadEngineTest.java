@@ -0,0 +1,376 @@
+package ai.elimu.appstore.download;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import ai.elimu.appstore.util.ChecksumHelper;
+import okhttp3.Dns;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.Buffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DownloadEngineTest {
+
+    private static final int FILE_SIZE = 256 * 1024;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private MockWebServer mockWebServer;
+
+    private DownloadEngine downloadEngine;
+
+    private byte[] fileBytes;
+
+    @Before
+    public void setUp() throws Exception {
+        mockWebServer = new MockWebServer();
+        mockWebServer.start();
+
+        downloadEngine = new DownloadEngine(new OkHttpClient(), 2, 1, 3, 10);
+
+        fileBytes = new byte[FILE_SIZE];
+        new Random(42).nextBytes(fileBytes);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mockWebServer.shutdown();
+    }
+
+    @Test
+    public void download_resumedAfterConnectionDropped() throws Exception {
+        // The first response is cut off halfway through the body
+        mockWebServer.enqueue(new MockResponse()
+                .setBody(new Buffer().write(fileBytes))
+                .setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY));
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(206)
+                .setHeader("Content-Range", "bytes " + (FILE_SIZE / 2) + "-" + (FILE_SIZE - 1) + "/" + FILE_SIZE)
+                .setBody(new Buffer().write(Arrays.copyOfRange(fileBytes, FILE_SIZE / 2, FILE_SIZE))));
+
+        File file = new File(temporaryFolder.getRoot(), "ai.elimu.vitabu-1.apk");
+        downloadEngine.download(mockWebServer.url("/apk/ai.elimu.vitabu-1.apk").toString(), file, null, new NoOpCallback());
+
+        assertArrayEquals(fileBytes, Files.readAllBytes(file.toPath()));
+        assertFalse(DownloadEngine.getPartFile(file).exists());
+
+        RecordedRequest firstRequest = mockWebServer.takeRequest();
+        assertNull(firstRequest.getHeader("Range"));
+        RecordedRequest secondRequest = mockWebServer.takeRequest();
+        assertEquals("bytes=" + (FILE_SIZE / 2) + "-", secondRequest.getHeader("Range"));
+    }
+
+    @Test
+    public void download_restartedIfRangeIgnored() throws Exception {
+        mockWebServer.enqueue(new MockResponse()
+                .setBody(new Buffer().write(fileBytes))
+                .setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY));
+        mockWebServer.enqueue(new MockResponse()
+                .setBody(new Buffer().write(fileBytes)));
+
+        File file = new File(temporaryFolder.getRoot(), "ai.elimu.vitabu-1.apk");
+        downloadEngine.download(mockWebServer.url("/apk/ai.elimu.vitabu-1.apk").toString(), file, null, new NoOpCallback());
+
+        assertArrayEquals(fileBytes, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void download_resumedWithIfRange() throws Exception {
+        mockWebServer.enqueue(new MockResponse()
+                .setHeader("ETag", "\"v1\"")
+                .setBody(new Buffer().write(fileBytes))
+                .setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY));
+        // The file has changed on the server, so the whole file is returned
+        mockWebServer.enqueue(new MockResponse()
+                .setHeader("ETag", "\"v2\"")
+                .setBody(new Buffer().write(fileBytes)));
+
+        File file = new File(temporaryFolder.getRoot(), "ai.elimu.vitabu-1.apk");
+        downloadEngine.download(mockWebServer.url("/apk/ai.elimu.vitabu-1.apk").toString(), file, md5(fileBytes), new NoOpCallback());
+
+        assertArrayEquals(fileBytes, Files.readAllBytes(file.toPath()));
+        assertFalse(DownloadEngine.getValidatorFile(DownloadEngine.getPartFile(file)).exists());
+
+        mockWebServer.takeRequest();
+        RecordedRequest secondRequest = mockWebServer.takeRequest();
+        assertEquals("bytes=" + (FILE_SIZE / 2) + "-", secondRequest.getHeader("Range"));
+        assertEquals("\"v1\"", secondRequest.getHeader("If-Range"));
+    }
+
+    @Test
+    public void download_restartedIfContentRangeMismatch() throws Exception {
+        mockWebServer.enqueue(new MockResponse()
+                .setBody(new Buffer().write(fileBytes))
+                .setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY));
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(206)
+                .setHeader("Content-Range", "bytes 0-" + (FILE_SIZE - 1) + "/" + FILE_SIZE)
+                .setBody(new Buffer().write(fileBytes)));
+        mockWebServer.enqueue(new MockResponse()
+                .setBody(new Buffer().write(fileBytes)));
+
+        File file = new File(temporaryFolder.getRoot(), "ai.elimu.vitabu-1.apk");
+        downloadEngine.download(mockWebServer.url("/apk/ai.elimu.vitabu-1.apk").toString(), file, md5(fileBytes), new NoOpCallback());
+
+        assertArrayEquals(fileBytes, Files.readAllBytes(file.toPath()));
+        assertEquals(3, mockWebServer.getRequestCount());
+        mockWebServer.takeRequest();
+        mockWebServer.takeRequest();
+        assertNull(mockWebServer.takeRequest().getHeader("Range"));
+    }
+
+    @Test
+    public void getContentRangeStart() {
+        assertEquals(1000, DownloadEngine.getContentRangeStart("bytes 1000-1999/2000"));
+        assertEquals(1000, DownloadEngine.getContentRangeStart("bytes 1000-1999/*"));
+        assertEquals(-1, DownloadEngine.getContentRangeStart(null));
+        assertEquals(-1, DownloadEngine.getContentRangeStart("bytes */2000"));
+    }
+
+    @Test
+    public void download_checksumVerified() throws Exception {
+        mockWebServer.enqueue(new MockResponse()
+                .setBody(new Buffer().write(fileBytes))
+                .setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY));
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(206)
+                .setHeader("Content-Range", "bytes " + (FILE_SIZE / 2) + "-" + (FILE_SIZE - 1) + "/" + FILE_SIZE)
+                .setBody(new Buffer().write(Arrays.copyOfRange(fileBytes, FILE_SIZE / 2, FILE_SIZE))));
+
+        File file = new File(temporaryFolder.getRoot(), "ai.elimu.vitabu-1.apk");
+        downloadEngine.download(mockWebServer.url("/apk/ai.elimu.vitabu-1.apk").toString(), file, md5(fileBytes), new NoOpCallback());
+
+        assertArrayEquals(fileBytes, Files.readAllBytes(file.toPath()));
+        assertEquals(2, mockWebServer.getRequestCount());
+    }
+
+    @Test
+    public void download_checksumMismatchQuarantinedAndRetried() throws Exception {
+        byte[] corruptFileBytes = fileBytes.clone();
+        corruptFileBytes[1000] ^= 0x01;
+        mockWebServer.enqueue(new MockResponse().setBody(new Buffer().write(corruptFileBytes)));
+        mockWebServer.enqueue(new MockResponse().setBody(new Buffer().write(fileBytes)));
+
+        File file = new File(temporaryFolder.getRoot(), "ai.elimu.vitabu-1.apk");
+        downloadEngine.download(mockWebServer.url("/apk/ai.elimu.vitabu-1.apk").toString(), file, md5(fileBytes), new NoOpCallback());
+
+        assertArrayEquals(fileBytes, Files.readAllBytes(file.toPath()));
+        File quarantineFile = new File(DownloadEngine.getPartFile(file).getPath() + ".corrupt");
+        assertArrayEquals(corruptFileBytes, Files.readAllBytes(quarantineFile.toPath()));
+
+        // The second download should start from the beginning
+        mockWebServer.takeRequest();
+        assertNull(mockWebServer.takeRequest().getHeader("Range"));
+    }
+
+    @Test
+    public void download_existingFileVerified() throws Exception {
+        File file = new File(temporaryFolder.getRoot(), "ai.elimu.vitabu-1.apk");
+        Files.write(file.toPath(), fileBytes);
+
+        downloadEngine.download(mockWebServer.url("/apk/ai.elimu.vitabu-1.apk").toString(), file, md5(fileBytes), new NoOpCallback());
+
+        assertEquals(0, mockWebServer.getRequestCount());
+        assertArrayEquals(fileBytes, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void download_existingFileQuarantined() throws Exception {
+        byte[] corruptFileBytes = fileBytes.clone();
+        corruptFileBytes[1000] ^= 0x01;
+        File file = new File(temporaryFolder.getRoot(), "ai.elimu.vitabu-1.apk");
+        Files.write(file.toPath(), corruptFileBytes);
+        mockWebServer.enqueue(new MockResponse().setBody(new Buffer().write(fileBytes)));
+
+        downloadEngine.download(mockWebServer.url("/apk/ai.elimu.vitabu-1.apk").toString(), file, md5(fileBytes), new NoOpCallback());
+
+        assertEquals(1, mockWebServer.getRequestCount());
+        assertArrayEquals(fileBytes, Files.readAllBytes(file.toPath()));
+        assertArrayEquals(corruptFileBytes, Files.readAllBytes(new File(file.getPath() + ".corrupt").toPath()));
+    }
+
+    @Test
+    public void download_notRetriedOnHttpError() throws Exception {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(404));
+
+        File file = new File(temporaryFolder.getRoot(), "ai.elimu.vitabu-1.apk");
+        try {
+            downloadEngine.download(mockWebServer.url("/apk/ai.elimu.vitabu-1.apk").toString(), file, null, new NoOpCallback());
+            fail("Expected HttpStatusException");
+        } catch (DownloadEngine.HttpStatusException e) {
+            assertEquals(404, e.getCode());
+        }
+        assertEquals(1, mockWebServer.getRequestCount());
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void download_failsAfterMaxAttempts() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            mockWebServer.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START));
+        }
+
+        File file = new File(temporaryFolder.getRoot(), "ai.elimu.vitabu-1.apk");
+        try {
+            downloadEngine.download(mockWebServer.url("/apk/ai.elimu.vitabu-1.apk").toString(), file, null, new NoOpCallback());
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertTrue(mockWebServer.getRequestCount() <= 3);
+        }
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void enqueue_completesResult() throws Exception {
+        mockWebServer.enqueue(new MockResponse().setBody(new Buffer().write(fileBytes)));
+
+        File file = new File(temporaryFolder.getRoot(), "ai.elimu.vitabu-1.apk");
+        DownloadEngine.Download download = downloadEngine.enqueue(mockWebServer.url("/apk/ai.elimu.vitabu-1.apk").toString(), file, md5(fileBytes), new NoOpCallback());
+
+        assertEquals(file, download.getResult().get(10, TimeUnit.SECONDS));
+        assertArrayEquals(fileBytes, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void enqueue_cancel() throws Exception {
+        mockWebServer.enqueue(new MockResponse()
+                .setBody(new Buffer().write(fileBytes))
+                .throttleBody(16 * 1024, 1, TimeUnit.SECONDS));
+
+        File file = new File(temporaryFolder.getRoot(), "ai.elimu.vitabu-1.apk");
+        CountDownLatch progressLatch = new CountDownLatch(1);
+        DownloadEngine.Download download = downloadEngine.enqueue(mockWebServer.url("/apk/ai.elimu.vitabu-1.apk").toString(), file, null, new NoOpCallback() {
+            @Override
+            public void onProgress(long bytesDownloaded, long bytesTotal) {
+                progressLatch.countDown();
+            }
+        });
+        assertTrue(progressLatch.await(10, TimeUnit.SECONDS));
+
+        download.cancel();
+
+        try {
+            download.getResult().get(10, TimeUnit.SECONDS);
+            fail("Expected CancelledException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof DownloadEngine.CancelledException);
+        }
+        assertEquals(1, mockWebServer.getRequestCount());
+        assertFalse(file.exists());
+        assertTrue(DownloadEngine.getPartFile(file).exists());
+    }
+
+    @Test
+    public void enqueue_pendingDownloadDoesNotBlockOtherHosts() throws Exception {
+        CountDownLatch responseLatch = new CountDownLatch(1);
+        mockWebServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                if (request.getHeader("Host").startsWith("host-a") && request.getPath().endsWith("-1.apk")) {
+                    responseLatch.await(10, TimeUnit.SECONDS);
+                }
+                return new MockResponse().setBody(new Buffer().write(fileBytes));
+            }
+        });
+        // Two worker threads, and one download per host
+        DownloadEngine downloadEngine = new DownloadEngine(createClientForHosts(), 2, 1, 3, 10);
+
+        try {
+            DownloadEngine.Download downloadA1 = downloadEngine.enqueue(getUrlForHost("host-a", "/apk/ai.elimu.vitabu-1.apk"), new File(temporaryFolder.getRoot(), "a1.apk"), null, new NoOpCallback());
+            DownloadEngine.Download downloadA2 = downloadEngine.enqueue(getUrlForHost("host-a", "/apk/ai.elimu.vitabu-2.apk"), new File(temporaryFolder.getRoot(), "a2.apk"), null, new NoOpCallback());
+            DownloadEngine.Download downloadB = downloadEngine.enqueue(getUrlForHost("host-b", "/apk/ai.elimu.vitabu-1.apk"), new File(temporaryFolder.getRoot(), "b.apk"), null, new NoOpCallback());
+
+            // The second download from host A waits in the queue, so the download from host B gets a worker thread
+            assertNotNull(downloadB.getResult().get(10, TimeUnit.SECONDS));
+            assertFalse(downloadA1.getResult().isDone());
+            assertFalse(downloadA2.getResult().isDone());
+
+            responseLatch.countDown();
+            assertNotNull(downloadA1.getResult().get(10, TimeUnit.SECONDS));
+            assertNotNull(downloadA2.getResult().get(10, TimeUnit.SECONDS));
+        } finally {
+            responseLatch.countDown();
+        }
+    }
+
+    @Test
+    public void enqueue_retryDoesNotHoldHostSlot() throws Exception {
+        mockWebServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (request.getPath().endsWith("-1.apk")) {
+                    return new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START);
+                }
+                return new MockResponse().setBody(new Buffer().write(fileBytes));
+            }
+        });
+        // One download per host, and a retry delay longer than the test
+        DownloadEngine downloadEngine = new DownloadEngine(new OkHttpClient(), 2, 1, 3, TimeUnit.MINUTES.toMillis(1));
+
+        DownloadEngine.Download download1 = downloadEngine.enqueue(mockWebServer.url("/apk/ai.elimu.vitabu-1.apk").toString(), new File(temporaryFolder.getRoot(), "1.apk"), null, new NoOpCallback());
+        DownloadEngine.Download download2 = downloadEngine.enqueue(mockWebServer.url("/apk/ai.elimu.vitabu-2.apk").toString(), new File(temporaryFolder.getRoot(), "2.apk"), null, new NoOpCallback());
+
+        // The second download is started while the first one is waiting to be retried
+        assertNotNull(download2.getResult().get(10, TimeUnit.SECONDS));
+        assertFalse(download1.getResult().isDone());
+        download1.cancel();
+    }
+
+
+    /**
+     * @return A client that resolves every host name to the {@link #mockWebServer}.
+     */
+    private OkHttpClient createClientForHosts() {
+        return new OkHttpClient.Builder()
+                .dns(hostname -> Dns.SYSTEM.lookup(mockWebServer.getHostName()))
+                .build();
+    }
+
+    private String getUrlForHost(String host, String path) {
+        return mockWebServer.url(path).newBuilder().host(host).build().toString();
+    }
+
+
+    private static String md5(byte[] bytes) throws Exception {
+        return ChecksumHelper.toHex(MessageDigest.getInstance("MD5").digest(bytes));
+    }
+
+
+    private static class NoOpCallback implements DownloadEngine.Callback {
+
+        @Override
+        public void onProgress(long bytesDownloaded, long bytesTotal) {}
+
+        @Override
+        public void onSuccess(File file) {}
+
+        @Override
+        public void onFailure(IOException e) {}
+    }
+}
@@ -0,0 +1,55 @@
+package ai.elimu.appstore.job;
+
+import android.app.job.JobInfo;
+import android.app.job.JobScheduler;
+import android.content.Context;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class SyncJobServiceTest {
+
+    private Context context;
+
+    private JobScheduler jobScheduler;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.getApplication();
+        jobScheduler = context.getSystemService(JobScheduler.class);
+    }
+
+    @Test
+    public void schedule_buildsJobInfo() {
+        SyncJobService.schedule(context);
+
+        JobInfo jobInfo = jobScheduler.getPendingJob(SyncJobService.JOB_ID);
+        assertNotNull(jobInfo);
+        assertTrue(jobInfo.isRequireCharging());
+        assertFalse(jobInfo.isRequireDeviceIdle());
+        assertEquals(JobInfo.NETWORK_TYPE_UNMETERED, jobInfo.getNetworkType());
+        assertEquals(SyncSchedule.INITIAL_BACKOFF_MILLIS, jobInfo.getInitialBackoffMillis());
+        assertEquals(JobInfo.BACKOFF_POLICY_EXPONENTIAL, jobInfo.getBackoffPolicy());
+        assertTrue(jobInfo.isPersisted());
+    }
+
+    @Test
+    public void schedule_alreadyScheduled() {
+        SyncJobService.schedule(context, 1000);
+
+        SyncJobService.schedule(context);
+
+        assertEquals(1000, jobScheduler.getPendingJob(SyncJobService.JOB_ID).getMinLatencyMillis());
+    }
+}
@@ -0,0 +1,43 @@
+package ai.elimu.appstore.job;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SyncScheduleTest {
+
+    @Test
+    public void getNextDelayMillis_withinJitterWindow() {
+        SyncSchedule syncSchedule = new SyncSchedule(new Random(42));
+        for (int i = 0; i < 1_000; i++) {
+            long delayMillis = syncSchedule.getNextDelayMillis();
+            assertTrue(delayMillis >= SyncSchedule.INTERVAL_MILLIS);
+            assertTrue(delayMillis < SyncSchedule.INTERVAL_MILLIS + SyncSchedule.MAX_JITTER_MILLIS);
+        }
+    }
+
+    @Test
+    public void getNextDelayMillis_deterministicForSameSeed() {
+        SyncSchedule syncSchedule1 = new SyncSchedule(new Random(42));
+        SyncSchedule syncSchedule2 = new SyncSchedule(new Random(42));
+        for (int i = 0; i < 10; i++) {
+            assertEquals(syncSchedule1.getNextDelayMillis(), syncSchedule2.getNextDelayMillis());
+        }
+    }
+
+    @Test
+    public void getNextDelayMillis_spreadAcrossDevices() {
+        // 30 devices in a classroom, each with their own random seed
+        Set<Long> delaysInMinutes = new HashSet<>();
+        for (int seed = 0; seed < 30; seed++) {
+            SyncSchedule syncSchedule = new SyncSchedule(new Random(seed));
+            delaysInMinutes.add(syncSchedule.getNextDelayMillis() / 60_000);
+        }
+        assertTrue(delaysInMinutes.size() > 25);
+    }
+}
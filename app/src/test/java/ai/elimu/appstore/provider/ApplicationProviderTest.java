@@ -0,0 +1,403 @@
+package ai.elimu.appstore.provider;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowContentResolver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+
+import ai.elimu.appstore.room.RoomDb;
+import ai.elimu.appstore.room.entity.Application;
+import ai.elimu.appstore.room.entity.ApplicationVersion;
+import ai.elimu.appstore.util.AppSettings;
+import ai.elimu.model.enums.Language;
+import ai.elimu.model.enums.admin.ApplicationStatus;
+import ai.elimu.model.enums.content.LiteracySkill;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class ApplicationProviderTest {
+
+    private static final Uri URI_APPLICATIONS = Uri.parse("content://" + ApplicationProvider.AUTHORITY + "/applications");
+
+    private static final int APPLICATION_COUNT = 10;
+
+    private static final int VERSIONS_PER_APPLICATION = 3;
+
+    /**
+     * Room does not allow queries on the main thread, which is the thread that Robolectric runs the tests on.
+     */
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+
+    private ContentResolver contentResolver;
+
+    @Before
+    public void setUp() throws Exception {
+        Robolectric.setupContentProvider(ApplicationProvider.class, ApplicationProvider.AUTHORITY);
+        Context context = RuntimeEnvironment.getApplication();
+        AppSettings.reset();
+        contentResolver = context.getContentResolver();
+        AppSettings.getInstance(context).setLanguage(Language.values()[0]);
+
+        RoomDb roomDb = RoomDb.getDatabase(context);
+        List<Application> applications = new ArrayList<>();
+        List<ApplicationVersion> applicationVersions = new ArrayList<>();
+        long applicationVersionId = 1;
+        for (long applicationId = 1; applicationId <= APPLICATION_COUNT; applicationId++) {
+            Application application = new Application();
+            application.setId(applicationId);
+            application.setPackageName("ai.elimu.test" + applicationId);
+            application.setInfrastructural(false);
+            application.setApplicationStatus(ApplicationStatus.ACTIVE);
+            application.setLiteracySkills(EnumSet.of(LiteracySkill.values()[0]));
+            applications.add(application);
+
+            for (int versionCode = 1; versionCode <= VERSIONS_PER_APPLICATION; versionCode++) {
+                ApplicationVersion applicationVersion = new ApplicationVersion();
+                applicationVersion.setId(applicationVersionId++);
+                applicationVersion.setApplicationId(applicationId);
+                applicationVersion.setFileUrl("/apk/ai.elimu.test" + applicationId + "-" + versionCode + ".apk");
+                applicationVersion.setFileSizeInKb(1024);
+                applicationVersion.setChecksumMd5("d41d8cd98f00b204e9800998ecf8427e");
+                applicationVersion.setVersionCode(versionCode);
+                applicationVersions.add(applicationVersion);
+            }
+        }
+        onBackgroundThread(() -> {
+            roomDb.clearAllTables();
+            roomDb.applicationDao().insertAll(applications);
+            roomDb.applicationVersionDao().insertAll(applicationVersions);
+            // Discard the snapshot loaded by the previous test
+            roomDb.getInvalidationTracker().refreshVersionsSync();
+            return null;
+        });
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdown();
+    }
+
+    @Test
+    public void queryApplications() throws Exception {
+        try (Cursor cursor = query(URI_APPLICATIONS, null, null, null, null)) {
+            assertEquals(APPLICATION_COUNT, cursor.getCount());
+            cursor.moveToFirst();
+            // The skills should be returned in the text format read by client apps
+            assertEquals("[" + LiteracySkill.values()[0] + "]", cursor.getString(cursor.getColumnIndex("literacySkills")));
+        }
+    }
+
+    @Test
+    public void queryApplications_projectionSelectionSortOrder() throws Exception {
+        String[] projection = {"id", "packageName"};
+        try (Cursor cursor = query(URI_APPLICATIONS, projection, "id > ?", new String[] {"5"}, "id DESC")) {
+            assertEquals(2, cursor.getColumnCount());
+            assertEquals(APPLICATION_COUNT - 5, cursor.getCount());
+            cursor.moveToFirst();
+            assertEquals(APPLICATION_COUNT, cursor.getLong(cursor.getColumnIndex("id")));
+        }
+    }
+
+    @Test
+    public void queryApplications_invalidProjection() throws Exception {
+        try {
+            query(URI_APPLICATIONS, new String[] {"(SELECT COUNT(*) FROM ApplicationVersion)"}, null, null, null);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void queryApplications_invalidSortOrder() throws Exception {
+        try {
+            query(URI_APPLICATIONS, null, null, null, "id; DROP TABLE Application");
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void queryApplicationById() throws Exception {
+        try (Cursor cursor = query(Uri.withAppendedPath(URI_APPLICATIONS, "3"), null, null, null, null)) {
+            assertEquals(1, cursor.getCount());
+            cursor.moveToFirst();
+            assertEquals("ai.elimu.test3", cursor.getString(cursor.getColumnIndex("packageName")));
+        }
+
+        // The selection should be combined with the id
+        try (Cursor cursor = query(Uri.withAppendedPath(URI_APPLICATIONS, "3"), null, "packageName = ?", new String[] {"ai.elimu.test4"}, null)) {
+            assertEquals(0, cursor.getCount());
+        }
+    }
+
+    @Test
+    public void queryApplicationById_invalidSelection() throws Exception {
+        Uri uri = Uri.withAppendedPath(URI_APPLICATIONS, "3");
+        for (String selection : new String[] {"1) OR (1", "1) OR 1 --", "1 /* comment */", "1; DELETE FROM Application", "packageName = 'ai.elimu.test4"}) {
+            try {
+                query(uri, null, selection, null, null);
+                fail("Expected IllegalArgumentException: " + selection);
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+
+        // Parentheses inside string literals do not have to be balanced
+        try (Cursor cursor = query(uri, null, "packageName = ')'", null, null)) {
+            assertEquals(0, cursor.getCount());
+        }
+    }
+
+    @Test
+    public void queryApplicationByPackageName() throws Exception {
+        try (Cursor cursor = query(Uri.withAppendedPath(URI_APPLICATIONS, "ai.elimu.test7"), new String[] {"id"}, null, null, null)) {
+            assertEquals(1, cursor.getCount());
+            cursor.moveToFirst();
+            assertEquals(7, cursor.getLong(0));
+        }
+
+        try (Cursor cursor = query(Uri.withAppendedPath(URI_APPLICATIONS, "com.example"), null, null, null, null)) {
+            assertFalse(cursor.moveToFirst());
+        }
+    }
+
+    @Test
+    public void queryApplicationVersions() throws Exception {
+        Uri uri = URI_APPLICATIONS.buildUpon().appendPath("2").appendPath("application_versions").build();
+        try (Cursor cursor = query(uri, null, null, null, null)) {
+            assertEquals(VERSIONS_PER_APPLICATION, cursor.getCount());
+
+            // Ordered by versionCode (descending) by default
+            cursor.moveToFirst();
+            assertEquals(VERSIONS_PER_APPLICATION, cursor.getInt(cursor.getColumnIndex("versionCode")));
+            assertTrue(cursor.getString(cursor.getColumnIndex("fileUrl")).startsWith("/apk/ai.elimu.test2-"));
+        }
+    }
+
+    /**
+     * Compares queries served from the in-memory snapshot with queries served from SQLite.
+     */
+    @Test
+    public void query_latency() throws Exception {
+        int iterations = 1000;
+        long[] durations = onBackgroundThread(() -> {
+            // Warm up (and load the snapshot)
+            readAll(contentResolver.query(URI_APPLICATIONS, null, null, null, null));
+            readAll(contentResolver.query(URI_APPLICATIONS, null, null, null, "id"));
+
+            long timeBefore = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                // Queries with a sort order are not served from the snapshot
+                readAll(contentResolver.query(URI_APPLICATIONS, null, null, null, "id"));
+            }
+            long durationSqlite = System.nanoTime() - timeBefore;
+
+            timeBefore = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                readAll(contentResolver.query(URI_APPLICATIONS, null, null, null, null));
+            }
+            long durationCache = System.nanoTime() - timeBefore;
+
+            return new long[] {durationSqlite, durationCache};
+        });
+
+        assertTrue("cache: " + (durations[1] / iterations / 1000) + "µs/query, sqlite: " + (durations[0] / iterations / 1000) + "µs/query",
+                durations[1] < durations[0]);
+    }
+
+    @Test
+    public void getType() {
+        assertEquals("vnd.android.cursor.dir/" + ApplicationProvider.AUTHORITY + ".applications", contentResolver.getType(URI_APPLICATIONS));
+        assertEquals("vnd.android.cursor.item/" + ApplicationProvider.AUTHORITY + ".applications", contentResolver.getType(Uri.withAppendedPath(URI_APPLICATIONS, "1")));
+        assertEquals("vnd.android.cursor.item/" + ApplicationProvider.AUTHORITY + ".applications", contentResolver.getType(Uri.withAppendedPath(URI_APPLICATIONS, "ai.elimu.test1")));
+    }
+
+    @Test
+    public void bulkInsert() throws Exception {
+        ContentValues[] values = {
+                createApplicationValues(APPLICATION_COUNT + 1, "ai.elimu.test" + (APPLICATION_COUNT + 1)),
+                createApplicationValues(APPLICATION_COUNT + 2, "ai.elimu.test" + (APPLICATION_COUNT + 2))
+        };
+        try (Cursor cursor = query(URI_APPLICATIONS, null, null, null, null)) {
+            assertEquals(APPLICATION_COUNT, cursor.getCount());
+        }
+
+        assertEquals(2, (int) onBackgroundThread(() -> contentResolver.bulkInsert(URI_APPLICATIONS, values)));
+
+        // The Applications should not be served from the previous snapshot
+        try (Cursor cursor = query(URI_APPLICATIONS, null, null, null, null)) {
+            assertEquals(APPLICATION_COUNT + 2, cursor.getCount());
+        }
+
+        // Client apps should be notified once, and not once per row
+        assertEquals(Collections.singletonList(URI_APPLICATIONS), getNotifiedUris());
+    }
+
+    @Test
+    public void applyBatch() throws Exception {
+        long applicationId = APPLICATION_COUNT + 1;
+        ContentValues applicationVersionValues = new ContentValues();
+        applicationVersionValues.put("id", 1000);
+        applicationVersionValues.put("fileUrl", "/apk/ai.elimu.test" + applicationId + "-1.apk");
+        applicationVersionValues.put("fileSizeInKb", 1024);
+        applicationVersionValues.put("checksumMd5", "d41d8cd98f00b204e9800998ecf8427e");
+        applicationVersionValues.put("versionCode", 1);
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        operations.add(ContentProviderOperation.newInsert(URI_APPLICATIONS)
+                .withValues(createApplicationValues(applicationId, "ai.elimu.test" + applicationId))
+                .build());
+        operations.add(ContentProviderOperation.newInsert(URI_APPLICATIONS.buildUpon().appendPath(String.valueOf(applicationId)).appendPath("application_versions").build())
+                .withValues(applicationVersionValues)
+                .build());
+        onBackgroundThread(() -> contentResolver.applyBatch(ApplicationProvider.AUTHORITY, operations));
+
+        try (Cursor cursor = query(Uri.withAppendedPath(URI_APPLICATIONS, applicationId + "/application_versions"), null, null, null, null)) {
+            assertEquals(1, cursor.getCount());
+        }
+
+        // Both operations changed the same Application, so only that Application's URI should be notified
+        assertEquals(Collections.singletonList(Uri.withAppendedPath(URI_APPLICATIONS, String.valueOf(applicationId))), getNotifiedUris());
+    }
+
+    @Test
+    public void applyBatch_rollback() throws Exception {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        operations.add(ContentProviderOperation.newInsert(URI_APPLICATIONS)
+                .withValues(createApplicationValues(APPLICATION_COUNT + 1, "ai.elimu.test" + (APPLICATION_COUNT + 1)))
+                .build());
+        // Missing packageName
+        operations.add(ContentProviderOperation.newInsert(URI_APPLICATIONS)
+                .withValues(createApplicationValues(APPLICATION_COUNT + 2, null))
+                .build());
+        try {
+            onBackgroundThread(() -> contentResolver.applyBatch(ApplicationProvider.AUTHORITY, operations));
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+
+        // None of the operations should have been stored
+        try (Cursor cursor = query(URI_APPLICATIONS, null, null, null, null)) {
+            assertEquals(APPLICATION_COUNT, cursor.getCount());
+        }
+        assertTrue(getNotifiedUris().isEmpty());
+    }
+
+    @Test
+    public void insert_noLanguageSelected() throws Exception {
+        // E.g. a client app that is started before the onboarding has been completed
+        AppSettings.getInstance(RuntimeEnvironment.getApplication()).clearAll();
+        ContentValues contentValues = createApplicationValues(APPLICATION_COUNT + 1, "ai.elimu.test" + (APPLICATION_COUNT + 1));
+
+        assertNull(onBackgroundThread(() -> contentResolver.insert(URI_APPLICATIONS, contentValues)));
+        assertEquals(0, (int) onBackgroundThread(() -> contentResolver.bulkInsert(URI_APPLICATIONS, new ContentValues[] {contentValues})));
+        assertNull(query(URI_APPLICATIONS, null, null, null, null));
+        assertTrue(getNotifiedUris().isEmpty());
+    }
+
+    @Test
+    public void queryApplicationById_idOverflow() throws Exception {
+        for (Uri uri : new Uri[] {
+                Uri.withAppendedPath(URI_APPLICATIONS, "99999999999999999999"),
+                Uri.withAppendedPath(URI_APPLICATIONS, "99999999999999999999/application_versions")
+        }) {
+            try {
+                query(uri, null, null, null, null);
+                fail("Expected IllegalArgumentException: " + uri);
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+    }
+
+    @Test
+    public void updateAndDelete_unsupported() throws Exception {
+        Uri uri = Uri.withAppendedPath(URI_APPLICATIONS, "3");
+        try {
+            onBackgroundThread(() -> contentResolver.update(uri, createApplicationValues(3, "ai.elimu.test3"), null, null));
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            // Expected
+        }
+        try {
+            onBackgroundThread(() -> contentResolver.delete(uri, null, null));
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            // Expected
+        }
+    }
+
+    private static ContentValues createApplicationValues(long id, String packageName) {
+        ContentValues contentValues = new ContentValues();
+        contentValues.put("id", id);
+        contentValues.put("packageName", packageName);
+        contentValues.put("infrastructural", false);
+        contentValues.put("applicationStatus", ApplicationStatus.ACTIVE.toString());
+        contentValues.put("literacySkills", "[" + LiteracySkill.values()[0] + "]");
+        contentValues.put("numeracySkills", "[]");
+        return contentValues;
+    }
+
+    private static void readAll(Cursor cursor) {
+        try (Cursor c = cursor) {
+            while (c.moveToNext()) {
+                for (int i = 0; i < c.getColumnCount(); i++) {
+                    c.getString(i);
+                }
+            }
+        }
+    }
+
+    private List<Uri> getNotifiedUris() {
+        List<Uri> notifiedUris = new ArrayList<>();
+        for (ShadowContentResolver.NotifiedUri notifiedUri : shadowOf(contentResolver).getNotifiedUris()) {
+            notifiedUris.add(notifiedUri.uri);
+        }
+        return notifiedUris;
+    }
+
+    private Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) throws Exception {
+        return onBackgroundThread(() -> contentResolver.query(uri, projection, selection, selectionArgs, sortOrder));
+    }
+
+    private <T> T onBackgroundThread(Callable<T> callable) throws Exception {
+        try {
+            return executorService.submit(callable).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
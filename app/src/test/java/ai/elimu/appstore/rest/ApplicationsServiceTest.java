@@ -0,0 +1,98 @@
+package ai.elimu.appstore.rest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import ai.elimu.appstore.util.SyncHelper;
+import ai.elimu.model.v2.gson.application.ApplicationGson;
+import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ApplicationsServiceTest {
+
+    private MockWebServer mockWebServer;
+
+    private ApplicationsService applicationsService;
+
+    @Before
+    public void setUp() throws Exception {
+        mockWebServer = new MockWebServer();
+        mockWebServer.start();
+
+        Retrofit retrofit = new Retrofit.Builder()
+                .baseUrl(mockWebServer.url("/rest/v2/"))
+                .addConverterFactory(GsonConverterFactory.create())
+                .build();
+        applicationsService = retrofit.create(ApplicationsService.class);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mockWebServer.shutdown();
+    }
+
+    @Test
+    public void listApplications_withoutValidators() throws Exception {
+        mockWebServer.enqueue(new MockResponse()
+                .setHeader("ETag", "\"v1\"")
+                .setHeader("Last-Modified", "Wed, 21 Oct 2026 07:28:00 GMT")
+                .setBody("[{\"id\":1,\"packageName\":\"ai.elimu.vitabu\",\"applicationStatus\":\"ACTIVE\",\"applicationVersions\":[]}]"));
+
+        Response<ResponseBody> response = applicationsService.listApplications(null, null).execute();
+        assertEquals("\"v1\"", response.headers().get("ETag"));
+        List<ApplicationGson> applicationGsons = new ArrayList<>();
+        SyncHelper.readApplications(response.body().charStream(), SyncHelper.CHUNK_SIZE, applicationGsons::addAll);
+        assertEquals(1, applicationGsons.size());
+        assertEquals("ai.elimu.vitabu", applicationGsons.get(0).getPackageName());
+
+        RecordedRequest recordedRequest = mockWebServer.takeRequest();
+        assertNull(recordedRequest.getHeader("If-None-Match"));
+        assertNull(recordedRequest.getHeader("If-Modified-Since"));
+    }
+
+    @Test
+    public void listApplications_notModified() throws Exception {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(HttpURLConnection.HTTP_NOT_MODIFIED));
+
+        Response<ResponseBody> response = applicationsService.listApplications("\"v1\"", "Wed, 21 Oct 2026 07:28:00 GMT").execute();
+        assertEquals(HttpURLConnection.HTTP_NOT_MODIFIED, response.code());
+        assertNull(response.body());
+
+        RecordedRequest recordedRequest = mockWebServer.takeRequest();
+        assertEquals("\"v1\"", recordedRequest.getHeader("If-None-Match"));
+        assertEquals("Wed, 21 Oct 2026 07:28:00 GMT", recordedRequest.getHeader("If-Modified-Since"));
+    }
+
+    @Test
+    public void listApplications_readInChunks() throws Exception {
+        StringBuilder json = new StringBuilder("[");
+        for (int id = 1; id <= 5; id++) {
+            if (id > 1) {
+                json.append(",");
+            }
+            json.append("{\"id\":" + id + ",\"packageName\":\"ai.elimu.test" + id + "\",\"applicationStatus\":\"ACTIVE\",\"applicationVersions\":[]}");
+        }
+        json.append("]");
+        mockWebServer.enqueue(new MockResponse().setBody(json.toString()));
+
+        Response<ResponseBody> response = applicationsService.listApplications(null, null).execute();
+        List<Integer> chunkSizes = new ArrayList<>();
+        int count = SyncHelper.readApplications(response.body().charStream(), 2, applicationGsons -> chunkSizes.add(applicationGsons.size()));
+        assertEquals(5, count);
+        assertEquals(Arrays.asList(2, 2, 1), chunkSizes);
+    }
+}
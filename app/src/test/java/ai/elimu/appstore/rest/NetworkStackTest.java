@@ -0,0 +1,104 @@
+package ai.elimu.appstore.rest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+import retrofit2.Response;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class NetworkStackTest {
+
+    private MockWebServer mockWebServer;
+
+    private NetworkStack networkStack;
+
+    @Before
+    public void setUp() throws Exception {
+        mockWebServer = new MockWebServer();
+        mockWebServer.start();
+
+        networkStack = new NetworkStack();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mockWebServer.shutdown();
+    }
+
+    @Test
+    public void getRetrofit_reusedPerBaseUrl() {
+        String baseUrl = mockWebServer.url("/rest/v2/").toString();
+        assertSame(networkStack.getRetrofit(baseUrl), networkStack.getRetrofit(baseUrl));
+    }
+
+    @Test
+    public void connectionReuse() throws Exception {
+        mockWebServer.enqueue(new MockResponse().setBody("[]"));
+        mockWebServer.enqueue(new MockResponse().setBody("[]"));
+        mockWebServer.enqueue(new MockResponse().setBody("apk"));
+
+        ApplicationsService applicationsService = networkStack.getRetrofit(mockWebServer.url("/rest/v2/").toString()).create(ApplicationsService.class);
+        for (int i = 0; i < 2; i++) {
+            Response<ResponseBody> response = applicationsService.listApplications(null, null).execute();
+            response.body().close();
+        }
+        Request request = new Request.Builder().url(mockWebServer.url("/apk/ai.elimu.vitabu-1.apk")).build();
+        networkStack.getDownloadClient().newCall(request).execute().close();
+
+        // A sequence number greater than 0 means that the request was sent over a previously used connection
+        assertEquals(0, mockWebServer.takeRequest().getSequenceNumber());
+        assertEquals(1, mockWebServer.takeRequest().getSequenceNumber());
+        // The download client shares the connection pool
+        assertEquals(2, mockWebServer.takeRequest().getSequenceNumber());
+    }
+
+    @Test
+    public void gzip() throws Exception {
+        Buffer gzippedBody = new Buffer();
+        try (BufferedSink gzipSink = Okio.buffer(new GzipSink(gzippedBody))) {
+            gzipSink.writeUtf8("[]");
+        }
+        mockWebServer.enqueue(new MockResponse().setHeader("Content-Encoding", "gzip").setBody(gzippedBody));
+
+        ApplicationsService applicationsService = networkStack.getRetrofit(mockWebServer.url("/rest/v2/").toString()).create(ApplicationsService.class);
+        Response<ResponseBody> response = applicationsService.listApplications(null, null).execute();
+        assertEquals("[]", response.body().string());
+
+        RecordedRequest recordedRequest = mockWebServer.takeRequest();
+        assertEquals("gzip", recordedRequest.getHeader("Accept-Encoding"));
+    }
+
+    /**
+     * A cache would turn the 304 into the cached 200 response, and the unchanged list of Applications would be stored
+     * again.
+     */
+    @Test
+    public void notModified_notServedFromCache() throws Exception {
+        mockWebServer.enqueue(new MockResponse()
+                .setHeader("Cache-Control", "max-age=60")
+                .setHeader("ETag", "\"v1\"")
+                .setBody("[]"));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(304));
+
+        ApplicationsService applicationsService = networkStack.getRetrofit(mockWebServer.url("/rest/v2/").toString()).create(ApplicationsService.class);
+        assertEquals("[]", applicationsService.listApplications(null, null).execute().body().string());
+        Response<ResponseBody> response = applicationsService.listApplications("\"v1\"", null).execute();
+
+        assertEquals(304, response.code());
+        assertEquals(2, mockWebServer.getRequestCount());
+        mockWebServer.takeRequest();
+        assertEquals("\"v1\"", mockWebServer.takeRequest().getHeader("If-None-Match"));
+    }
+}
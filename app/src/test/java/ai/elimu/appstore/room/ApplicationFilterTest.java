@@ -0,0 +1,65 @@
+package ai.elimu.appstore.room;
+
+import androidx.sqlite.db.SupportSQLiteQuery;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ApplicationFilterTest {
+
+    @Test
+    public void getUpperBound() {
+        assertEquals("ai.elimu/", ApplicationFilter.getUpperBound("ai.elimu."));
+        assertEquals("b", ApplicationFilter.getUpperBound("a\uffff"));
+        assertEquals("b", ApplicationFilter.getUpperBound("a\uffff\uffff"));
+        assertNull(ApplicationFilter.getUpperBound("\uffff"));
+    }
+
+    @Test
+    public void toQuery_packageNamePrefixWithoutUpperBound() {
+        SupportSQLiteQuery query = new ApplicationFilter().setPackageNamePrefix("\uffff").toQuery();
+
+        assertFalse(query.getSql().contains("a.packageName <"));
+        assertEquals(1, query.getArgCount());
+    }
+
+    @Test
+    public void toQuery_installedAsBindArgs() {
+        SupportSQLiteQuery query = new ApplicationFilter()
+                .setInstalled(true, Arrays.asList("ai.elimu.test1", "ai.elimu.test'2"))
+                .setLimit(20)
+                .toQuery();
+
+        assertTrue(query.getSql().contains("a.packageName IN (?,?)"));
+        assertFalse(query.getSql().contains("ai.elimu.test"));
+        assertEquals(3, query.getArgCount());
+    }
+
+    @Test
+    public void toQuery_installedExceedingMaxBindArgs() {
+        List<String> installedPackageNames = new ArrayList<>();
+        for (int i = 0; i < ApplicationFilter.MAX_BIND_ARGS; i++) {
+            installedPackageNames.add("ai.elimu.test" + i);
+        }
+        SupportSQLiteQuery query = new ApplicationFilter()
+                .setInstalled(false, installedPackageNames)
+                .setLimit(20)
+                .toQuery();
+
+        assertFalse(query.getSql().contains("ai.elimu.test"));
+        assertEquals(2, query.getArgCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setInstalled_null() {
+        new ApplicationFilter().setInstalled(true, null);
+    }
+}
@@ -0,0 +1,81 @@
+package ai.elimu.appstore.room;
+
+import org.junit.Test;
+
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+
+import ai.elimu.model.enums.content.LiteracySkill;
+import ai.elimu.model.enums.content.NumeracySkill;
+
+import static org.junit.Assert.assertEquals;
+
+public class EnumConverterTest {
+
+    @Test
+    public void literacySkills_roundTrip() {
+        assertEquals(EnumSet.noneOf(LiteracySkill.class), EnumConverter.fromLiteracySkills(EnumConverter.toLiteracySkills(null)));
+        for (LiteracySkill literacySkill : LiteracySkill.values()) {
+            Set<LiteracySkill> literacySkills = EnumSet.of(literacySkill);
+            assertEquals(literacySkills, EnumConverter.fromLiteracySkills(EnumConverter.toLiteracySkills(literacySkills)));
+        }
+        Set<LiteracySkill> allLiteracySkills = EnumSet.allOf(LiteracySkill.class);
+        assertEquals(allLiteracySkills, EnumConverter.fromLiteracySkills(EnumConverter.toLiteracySkills(allLiteracySkills)));
+    }
+
+    @Test
+    public void numeracySkills_roundTrip() {
+        assertEquals(EnumSet.noneOf(NumeracySkill.class), EnumConverter.fromNumeracySkills(EnumConverter.toNumeracySkills(null)));
+        for (NumeracySkill numeracySkill : NumeracySkill.values()) {
+            Set<NumeracySkill> numeracySkills = EnumSet.of(numeracySkill);
+            assertEquals(numeracySkills, EnumConverter.fromNumeracySkills(EnumConverter.toNumeracySkills(numeracySkills)));
+        }
+        Set<NumeracySkill> allNumeracySkills = EnumSet.allOf(NumeracySkill.class);
+        assertEquals(allNumeracySkills, EnumConverter.fromNumeracySkills(EnumConverter.toNumeracySkills(allNumeracySkills)));
+    }
+
+    @Test
+    public void fromBitmask_unknownOrdinal() {
+        // E.g. a value stored by a newer version of the model library, with more enum constants
+        long bitmask = EnumConverter.toLiteracySkills(EnumSet.allOf(LiteracySkill.class)) | (1L << 63);
+        assertEquals(EnumSet.allOf(LiteracySkill.class), EnumConverter.fromLiteracySkills(bitmask));
+    }
+
+    @Test
+    public void fromLegacyLiteracySkills() {
+        // Stored with Set#toString() prior to database version 5
+        Set<LiteracySkill> literacySkills = new HashSet<>(EnumSet.allOf(LiteracySkill.class));
+        assertEquals(literacySkills, EnumConverter.fromLegacyLiteracySkills(literacySkills.toString()));
+        assertEquals(EnumSet.noneOf(LiteracySkill.class), EnumConverter.fromLegacyLiteracySkills("[]"));
+        assertEquals(EnumSet.noneOf(LiteracySkill.class), EnumConverter.fromLegacyLiteracySkills(null));
+        assertEquals(EnumSet.of(LiteracySkill.values()[0]), EnumConverter.fromLegacyLiteracySkills("[" + LiteracySkill.values()[0] + ", UNKNOWN_SKILL]"));
+    }
+
+    @Test
+    public void fromLegacyNumeracySkills() {
+        Set<NumeracySkill> numeracySkills = new HashSet<>(EnumSet.allOf(NumeracySkill.class));
+        assertEquals(numeracySkills, EnumConverter.fromLegacyNumeracySkills(numeracySkills.toString()));
+        assertEquals(EnumSet.noneOf(NumeracySkill.class), EnumConverter.fromLegacyNumeracySkills(""));
+    }
+
+    /**
+     * Reads the text stored prior to database version 5 (as done by {@link RoomDb#MIGRATION_4_5}), and checks that
+     * the bitmask it is migrated to is read back as the same set of skills.
+     */
+    @Test
+    public void fromLegacy_migratedBitmaskRoundTrip() {
+        for (LiteracySkill literacySkill : LiteracySkill.values()) {
+            Set<LiteracySkill> literacySkills = EnumSet.of(LiteracySkill.values()[0], literacySkill);
+            Set<LiteracySkill> migratedLiteracySkills = EnumConverter.fromLegacyLiteracySkills(new HashSet<>(literacySkills).toString());
+            assertEquals(literacySkills, EnumConverter.fromLiteracySkills(EnumConverter.toLiteracySkills(migratedLiteracySkills)));
+        }
+        for (NumeracySkill numeracySkill : NumeracySkill.values()) {
+            Set<NumeracySkill> numeracySkills = EnumSet.of(NumeracySkill.values()[0], numeracySkill);
+            Set<NumeracySkill> migratedNumeracySkills = EnumConverter.fromLegacyNumeracySkills(new HashSet<>(numeracySkills).toString());
+            assertEquals(numeracySkills, EnumConverter.fromNumeracySkills(EnumConverter.toNumeracySkills(migratedNumeracySkills)));
+        }
+        assertEquals(0L, EnumConverter.toLiteracySkills(EnumConverter.fromLegacyLiteracySkills("[]")));
+        assertEquals(0L, EnumConverter.toNumeracySkills(EnumConverter.fromLegacyNumeracySkills(null)));
+    }
+}
@@ -0,0 +1,111 @@
+package ai.elimu.appstore.room;
+
+import android.content.Context;
+
+import androidx.room.Room;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.List;
+
+import ai.elimu.appstore.room.entity.Application;
+import ai.elimu.appstore.util.AppSettings;
+import ai.elimu.appstore.util.SharedPreferencesHelper;
+import ai.elimu.model.enums.Language;
+import ai.elimu.model.enums.admin.ApplicationStatus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class RoomDbTest {
+
+    private static final String LEGACY_DATABASE_NAME = "appstore_db";
+
+    private Context context;
+
+    private Language language;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.getApplication();
+        AppSettings.reset();
+        language = Language.values()[0];
+        AppSettings.getInstance(context).setLanguage(language);
+        RoomDb.deleteDatabase(context, language);
+    }
+
+    @After
+    public void tearDown() {
+        RoomDb.deleteDatabase(context, language);
+    }
+
+    @Test
+    public void getDatabase_keepsLegacyRowsWithoutValidators() throws Exception {
+        createLegacyDatabase("ai.elimu.legacy");
+        // Downloaded before the ETag/Last-Modified validators were stored
+        assertNull(SharedPreferencesHelper.getApplicationsETag(context, language));
+        assertNull(SharedPreferencesHelper.getApplicationsLastModified(context, language));
+
+        List<Application> applications = loadAll();
+
+        assertEquals(1, applications.size());
+        assertEquals("ai.elimu.legacy", applications.get(0).getPackageName());
+        assertFalse(context.getDatabasePath(LEGACY_DATABASE_NAME).exists());
+        assertTrue(context.getDatabasePath(RoomDb.getDatabaseName(language)).exists());
+    }
+
+    @Test
+    public void getDatabase_existingDatabaseWins() throws Exception {
+        RoomDb.databaseWriteExecutor.submit(() -> {
+            Application application = createApplication("ai.elimu.current");
+            RoomDb.getDatabase(context, language).applicationDao().insert(application);
+        }).get();
+        closeDatabase();
+        createLegacyDatabase("ai.elimu.legacy");
+
+        List<Application> applications = loadAll();
+
+        assertEquals(1, applications.size());
+        assertEquals("ai.elimu.current", applications.get(0).getPackageName());
+        assertFalse(context.getDatabasePath(LEGACY_DATABASE_NAME).exists());
+    }
+
+    private void createLegacyDatabase(String packageName) {
+        RoomDb legacyDatabase = Room.databaseBuilder(context, RoomDb.class, LEGACY_DATABASE_NAME)
+                .allowMainThreadQueries()
+                .build();
+        legacyDatabase.applicationDao().insert(createApplication(packageName));
+        legacyDatabase.close();
+    }
+
+    private static Application createApplication(String packageName) {
+        Application application = new Application();
+        application.setId(1L);
+        application.setPackageName(packageName);
+        application.setApplicationStatus(ApplicationStatus.ACTIVE);
+        return application;
+    }
+
+    /**
+     * Closes the database of the selected language without deleting it, so that it is opened again on next use.
+     */
+    private void closeDatabase() {
+        AppSettings.getInstance(context).setLanguage(Language.values()[1]);
+        RoomDb.closeInactiveDatabases(context);
+        AppSettings.getInstance(context).setLanguage(language);
+    }
+
+    private List<Application> loadAll() throws Exception {
+        return RoomDb.databaseWriteExecutor.submit(() -> RoomDb.getDatabase(context).applicationDao().loadAll()).get();
+    }
+}
@@ -0,0 +1,336 @@
+package ai.elimu.appstore.ui.applications;
+
+import android.content.Context;
+import android.os.Looper;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.paging.PagedList;
+import androidx.paging.PositionalDataSource;
+import androidx.recyclerview.widget.RecyclerView;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import ai.elimu.appstore.R;
+import ai.elimu.appstore.room.entity.Application;
+import ai.elimu.appstore.room.entity.ApplicationVersion;
+import ai.elimu.appstore.util.AppSettings;
+import ai.elimu.appstore.util.LoggingHelper;
+import ai.elimu.model.enums.Language;
+import ai.elimu.model.enums.admin.ApplicationStatus;
+import timber.log.Timber;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class ApplicationListAdapterTest {
+
+    private static final int ITEM_COUNT = 300;
+
+    private Context context;
+
+    private ApplicationListAdapter applicationListAdapter;
+
+    private FrameLayout parent;
+
+    @Before
+    public void setUp() {
+        AppSettings.reset();
+        // The list of Applications is only displayed once a language has been selected
+        AppSettings.getInstance(RuntimeEnvironment.getApplication()).setLanguage(Language.values()[0]);
+
+        context = new ContextThemeWrapper(RuntimeEnvironment.getApplication(), R.style.AppTheme);
+        applicationListAdapter = new ApplicationListAdapter(context, Runnable::run);
+        applicationListAdapter.submitList(createPagedList(createItems()));
+        parent = new FrameLayout(context);
+    }
+
+    @After
+    public void tearDown() {
+        Timber.uprootAll();
+    }
+
+    @Test
+    public void submitList_unchangedList() throws Exception {
+        ChangeRecorder changeRecorder = submitList(createItems());
+
+        assertTrue(changeRecorder.changes.isEmpty());
+        assertEquals(0, changeRecorder.structuralChanges);
+    }
+
+    @Test
+    public void submitList_apkDownloaded() throws Exception {
+        List<ApplicationListItem> applicationListItems = createItems();
+        applicationListItems.set(42, createItem(42, "ai.elimu.test42", ApplicationStatus.ACTIVE, true));
+
+        ChangeRecorder changeRecorder = submitList(applicationListItems);
+
+        // Only the state of the row is rebound
+        assertEquals(Collections.singletonList("42:" + ApplicationListItem.PAYLOAD_STATE), changeRecorder.changes);
+        assertEquals(0, changeRecorder.structuralChanges);
+    }
+
+    @Test
+    public void submitList_detailsChanged() throws Exception {
+        List<ApplicationListItem> applicationListItems = createItems();
+        applicationListItems.set(7, createItem(7, "ai.elimu.test7", ApplicationStatus.DELETED, false));
+
+        ChangeRecorder changeRecorder = submitList(applicationListItems);
+
+        // The whole row is rebound
+        assertEquals(Collections.singletonList("7:null"), changeRecorder.changes);
+        assertEquals(0, changeRecorder.structuralChanges);
+    }
+
+    @Test
+    public void onPackageChanged_onlyRebindsItsRow() throws Exception {
+        List<ApplicationListItem> applicationListItems = createItems();
+        // The APK file was verified when the page was loaded, but has been deleted since
+        applicationListItems.set(42, createItem(42, "ai.elimu.test42", ApplicationStatus.ACTIVE, true));
+        submitList(applicationListItems);
+        PagedList<ApplicationListItem> pagedList = applicationListAdapter.getCurrentList();
+        ChangeRecorder changeRecorder = new ChangeRecorder();
+        applicationListAdapter.registerAdapterDataObserver(changeRecorder);
+
+        applicationListAdapter.installedPackagesListener.onPackageChanged("ai.elimu.test42");
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertEquals(Collections.singletonList("42:" + ApplicationListItem.PAYLOAD_STATE), changeRecorder.changes);
+        // The list is not loaded again
+        assertSame(pagedList, applicationListAdapter.getCurrentList());
+        assertFalse(pagedList.getDataSource().isInvalid());
+
+        // The row is bound with the state that was read again
+        ApplicationListAdapter.ApplicationViewHolder viewHolder = applicationListAdapter.onCreateViewHolder(parent, 0);
+        applicationListAdapter.onBindViewHolder(viewHolder, 42, Collections.singletonList(ApplicationListItem.PAYLOAD_STATE));
+        assertEquals(View.VISIBLE, viewHolder.itemView.findViewById(R.id.list_item_download_button).getVisibility());
+        assertEquals(View.INVISIBLE, viewHolder.itemView.findViewById(R.id.list_item_install_button).getVisibility());
+    }
+
+    @Test
+    public void onPackageChanged_unchangedState() {
+        ChangeRecorder changeRecorder = new ChangeRecorder();
+        applicationListAdapter.registerAdapterDataObserver(changeRecorder);
+
+        applicationListAdapter.installedPackagesListener.onPackageChanged("ai.elimu.test3");
+        applicationListAdapter.installedPackagesListener.onPackageChanged("com.example");
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertTrue(changeRecorder.changes.isEmpty());
+    }
+
+    @Test
+    public void onDownloadComplete_onlyRebindsItsRow() {
+        ChangeRecorder changeRecorder = new ChangeRecorder();
+        applicationListAdapter.registerAdapterDataObserver(changeRecorder);
+
+        applicationListAdapter.downloadListener.onDownloadComplete(Language.values()[0], 7, false);
+        // Another language's database may use the same Application ID
+        applicationListAdapter.downloadListener.onDownloadComplete(Language.values()[1], 8, true);
+        shadowOf(Looper.getMainLooper()).idle();
+
+        // The progress bar is replaced. The state that was read again has not changed.
+        assertEquals(Collections.singletonList("7:" + ApplicationListItem.PAYLOAD_STATE), changeRecorder.changes);
+        assertEquals(0, changeRecorder.structuralChanges);
+    }
+
+    @Test
+    public void refreshInstalledItems_onlyRebindsChangedVersionCodes() throws Exception {
+        List<ApplicationListItem> applicationListItems = createItems();
+        // Installed when the page was loaded, but uninstalled while the list was not visible
+        Application application = applicationListItems.get(5).getApplication();
+        applicationListItems.set(5, new ApplicationListItem(application, applicationListItems.get(5).getNewestApplicationVersion(), true, 1, null, false));
+        submitList(applicationListItems);
+        PagedList<ApplicationListItem> pagedList = applicationListAdapter.getCurrentList();
+        ChangeRecorder changeRecorder = new ChangeRecorder();
+        applicationListAdapter.registerAdapterDataObserver(changeRecorder);
+
+        applicationListAdapter.refreshInstalledItems();
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertEquals(Collections.singletonList("5:" + ApplicationListItem.PAYLOAD_STATE), changeRecorder.changes);
+        assertSame(pagedList, applicationListAdapter.getCurrentList());
+        assertFalse(pagedList.getDataSource().isInvalid());
+    }
+
+    @Test
+    public void onBindViewHolder_payloads() {
+        ApplicationListAdapter.ApplicationViewHolder viewHolder = applicationListAdapter.onCreateViewHolder(parent, 0);
+        TextView textViewFirstLine = viewHolder.itemView.findViewById(R.id.textViewFirstLine);
+        View downloadButton = viewHolder.itemView.findViewById(R.id.list_item_download_button);
+        applicationListAdapter.onBindViewHolder(viewHolder, 3, Collections.emptyList());
+        assertEquals("ai.elimu.test3", textViewFirstLine.getText().toString());
+        assertEquals(View.VISIBLE, downloadButton.getVisibility());
+
+        // The progress payload only rebinds the progress bar
+        textViewFirstLine.setText("-");
+        downloadButton.setVisibility(View.GONE);
+        applicationListAdapter.onBindViewHolder(viewHolder, 3, Collections.singletonList(ApplicationListAdapter.PAYLOAD_PROGRESS));
+        assertEquals("-", textViewFirstLine.getText().toString());
+        assertEquals(View.GONE, downloadButton.getVisibility());
+
+        // The state payload rebinds the buttons, but not the text
+        applicationListAdapter.onBindViewHolder(viewHolder, 3, Collections.singletonList(ApplicationListItem.PAYLOAD_STATE));
+        assertEquals("-", textViewFirstLine.getText().toString());
+        assertEquals(View.VISIBLE, downloadButton.getVisibility());
+
+        // Without a payload, the whole row is rebound
+        applicationListAdapter.onBindViewHolder(viewHolder, 3, Collections.emptyList());
+        assertEquals("ai.elimu.test3", textViewFirstLine.getText().toString());
+    }
+
+    /**
+     * The rows of the list of Applications are bound while scrolling, so the release configuration must not pass any
+     * log messages (or varargs arrays) to {@link Timber} while binding them.
+     */
+    @Test
+    public void onBindViewHolder_releaseDoesNotLogMessages() {
+        ApplicationListAdapter.ApplicationViewHolder viewHolder = applicationListAdapter.onCreateViewHolder(parent, 0);
+
+        LoggingHelper.plantTree(true);
+        CountingTree debugTree = new CountingTree();
+        Timber.plant(debugTree);
+        bindAll(viewHolder);
+        assertTrue(debugTree.count > 0);
+
+        LoggingHelper.plantTree(false);
+        CountingTree releaseTree = new CountingTree();
+        Timber.plant(releaseTree);
+        bindAll(viewHolder);
+        assertEquals(0, releaseTree.count);
+        assertTrue(LoggingHelper.getRingBufferTree().getMessages().isEmpty());
+    }
+
+    private void bindAll(ApplicationListAdapter.ApplicationViewHolder viewHolder) {
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            applicationListAdapter.onBindViewHolder(viewHolder, i, Collections.emptyList());
+        }
+    }
+
+    /**
+     * Submits a new list, and waits until the adapter has dispatched the changes (which are calculated on a
+     * background thread).
+     */
+    private ChangeRecorder submitList(List<ApplicationListItem> applicationListItems) throws InterruptedException {
+        ChangeRecorder changeRecorder = new ChangeRecorder();
+        applicationListAdapter.registerAdapterDataObserver(changeRecorder);
+        PagedList<ApplicationListItem> pagedList = createPagedList(applicationListItems);
+        applicationListAdapter.submitList(pagedList);
+        long timeout = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while ((applicationListAdapter.getCurrentList() != pagedList) && (System.currentTimeMillis() < timeout)) {
+            Thread.sleep(10);
+            shadowOf(Looper.getMainLooper()).idle();
+        }
+        assertTrue(applicationListAdapter.getCurrentList() == pagedList);
+        return changeRecorder;
+    }
+
+    private static List<ApplicationListItem> createItems() {
+        List<ApplicationListItem> applicationListItems = new ArrayList<>();
+        for (long id = 0; id < ITEM_COUNT; id++) {
+            applicationListItems.add(createItem(id, "ai.elimu.test" + id, ApplicationStatus.ACTIVE, false));
+        }
+        return applicationListItems;
+    }
+
+    private static ApplicationListItem createItem(long id, String packageName, ApplicationStatus applicationStatus, boolean apkDownloaded) {
+        Application application = new Application();
+        application.setId(id);
+        application.setPackageName(packageName);
+        application.setApplicationStatus(applicationStatus);
+
+        ApplicationVersion applicationVersion = new ApplicationVersion();
+        applicationVersion.setId(id);
+        applicationVersion.setApplicationId(id);
+        applicationVersion.setVersionCode(1);
+
+        return new ApplicationListItem(application, applicationVersion, false, 0, null, apkDownloaded);
+    }
+
+    /**
+     * @return A list whose items are all loaded on the calling thread.
+     */
+    private static PagedList<ApplicationListItem> createPagedList(List<ApplicationListItem> applicationListItems) {
+        PositionalDataSource<ApplicationListItem> dataSource = new PositionalDataSource<ApplicationListItem>() {
+            @Override
+            public void loadInitial(@NonNull LoadInitialParams params, @NonNull LoadInitialCallback<ApplicationListItem> callback) {
+                callback.onResult(applicationListItems, 0, applicationListItems.size());
+            }
+
+            @Override
+            public void loadRange(@NonNull LoadRangeParams params, @NonNull LoadRangeCallback<ApplicationListItem> callback) {
+                int end = Math.min(params.startPosition + params.loadSize, applicationListItems.size());
+                callback.onResult(applicationListItems.subList(params.startPosition, end));
+            }
+        };
+        return new PagedList.Builder<>(dataSource, ApplicationListActivity.PAGED_LIST_CONFIG)
+                .setFetchExecutor(Runnable::run)
+                .setNotifyExecutor(Runnable::run)
+                .build();
+    }
+
+
+    private static class ChangeRecorder extends RecyclerView.AdapterDataObserver {
+
+        /**
+         * E.g. "42:state" for a change of the item at position 42 with the payload "state".
+         */
+        private final List<String> changes = new ArrayList<>();
+
+        private int structuralChanges;
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
+            for (int i = 0; i < itemCount; i++) {
+                changes.add((positionStart + i) + ":" + payload);
+            }
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            structuralChanges += itemCount;
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            structuralChanges += itemCount;
+        }
+
+        @Override
+        public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+            structuralChanges += itemCount;
+        }
+    }
+
+    /**
+     * Counts the messages passed to {@link Timber}, regardless of their priority.
+     */
+    private static class CountingTree extends Timber.Tree {
+
+        private int count;
+
+        @Override
+        protected void log(int priority, String tag, @NonNull String message, Throwable t) {
+            count++;
+        }
+    }
+}
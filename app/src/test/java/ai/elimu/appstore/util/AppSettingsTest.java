@@ -0,0 +1,104 @@
+package ai.elimu.appstore.util;
+
+import android.content.Context;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import ai.elimu.model.enums.Language;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class AppSettingsTest {
+
+    private Context context;
+
+    private AppSettings appSettings;
+
+    private final List<String> changedKeys = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.getApplication();
+        AppSettings.reset();
+        appSettings = AppSettings.getInstance(context);
+        appSettings.registerOnSettingChangedListener(changedKeys::add);
+    }
+
+    @Test
+    public void getInstance() {
+        assertSame(appSettings, AppSettings.getInstance(context));
+    }
+
+    @Test
+    public void reset() {
+        appSettings.setLanguage(Language.values()[0]);
+
+        AppSettings.reset();
+
+        AppSettings reloadedAppSettings = AppSettings.getInstance(context);
+        assertNotSame(appSettings, reloadedAppSettings);
+        // Loaded from the preferences
+        assertEquals(Language.values()[0], reloadedAppSettings.getLanguage());
+    }
+
+    @Test
+    public void setLanguage() {
+        Language language = Language.values()[0];
+        appSettings.setLanguage(language);
+
+        assertEquals(language, appSettings.getLanguage());
+        assertEquals(Collections.singletonList(SharedPreferencesHelper.PREF_LANGUAGE), changedKeys);
+        // Written through to the preferences
+        assertEquals(language, SharedPreferencesHelper.getLanguage(context));
+    }
+
+    @Test
+    public void setAppVersionCode() {
+        appSettings.setAppVersionCode(2003007);
+
+        assertEquals(2003007, appSettings.getAppVersionCode());
+        assertEquals(Collections.singletonList(SharedPreferencesHelper.PREF_APP_VERSION_CODE), changedKeys);
+        assertEquals(2003007, SharedPreferencesHelper.getAppVersionCode(context));
+    }
+
+    @Test
+    public void clearAll() {
+        appSettings.setLanguage(Language.values()[0]);
+        appSettings.setAppVersionCode(2003007);
+        changedKeys.clear();
+
+        appSettings.clearAll();
+
+        assertNull(appSettings.getLanguage());
+        assertEquals(0, appSettings.getAppVersionCode());
+        assertEquals(Arrays.asList(SharedPreferencesHelper.PREF_LANGUAGE, SharedPreferencesHelper.PREF_APP_VERSION_CODE), changedKeys);
+        assertNull(SharedPreferencesHelper.getLanguage(context));
+    }
+
+    @Test
+    public void unregisterOnSettingChangedListener() {
+        AppSettings.OnSettingChangedListener listener = changedKeys::add;
+        appSettings.registerOnSettingChangedListener(listener);
+        appSettings.unregisterOnSettingChangedListener(listener);
+
+        appSettings.setAppVersionCode(2003007);
+
+        // Only the listener registered in setUp
+        assertEquals(1, changedKeys.size());
+    }
+}
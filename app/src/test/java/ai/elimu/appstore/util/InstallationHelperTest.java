@@ -0,0 +1,78 @@
+package ai.elimu.appstore.util;
+
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentSender;
+import android.content.pm.PackageInstaller;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class InstallationHelperTest {
+
+    private static final String PACKAGE_NAME = "ai.elimu.vitabu";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Context context;
+
+    private PackageInstaller packageInstaller;
+
+    private File apkFile;
+
+    private IntentSender statusReceiver;
+
+    @Before
+    public void setUp() throws Exception {
+        context = RuntimeEnvironment.getApplication();
+        packageInstaller = context.getPackageManager().getPackageInstaller();
+
+        apkFile = temporaryFolder.newFile(PACKAGE_NAME + "-2.apk");
+        try (FileOutputStream fileOutputStream = new FileOutputStream(apkFile)) {
+            fileOutputStream.write("apk".getBytes(StandardCharsets.UTF_8));
+        }
+        statusReceiver = PendingIntent.getBroadcast(context, 0, new Intent(), 0).getIntentSender();
+    }
+
+    @Test
+    public void installApk() throws Exception {
+        String checksumMd5 = ChecksumHelper.calculateMd5(apkFile);
+
+        int sessionId = InstallationHelper.installApk(context, apkFile, PACKAGE_NAME, checksumMd5, statusReceiver);
+
+        PackageInstaller.SessionInfo sessionInfo = packageInstaller.getSessionInfo(sessionId);
+        assertNotNull(sessionInfo);
+        assertEquals(PACKAGE_NAME, sessionInfo.getAppPackageName());
+    }
+
+    @Test
+    public void installApk_checksumMismatch() {
+        try {
+            InstallationHelper.installApk(context, apkFile, PACKAGE_NAME, "d41d8cd98f00b204e9800998ecf8427e", statusReceiver);
+            fail();
+        } catch (IOException e) {
+            // The session is not committed
+            assertTrue(packageInstaller.getMySessions().isEmpty());
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package ai.elimu.appstore.util;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageInfo;
+import android.net.Uri;
+import android.os.Looper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowPackageManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class InstalledPackagesSnapshotTest {
+
+    private static final String PACKAGE_NAME = "ai.elimu.vitabu";
+
+    private Context context;
+
+    private ShadowPackageManager shadowPackageManager;
+
+    private InstalledPackagesSnapshot installedPackagesSnapshot;
+
+    private final List<String> changedPackageNames = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.getApplication();
+        shadowPackageManager = shadowOf(context.getPackageManager());
+        installPackage(1);
+
+        installedPackagesSnapshot = new InstalledPackagesSnapshot(context);
+        installedPackagesSnapshot.addListener(changedPackageNames::add);
+    }
+
+    @Test
+    public void getVersionCode() {
+        assertTrue(installedPackagesSnapshot.isInstalled(PACKAGE_NAME));
+        assertEquals(1, installedPackagesSnapshot.getVersionCode(PACKAGE_NAME));
+
+        assertFalse(installedPackagesSnapshot.isInstalled("ai.elimu.nyaqd"));
+        assertEquals(0, installedPackagesSnapshot.getVersionCode("ai.elimu.nyaqd"));
+    }
+
+    @Test
+    public void packageReplaced() {
+        assertEquals(1, installedPackagesSnapshot.getVersionCode(PACKAGE_NAME));
+
+        installPackage(2);
+        sendBroadcast(Intent.ACTION_PACKAGE_REPLACED, false);
+
+        assertEquals(2, installedPackagesSnapshot.getVersionCode(PACKAGE_NAME));
+        assertEquals(Collections.singletonList(PACKAGE_NAME), changedPackageNames);
+    }
+
+    @Test
+    public void packageReplaced_listenerCalledOnMainThread() {
+        List<Boolean> calledOnMainThread = new ArrayList<>();
+        installedPackagesSnapshot.addListener(packageName -> calledOnMainThread.add(Looper.myLooper() == Looper.getMainLooper()));
+        assertEquals(1, installedPackagesSnapshot.getVersionCode(PACKAGE_NAME));
+
+        installPackage(2);
+        sendBroadcast(Intent.ACTION_PACKAGE_REPLACED, false);
+
+        assertEquals(Collections.singletonList(true), calledOnMainThread);
+    }
+
+    @Test
+    public void packageRemoved() {
+        assertTrue(installedPackagesSnapshot.isInstalled(PACKAGE_NAME));
+
+        shadowPackageManager.removePackage(PACKAGE_NAME);
+        sendBroadcast(Intent.ACTION_PACKAGE_REMOVED, false);
+
+        assertFalse(installedPackagesSnapshot.isInstalled(PACKAGE_NAME));
+        assertEquals(Collections.singletonList(PACKAGE_NAME), changedPackageNames);
+    }
+
+    @Test
+    public void packageRemoved_replacing() {
+        assertTrue(installedPackagesSnapshot.isInstalled(PACKAGE_NAME));
+
+        sendBroadcast(Intent.ACTION_PACKAGE_REMOVED, true);
+
+        // The package is only removed while the new version is being installed
+        assertTrue(installedPackagesSnapshot.isInstalled(PACKAGE_NAME));
+        assertTrue(changedPackageNames.isEmpty());
+    }
+
+    private void installPackage(int versionCode) {
+        PackageInfo packageInfo = new PackageInfo();
+        packageInfo.packageName = PACKAGE_NAME;
+        packageInfo.versionCode = versionCode;
+        shadowPackageManager.installPackage(packageInfo);
+    }
+
+    private void sendBroadcast(String action, boolean replacing) {
+        Intent intent = new Intent(action, Uri.fromParts("package", PACKAGE_NAME, null));
+        intent.putExtra(Intent.EXTRA_REPLACING, replacing);
+        context.sendBroadcast(intent);
+        shadowOf(Looper.getMainLooper()).idle();
+
+        // The snapshot is updated on its background thread, and the listeners are then called on the main thread
+        shadowOf(installedPackagesSnapshot.getBackgroundLooper()).idle();
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+}
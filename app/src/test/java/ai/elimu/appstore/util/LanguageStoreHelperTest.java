@@ -0,0 +1,102 @@
+package ai.elimu.appstore.util;
+
+import android.content.Context;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import ai.elimu.appstore.room.RoomDb;
+import ai.elimu.model.enums.Language;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class LanguageStoreHelperTest {
+
+    private static final int SIZE = 1024;
+
+    private Context context;
+
+    private Language selectedLanguage;
+
+    private Language leastRecentlyUsedLanguage;
+
+    private Language mostRecentlyUsedLanguage;
+
+    @Before
+    public void setUp() throws Exception {
+        context = RuntimeEnvironment.getApplication();
+        AppSettings.reset();
+        selectedLanguage = Language.values()[0];
+        leastRecentlyUsedLanguage = Language.values()[1];
+        mostRecentlyUsedLanguage = Language.values()[2];
+
+        for (Language language : new Language[] {leastRecentlyUsedLanguage, mostRecentlyUsedLanguage, selectedLanguage}) {
+            createFile(context.getDatabasePath(RoomDb.getDatabaseName(language)));
+            createFile(new File(FileHelper.getLanguageDirectory(context, language), "apks/ai.elimu.test-1.apk"));
+            SharedPreferencesHelper.storeApplicationsValidators(context, language, "\"" + language + "\"", null);
+            LanguageStoreHelper.selectLanguage(context, language);
+        }
+        assertEquals(selectedLanguage, AppSettings.getInstance(context).getLanguage());
+
+        // The languages may have been selected within the same millisecond
+        SharedPreferencesHelper.storeLanguageLastUsed(context, leastRecentlyUsedLanguage, 1000);
+        SharedPreferencesHelper.storeLanguageLastUsed(context, mostRecentlyUsedLanguage, 2000);
+    }
+
+    @Test
+    public void getDiskUsage() {
+        assertEquals(2 * SIZE, LanguageStoreHelper.getDiskUsage(context, selectedLanguage));
+    }
+
+    @Test
+    public void evictInactiveLanguages_withinBudget() {
+        LanguageStoreHelper.evictInactiveLanguages(context, 4 * SIZE);
+
+        assertEquals(2 * SIZE, LanguageStoreHelper.getDiskUsage(context, leastRecentlyUsedLanguage));
+        assertEquals(2 * SIZE, LanguageStoreHelper.getDiskUsage(context, mostRecentlyUsedLanguage));
+    }
+
+    @Test
+    public void evictInactiveLanguages_leastRecentlyUsedFirst() {
+        LanguageStoreHelper.evictInactiveLanguages(context, 3 * SIZE);
+
+        assertEquals(0, LanguageStoreHelper.getDiskUsage(context, leastRecentlyUsedLanguage));
+        assertFalse(FileHelper.getLanguageDirectory(context, leastRecentlyUsedLanguage).exists());
+        // The next synchronization of the evicted language should download its full list of Applications
+        assertNull(SharedPreferencesHelper.getApplicationsETag(context, leastRecentlyUsedLanguage));
+
+        assertEquals(2 * SIZE, LanguageStoreHelper.getDiskUsage(context, mostRecentlyUsedLanguage));
+        assertNotNull(SharedPreferencesHelper.getApplicationsETag(context, mostRecentlyUsedLanguage));
+    }
+
+    @Test
+    public void evictInactiveLanguages_selectedLanguageIsKept() {
+        LanguageStoreHelper.evictInactiveLanguages(context, 0);
+
+        assertEquals(0, LanguageStoreHelper.getDiskUsage(context, leastRecentlyUsedLanguage));
+        assertEquals(0, LanguageStoreHelper.getDiskUsage(context, mostRecentlyUsedLanguage));
+        assertEquals(2 * SIZE, LanguageStoreHelper.getDiskUsage(context, selectedLanguage));
+        assertTrue(context.getDatabasePath(RoomDb.getDatabaseName(selectedLanguage)).exists());
+    }
+
+    private static void createFile(File file) throws IOException {
+        file.getParentFile().mkdirs();
+        try (FileOutputStream fileOutputStream = new FileOutputStream(file)) {
+            fileOutputStream.write(new byte[SIZE]);
+        }
+    }
+}
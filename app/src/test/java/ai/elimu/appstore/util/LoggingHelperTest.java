@@ -0,0 +1,46 @@
+package ai.elimu.appstore.util;
+
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import timber.log.Timber;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LoggingHelperTest {
+
+    @After
+    public void tearDown() {
+        Timber.uprootAll();
+    }
+
+    @Test
+    public void release_onlyWarningsAndErrorsAreLogged() {
+        LoggingHelper.plantTree(false);
+
+        assertFalse(LoggingHelper.isLoggable(Log.INFO));
+        assertTrue(LoggingHelper.isLoggable(Log.WARN));
+
+        Timber.i("info");
+        Timber.w("warning %d", 1);
+        Timber.e("error %d", 2);
+        assertEquals(Arrays.asList("W: warning 1", "E: error 2"), LoggingHelper.getRingBufferTree().getMessages());
+    }
+
+    @Test
+    public void ringBufferTree_keepsMostRecentMessages() {
+        RingBufferTree ringBufferTree = new RingBufferTree(Log.VERBOSE, 3);
+        Timber.plant(ringBufferTree);
+
+        for (int i = 1; i <= 5; i++) {
+            Timber.tag("tag").v("message %d", i);
+        }
+        assertEquals(Arrays.asList("V/tag: message 3", "V/tag: message 4", "V/tag: message 5"), ringBufferTree.getMessages());
+    }
+}
@@ -0,0 +1,84 @@
+package ai.elimu.appstore.util;
+
+import android.content.Context;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class StartupHelperTest {
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.getApplication();
+        StartupHelper.reset();
+        StartupHelper.getMetricsFile(context).delete();
+    }
+
+    @Test
+    public void onFirstFrame() throws Exception {
+        CountDownLatch deferredLatch = new CountDownLatch(1);
+        StartupHelper.beginSpan("main_activity");
+        StartupHelper.endSpan("main_activity");
+        StartupHelper.beginSpan("application_list_onCreate");
+        StartupHelper.runDeferred(deferredLatch::countDown);
+        assertEquals(1, deferredLatch.getCount());
+
+        StartupHelper.onFirstFrame(context);
+
+        // The deferred initializers run once the first frame has been drawn
+        assertTrue(deferredLatch.await(5, TimeUnit.SECONDS));
+
+        List<String> lines = readMetrics();
+        assertEquals(1, lines.size());
+        // Spans that have not ended have no duration
+        assertTrue(lines.get(0).matches("\\d+ main_activity=\\d+\\+\\d+ application_list_onCreate=\\d+ first_frame=\\d+"));
+
+        // Only the first frame is measured
+        StartupHelper.onFirstFrame(context);
+        assertEquals(1, readMetrics().size());
+    }
+
+    @Test
+    public void abandon() throws Exception {
+        StartupHelper.beginSpan("main_activity");
+        StartupHelper.abandon();
+
+        CountDownLatch deferredLatch = new CountDownLatch(1);
+        StartupHelper.runDeferred(deferredLatch::countDown);
+        assertTrue(deferredLatch.await(5, TimeUnit.SECONDS));
+
+        StartupHelper.onFirstFrame(context);
+        assertFalse(StartupHelper.getMetricsFile(context).exists());
+    }
+
+    /**
+     * The metrics are appended on a background thread.
+     */
+    private List<String> readMetrics() throws Exception {
+        File metricsFile = StartupHelper.getMetricsFile(context);
+        long timeout = System.currentTimeMillis() + 5000;
+        while ((metricsFile.length() == 0) && (System.currentTimeMillis() < timeout)) {
+            Thread.sleep(10);
+        }
+        return Files.readAllLines(metricsFile.toPath(), StandardCharsets.UTF_8);
+    }
+}